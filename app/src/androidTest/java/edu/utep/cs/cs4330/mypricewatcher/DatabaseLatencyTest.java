@@ -0,0 +1,233 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark of the DBHandler's read and write latency under refresh load, which will
+ * execute on an Android device, since SQLite is not available to local unit tests. Writers save
+ * refreshed prices with saveRefreshedPrices() while a reader's getItems() reads are timed, all
+ * on a throwaway database. The baseline works the way the DBHandler used to, each
+ * thread opening its own connection around every call with a rollback journal; it is compared
+ * with one DBHandler shared by every thread, keeping its write-ahead logging connection open.
+ * The timings are logged under the tag DatabaseLatencyTest.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseLatencyTest {
+    private static final String DATABASE_NAME = "latency-test.db";
+    private static final int ROWS = 500;
+    private static final int WRITERS = 2;
+    private static final int ROWS_PER_WRITE = 100;
+    private static final long READ_INTERVAL_MILLIS = 2;
+    private static final long DURATION_MILLIS = 4000;
+    private static final double MAX_P99_MILLIS = 50;    /* Slowest p99 read allowed with the shared connection */
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        DBHandler seeder = new DBHandler(context, DATABASE_NAME);
+        seeder.setWriteAheadLoggingEnabled(false);
+        try {
+            SQLiteDatabase db = seeder.getWritableDatabase();
+            SQLiteStatement insert = db.compileStatement("INSERT INTO " + DBHandler.TABLE_ITEMS + " (" +
+                    DBHandler.COLUMN_NAME + ", " + DBHandler.COLUMN_INIT_PRICE + ", " + DBHandler.COLUMN_CURR_PRICE +
+                    ", " + DBHandler.COLUMN_URL + ") VALUES (?, 1000, 1000, ?)");
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < ROWS; i++) {
+                    insert.bindString(1, "Item " + i);
+                    insert.bindString(2, "http://shop.example/" + i);
+                    insert.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            }
+            finally {
+                db.endTransaction();
+                insert.close();
+            }
+        }
+        finally {
+            seeder.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void readLatency_underRefreshLoad_isLowerWithSharedWalConnection() throws Exception {
+        Timings before = measure(new Handlers() {
+            @Override
+            public DBHandler open() {
+                DBHandler dbHandler = new DBHandler(context, DATABASE_NAME);
+                dbHandler.setWriteAheadLoggingEnabled(false);
+                return dbHandler;
+            }
+
+            @Override
+            public void release(DBHandler dbHandler) {
+                dbHandler.close();
+            }
+        });
+
+        DBHandler shared = new DBHandler(context, DATABASE_NAME);
+        Timings after;
+        try {
+            after = measure(new Handlers() {
+                @Override
+                public DBHandler open() {
+                    return shared;
+                }
+
+                @Override
+                public void release(DBHandler dbHandler) {
+                }
+            });
+        }
+        finally {
+            shared.close();
+        }
+
+        Log.i("DatabaseLatencyTest", "Connection per call, rollback journal: " + before);
+        Log.i("DatabaseLatencyTest", "Shared connection, write-ahead logging: " + after);
+        assertTrue(before.reads > 0 && after.reads > 0);
+        assertTrue(before.writes > 0 && after.writes > 0);
+        assertTrue("p99 read latency " + after.percentile(99) + " ms is not below " + before.percentile(99) + " ms",
+                after.percentile(99) < before.percentile(99));
+        assertTrue("p99 read latency " + after.percentile(99) + " ms is over " + MAX_P99_MILLIS + " ms",
+                after.percentile(99) <= MAX_P99_MILLIS);
+    }
+
+    /**
+     * How a thread gets the DBHandler for a call, and releases it after the call.
+     */
+    private interface Handlers {
+        DBHandler open();
+
+        void release(DBHandler dbHandler);
+    }
+
+    /**
+     * The read latencies and the number of writes of one run.
+     */
+    private static class Timings {
+        private final double[] readMillis;
+        private final int reads;
+        private final int writes;
+
+        private Timings(List<Double> readMillis, int writes) {
+            this.readMillis = new double[readMillis.size()];
+            for (int i = 0; i < this.readMillis.length; i++)
+                this.readMillis[i] = readMillis.get(i);
+            Arrays.sort(this.readMillis);
+            this.reads = this.readMillis.length;
+            this.writes = writes;
+        }
+
+        private double percentile(int p) {
+            return readMillis[Math.min(reads - 1, reads * p / 100)];
+        }
+
+        @Override
+        public String toString() {
+            return reads + " reads, p50 " + percentile(50) + " ms, p99 " + percentile(99) + " ms, max " +
+                    readMillis[reads - 1] + " ms; " + writes + " write transactions";
+        }
+    }
+
+    /**
+     * Time reads of the items every few milliseconds while writers keep saving refreshed
+     * prices, every call made through the DBHandlers given.
+     */
+    private static Timings measure(Handlers handlers) throws Exception {
+        AtomicInteger writes = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long end = SystemClock.uptimeMillis() + DURATION_MILLIS;
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            Thread t = new Thread(() -> {
+                try {
+                    for (int round = 0; SystemClock.uptimeMillis() < end; round++) {
+                        write(handlers, (writer * 7919 + round * ROWS_PER_WRITE) % ROWS, round);
+                        writes.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "latency-writer-" + w);
+            writers.add(t);
+            t.start();
+        }
+        List<Double> readMillis = new ArrayList<>();
+        for (int round = 0; SystemClock.uptimeMillis() < end; round++) {
+            long start = System.nanoTime();
+            read(handlers);
+            readMillis.add((System.nanoTime() - start) / 1e6);
+            SystemClock.sleep(READ_INTERVAL_MILLIS);
+        }
+        for (Thread t : writers)
+            t.join();
+        assertNull(String.valueOf(failure.get()), failure.get());
+        return new Timings(readMillis, writes.get());
+    }
+
+    /**
+     * Save refreshed prices of a run of items in one call, as a refresh does.
+     */
+    private static void write(Handlers handlers, int firstRow, int round) {
+        List<Item> refreshed = new ArrayList<>(ROWS_PER_WRITE);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ROWS_PER_WRITE; i++) {
+            long id = (firstRow + i) % ROWS + 1;
+            long price = 900 + (round + i) % 200;
+            Item item = new Item("Item " + (id - 1), 10.00, price / 100.0, (price - 1000) / 1000.0,
+                    "http://shop.example/" + (id - 1), now);
+            item.setId(id);
+            refreshed.add(item);
+        }
+        DBHandler dbHandler = handlers.open();
+        try {
+            assertEquals(ROWS_PER_WRITE, dbHandler.saveRefreshedPrices(refreshed));
+        }
+        finally {
+            handlers.release(dbHandler);
+        }
+    }
+
+    /**
+     * Read the items, as the list does when it is shown.
+     */
+    private static void read(Handlers handlers) {
+        DBHandler dbHandler = handlers.open();
+        try {
+            assertEquals(ROWS, dbHandler.getItems().size());
+        }
+        finally {
+            handlers.release(dbHandler);
+        }
+    }
+}
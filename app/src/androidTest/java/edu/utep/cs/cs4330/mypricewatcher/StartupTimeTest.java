@@ -0,0 +1,110 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented measurement of the startup of the MainActivity over a database seeded with 50,000
+ * items, which will execute on an Android device. The time to the first frame and the time until
+ * the stored items are shown are compared with a synchronous read of every stored item, which is
+ * what the activity used to do before its first frame. The activity is run over a throwaway
+ * database shared in place of the stored watch list, which is deleted afterwards. The timings are
+ * logged under the tag StartupTimeTest.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupTimeTest {
+    private static final String DATABASE_NAME = "startup-test.db";
+    private static final int SEEDED_ITEMS = 50000;
+    private static final String SEEDED_URL = "http://startup-test.example/";
+    private static final long TIMEOUT_MILLIS = 60000;
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private Context context;
+    private DBHandler dbHandler;
+    private MainActivity activity;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHandler = new DBHandler(context, DATABASE_NAME);
+        DBHandler.setInstance(dbHandler);
+        SQLiteDatabase db = dbHandler.getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + DBHandler.TABLE_ITEMS + " (" +
+                DBHandler.COLUMN_NAME + ", " + DBHandler.COLUMN_INIT_PRICE + ", " + DBHandler.COLUMN_CURR_PRICE + ", " +
+                DBHandler.COLUMN_PERC_CHANGE + ", " + DBHandler.COLUMN_URL + ", " + DBHandler.COLUMN_DATE_ADDED +
+                ") VALUES (?, ?, ?, ?, ?, ?)");
+        db.beginTransactionNonExclusive();
+        try {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < SEEDED_ITEMS; i++) {
+                long initCents = 1000 + i % 9000;
+                long currCents = initCents + i % 200 - 100;
+                insert.bindString(1, "Seeded item " + i);
+                insert.bindLong(2, initCents);
+                insert.bindLong(3, currCents);
+                insert.bindDouble(4, (currCents - initCents) / (double) initCents);
+                insert.bindString(5, SEEDED_URL + i);
+                insert.bindLong(6, now);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+            insert.close();
+        }
+        Tracker.getInstance().setItems(new IndexedItemList());
+    }
+
+    @After
+    public void tearDown() {
+        if (activity != null)
+            instrumentation.runOnMainSync(activity::finish);
+        instrumentation.waitForIdleSync();
+        Tracker.getInstance().setItems(new IndexedItemList());
+        DBHandler.setInstance(null);
+        dbHandler.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void startup_measuresTimeToFirstFrameAndFullList() {
+        long readStart = SystemClock.uptimeMillis();
+        int read = dbHandler.getItems().size();
+        long fullReadMillis = SystemClock.uptimeMillis() - readStart;
+        assertEquals(SEEDED_ITEMS, read);
+
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        activity = (MainActivity) instrumentation.startActivitySync(intent);
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        while ((activity.getTimeToFirstFrame() < 0 || activity.getTimeToFullList() < 0)
+                && SystemClock.uptimeMillis() < deadline)
+            SystemClock.sleep(10);
+        long firstFrameMillis = activity.getTimeToFirstFrame();
+        long fullListMillis = activity.getTimeToFullList();
+
+        Log.i("StartupTimeTest", "Synchronous read of " + read + " items, as before the first frame: " +
+                fullReadMillis + " ms");
+        Log.i("StartupTimeTest", "Time to first frame: " + firstFrameMillis + " ms");
+        Log.i("StartupTimeTest", "Time to full list: " + fullListMillis + " ms");
+        assertTrue("no frame drawn", firstFrameMillis >= 0);
+        assertTrue("items not loaded", fullListMillis >= 0);
+        assertEquals(SEEDED_ITEMS, Tracker.getInstance().getItems().size());
+    }
+}
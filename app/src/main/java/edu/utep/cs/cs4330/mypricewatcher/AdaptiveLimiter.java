@@ -0,0 +1,102 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  Limits how many requests are in flight to a single host at once, and adapts that limit to how
+ *  the host is coping. The limiter keeps a baseline of the host's best recent latency; while
+ *  requests succeed close to that baseline and the limit is actually being used, the limit grows by
+ *  about one request per round trip, probing for more throughput. When a request fails, is pushed
+ *  back, or takes much longer than the baseline, the limit is cut multiplicatively, so that an
+ *  overloaded host is quickly given room to recover.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class AdaptiveLimiter {
+    private static final double DROP_BACKOFF = 0.5;         /* Limit multiplier after a failed request */
+    private static final double LATENCY_BACKOFF = 0.9;      /* Limit multiplier after a slow request */
+    private static final double LATENCY_TOLERANCE = 2.0;    /* How much slower than baseline is still healthy */
+    private static final int BASELINE_DRIFT_SHIFT = 7;      /* Baseline rises 1/128 per sample to forget old lows */
+
+    private final int minLimit;             /* Smallest the limit may get */
+    private final int maxLimit;             /* Largest the limit may get */
+    private double limit;                   /* Current number of requests allowed in flight */
+    private int inFlight;                   /* Requests currently in flight */
+    private long baselineNanos;             /* Best recent latency of the host, 0 until measured */
+
+    /**
+     * The constructor for an AdaptiveLimiter.
+     *
+     * @param initialLimit  The number of requests allowed in flight at first
+     * @param minLimit      The smallest the limit may get
+     * @param maxLimit      The largest the limit may get
+     */
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("Invalid limits.");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        limit = initialLimit;
+    }
+
+    /**
+     * Wait until another request is allowed in flight, and count it as in flight.
+     *
+     * @throws InterruptedException Throw in case the wait is interrupted
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit)
+            wait();
+        inFlight++;
+    }
+
+    /**
+     * Count a request as no longer in flight, and adapt the limit to how it went.
+     *
+     * @param latencyNanos  How long the request took
+     * @param dropped       Whether the request failed or was pushed back by the host
+     */
+    public synchronized void release(long latencyNanos, boolean dropped) {
+        boolean saturated = inFlight >= limit / 2;
+        inFlight--;
+        if (dropped) {
+            limit = Math.max(minLimit, limit * DROP_BACKOFF);
+        } else {
+            if (baselineNanos == 0 || latencyNanos < baselineNanos)
+                baselineNanos = latencyNanos;
+            else
+                baselineNanos += baselineNanos >> BASELINE_DRIFT_SHIFT;
+            if (latencyNanos > baselineNanos * LATENCY_TOLERANCE)
+                limit = Math.max(minLimit, limit * LATENCY_BACKOFF);
+            else if (saturated)
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Count a request as no longer in flight without adapting the limit, because how it went says
+     * nothing about the host, such as a request that was cancelled by its caller.
+     */
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Getter for the number of requests currently allowed in flight.
+     *
+     * @return The current limit
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Getter for the number of requests currently in flight.
+     *
+     * @return The requests in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
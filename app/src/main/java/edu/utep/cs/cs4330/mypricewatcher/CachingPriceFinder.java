@@ -0,0 +1,252 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  A PriceFinder that remembers the prices fetched by another PriceFinder for a while, so that
+ *  refreshing the same url again shortly after returns immediately instead of querying the Web
+ *  service again. The cache holds a bounded number of urls, evicting the least recently used one
+ *  when full, and a price is only served from the cache while it is younger than the cache's
+ *  time-to-live. Hits, misses and evictions are counted so that the cache can be sized.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class CachingPriceFinder extends PriceFinder {
+    public static final int DEFAULT_CAPACITY = 512;                 /* Default number of cached urls */
+    public static final long DEFAULT_TTL_MILLIS = 60 * 1000;        /* Default freshness of a cached price */
+
+    private final PriceFinder delegate;                             /* PriceFinder actually fetching prices */
+    private final int capacity;                                     /* Maximum number of cached urls */
+    private volatile long ttlNanos;                                 /* How long a cached price stays fresh */
+    private final LinkedHashMap<String, CachedPrice> prices;        /* Cached prices, least recently used first */
+    private final AtomicLong hits;                                  /* Prices served from the cache */
+    private final AtomicLong misses;                                /* Prices fetched from the delegate */
+    private final AtomicLong evictions;                             /* Prices dropped to make room */
+
+    /**
+     * A price and when it was fetched.
+     */
+    private static class CachedPrice {
+        private final double price;         /* The fetched price */
+        private final long fetchedAt;       /* System.nanoTime() when the price was fetched */
+
+        private CachedPrice(double price, long fetchedAt) {
+            this.price = price;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * The constructor for a CachingPriceFinder with the default capacity and time-to-live.
+     *
+     * @param delegate The PriceFinder actually fetching prices
+     */
+    public CachingPriceFinder(PriceFinder delegate) {
+        this(delegate, DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * The constructor for a CachingPriceFinder.
+     *
+     * @param delegate  The PriceFinder actually fetching prices
+     * @param capacity  The maximum number of cached urls
+     * @param ttlMillis How long a cached price stays fresh, in milliseconds
+     */
+    public CachingPriceFinder(PriceFinder delegate, int capacity, long ttlMillis) {
+        if (capacity < 1 || ttlMillis < 0)
+            throw new IllegalArgumentException("Invalid cache configuration.");
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        evictions = new AtomicLong();
+        prices = new LinkedHashMap<String, CachedPrice>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPrice> eldest) {
+                if (size() <= CachingPriceFinder.this.capacity)
+                    return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Override in order to serve a fresh cached price instead of fetching it again.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public double fetchPrice(String url) {
+        return fetchPrice(url, false);
+    }
+
+    /**
+     * Override in order to serve a fresh cached price instead of fetching it again, unless the
+     * caller asks for the cache to be bypassed. A bypassing fetch still updates the cache.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public double fetchPrice(String url, boolean bypassCache) {
+        if (!bypassCache) {
+            CachedPrice cached = lookup(url);
+            if (cached != null)
+                return cached.price;
+        }
+        misses.incrementAndGet();
+        double price = delegate.fetchPrice(url);
+        store(url, price);
+        return price;
+    }
+
+    /**
+     * Override in order to serve every fresh cached price from the cache, and only ask the
+     * delegate for the prices of the remaining urls.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Double> fetchPrices(Collection<String> urls) {
+        Map<String, Double> found = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String url : urls) {
+            if (found.containsKey(url))
+                continue;
+            CachedPrice cached = lookup(url);
+            if (cached != null)
+                found.put(url, cached.price);
+            else
+                missing.add(url);
+        }
+        if (!missing.isEmpty()) {
+            misses.addAndGet(missing.size());
+            Map<String, Double> fetched = delegate.fetchPrices(missing);
+            for (Map.Entry<String, Double> e : fetched.entrySet())
+                store(e.getKey(), e.getValue());
+            found.putAll(fetched);
+        }
+        return found;
+    }
+
+    /**
+     * Override in order to abort the delegate's fetch.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected void abort(Thread worker) {
+        delegate.abort(worker);
+    }
+
+    /**
+     * Set how long a cached price stays fresh. Takes effect for prices already cached.
+     *
+     * @param ttlMillis The time-to-live of a cached price, in milliseconds
+     */
+    public void setTimeToLive(long ttlMillis) {
+        if (ttlMillis < 0)
+            throw new IllegalArgumentException("Time-to-live must not be negative.");
+        ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * Forget the cached price of the url, so that the next fetch goes to the delegate.
+     *
+     * @param url The Web url whose price is forgotten
+     */
+    public void invalidate(String url) {
+        synchronized (prices) {
+            prices.remove(url);
+        }
+    }
+
+    /**
+     * Forget every cached price.
+     */
+    public void clear() {
+        synchronized (prices) {
+            prices.clear();
+        }
+    }
+
+    /**
+     * Getter for the number of urls currently cached.
+     *
+     * @return The number of cached urls
+     */
+    public int size() {
+        synchronized (prices) {
+            return prices.size();
+        }
+    }
+
+    /**
+     * Getter for the number of prices served from the cache.
+     *
+     * @return The number of cache hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Getter for the number of prices that had to be fetched from the delegate.
+     *
+     * @return The number of cache misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Getter for the number of prices dropped to make room for others.
+     *
+     * @return The number of evictions
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the cached price of the url if it is still fresh, counting the lookup as a hit.
+     * Stale prices are dropped.
+     *
+     * @param url   The Web url to look up
+     * @return      The fresh cached price, or null if there is none
+     */
+    private CachedPrice lookup(String url) {
+        synchronized (prices) {
+            CachedPrice cached = prices.get(url);
+            if (cached == null)
+                return null;
+            if (System.nanoTime() - cached.fetchedAt > ttlNanos) {
+                prices.remove(url);
+                return null;
+            }
+            hits.incrementAndGet();
+            return cached;
+        }
+    }
+
+    /**
+     * Cache a freshly fetched price.
+     *
+     * @param url   The Web url the price was fetched for
+     * @param price The fetched price
+     */
+    private void store(String url, double price) {
+        CachedPrice cached = new CachedPrice(price, System.nanoTime());
+        synchronized (prices) {
+            prices.put(url, cached);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  A circuit breaker guarding the Web service. While the breaker is closed every query is let
+ *  through; after too many consecutive failures it opens, and queries fail fast without touching
+ *  the network, so that a refresh does not tie up every worker on timeouts while the service is
+ *  down. Once the open period has passed the breaker is half-open and lets a single trial query
+ *  through: if it succeeds the breaker closes again, and if it fails the breaker reopens.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class CircuitBreaker {
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;          /* Default consecutive failures before opening */
+    public static final long DEFAULT_OPEN_MILLIS = 30 * 1000;       /* Default time spent open */
+
+    /**
+     * The states a CircuitBreaker can be in.
+     */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;     /* Consecutive failures before opening */
+    private final long openNanos;           /* Time spent open before a trial query */
+    private State state;                    /* Current state of the breaker */
+    private int consecutiveFailures;        /* Failures since the last success */
+    private long openedAt;                  /* System.nanoTime() when the breaker last opened */
+    private boolean trialInFlight;          /* Whether the half-open trial query is running */
+    private long rejectedCount;             /* Queries failed fast while open */
+
+    /**
+     * The default constructor for a CircuitBreaker.
+     */
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS);
+    }
+
+    /**
+     * The constructor for a CircuitBreaker.
+     *
+     * @param failureThreshold  The number of consecutive failures after which the breaker opens
+     * @param openMillis        How long the breaker stays open before letting a trial query through
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold < 1 || openMillis < 0)
+            throw new IllegalArgumentException("Invalid circuit breaker configuration.");
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        state = State.CLOSED;
+    }
+
+    /**
+     * Ask to let a query through.
+     *
+     * @throws CircuitOpenException Throw in case the breaker is open, or half-open with its trial query running
+     */
+    public synchronized void acquirePermission() throws CircuitOpenException {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos)
+            transitionTo(State.HALF_OPEN);
+        if (state == State.CLOSED)
+            return;
+        if (state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return;
+        }
+        rejectedCount++;
+        throw new CircuitOpenException("Web service unavailable, not retrying until the circuit closes.");
+    }
+
+    /**
+     * Record that a query let through reached the Web service and got an answer.
+     */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        if (state != State.CLOSED)
+            transitionTo(State.CLOSED);
+    }
+
+    /**
+     * Record that a query let through failed because of the Web service.
+     */
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            openedAt = System.nanoTime();
+            transitionTo(State.OPEN);
+        }
+    }
+
+    /**
+     * Record that a query let through was cancelled before the Web service answered it. That says
+     * nothing about the service, so the breaker's state is left as it is, and only the permission
+     * of a half-open trial query is given back, so that the next query can be the trial.
+     */
+    public synchronized void onCancelled() {
+        trialInFlight = false;
+    }
+
+    /**
+     * Getter for the current state of the breaker.
+     *
+     * @return The breaker's state
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos)
+            return State.HALF_OPEN;
+        return state;
+    }
+
+    /**
+     * Getter for the number of failures since the last success.
+     *
+     * @return The number of consecutive failures
+     */
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Getter for the number of queries failed fast because the breaker was open.
+     *
+     * @return The number of rejected queries
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Move the breaker into a new state, and log the transition.
+     *
+     * @param next The new state
+     */
+    private void transitionTo(State next) {
+        Log.d("CircuitBreaker", state + " -> " + next + " after " + consecutiveFailures + " consecutive failures");
+        state = next;
+    }
+}
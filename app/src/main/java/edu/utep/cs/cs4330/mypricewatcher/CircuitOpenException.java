@@ -0,0 +1,14 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  A PriceNotFoundException thrown without querying the Web service at all, because its circuit
+ *  breaker is open after too many consecutive failures.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class CircuitOpenException extends PriceNotFoundException {
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,250 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  A PriceFinder that makes concurrent fetches of the same url share a single query. Several Items
+ *  can track the same url, and an Item can be refreshed while it is already being refreshed; the
+ *  first fetch of a url queries the PriceFinder it wraps, and every fetch of the same url made
+ *  before that query is done waits for it and gets its result or its error. A query that is
+ *  cancelled has no result to share: the fetches waiting for it query the url again themselves,
+ *  instead of failing with another caller's cancellation. Urls are compared in canonical form, so
+ *  that differences in letter case of the host or a trailing fragment do not defeat the sharing.
+ *  The number of fetches that were served by another fetch's query is counted.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class CoalescingPriceFinder extends PriceFinder {
+    private final PriceFinder delegate;                                 /* PriceFinder actually fetching prices */
+    private final ConcurrentHashMap<String, Flight> inFlight;          /* Queries in progress by canonical url */
+    private final AtomicLong deduplicated;                              /* Fetches that joined another's query */
+
+    /**
+     * A query in progress, whose result is shared by every fetch of its url. A query that was
+     * cancelled completes with a null price.
+     */
+    private static class Flight extends FutureTask<Double> {
+        private Flight() {
+            super(() -> null);
+        }
+
+        private void complete(double price) {
+            set(price);
+        }
+
+        private void fail(Throwable error) {
+            setException(error);
+        }
+
+        private void abandon() {
+            set(null);
+        }
+    }
+
+    /**
+     * The constructor for a CoalescingPriceFinder.
+     *
+     * @param delegate The PriceFinder actually fetching prices
+     */
+    public CoalescingPriceFinder(PriceFinder delegate) {
+        this.delegate = delegate;
+        inFlight = new ConcurrentHashMap<>();
+        deduplicated = new AtomicLong();
+    }
+
+    /**
+     * Override in order to join a query already in progress for the same url, if there is one.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public double fetchPrice(String url) {
+        String key = canonicalize(url);
+        for (;;) {
+            Flight flight = new Flight();
+            Flight existing = inFlight.putIfAbsent(key, flight);
+            if (existing != null) {
+                Double price = await(existing);
+                if (price == null)
+                    continue;       /* The query was cancelled, so query the url again */
+                deduplicated.incrementAndGet();
+                return price;
+            }
+            try {
+                double price = delegate.fetchPrice(url);
+                flight.complete(price);
+                return price;
+            } catch (FetchCancelledException e) {
+                inFlight.remove(key, flight);
+                flight.abandon();
+                throw e;
+            } catch (RuntimeException e) {
+                flight.fail(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+    }
+
+    /**
+     * Override in order to join the queries already in progress for any of the urls, and only ask
+     * the delegate for the prices of the remaining urls in a single batch.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Double> fetchPrices(Collection<String> urls) {
+        Map<String, Flight> joined = new LinkedHashMap<>();
+        Map<String, Flight> owned = new LinkedHashMap<>();
+        Map<String, String> keys = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (keys.containsKey(url))
+                continue;
+            String key = canonicalize(url);
+            keys.put(url, key);
+            Flight flight = new Flight();
+            Flight existing = inFlight.putIfAbsent(key, flight);
+            if (existing == null)
+                owned.put(url, flight);
+            else
+                joined.put(url, existing);
+        }
+
+        /* Complete the queries this batch owns before waiting on others, so two batches never wait on each other */
+        Map<String, Double> prices = new LinkedHashMap<>();
+        try {
+            if (!owned.isEmpty()) {
+                Map<String, Double> fetched = delegate.fetchPrices(new ArrayList<>(owned.keySet()));
+                for (Map.Entry<String, Flight> e : owned.entrySet()) {
+                    Double price = fetched.get(e.getKey());
+                    if (price != null) {
+                        e.getValue().complete(price);
+                        prices.put(e.getKey(), price);
+                    } else {
+                        e.getValue().fail(new PriceNotFoundException());
+                    }
+                }
+            }
+        } catch (FetchCancelledException e) {
+            for (Map.Entry<String, Flight> f : owned.entrySet()) {
+                inFlight.remove(keys.get(f.getKey()), f.getValue());
+                f.getValue().abandon();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            for (Flight flight : owned.values())
+                flight.fail(e);
+            throw e;
+        } finally {
+            for (Map.Entry<String, Flight> e : owned.entrySet())
+                inFlight.remove(keys.get(e.getKey()), e.getValue());
+        }
+
+        List<String> cancelled = new ArrayList<>();
+        for (Map.Entry<String, Flight> e : joined.entrySet()) {
+            try {
+                Double price = await(e.getValue());
+                if (price == null) {
+                    cancelled.add(e.getKey());
+                } else {
+                    deduplicated.incrementAndGet();
+                    prices.put(e.getKey(), price);
+                }
+            } catch (FetchCancelledException ex) {
+                throw ex;
+            } catch (PriceNotFoundException ignored) {
+                /* Leave the url out, so the caller can tell its price was not found */
+            }
+        }
+
+        /* Query the urls whose shared query was cancelled again, since only real outcomes are shared */
+        if (!cancelled.isEmpty())
+            prices.putAll(fetchPrices(cancelled));
+        return prices;
+    }
+
+    /**
+     * Override in order to abort the delegate's fetch.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected void abort(Thread worker) {
+        delegate.abort(worker);
+    }
+
+    /**
+     * Getter for the number of fetches that were served by a query already in progress.
+     *
+     * @return The number of deduplicated fetches
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.get();
+    }
+
+    /**
+     * Wait for a query in progress and return its result, rethrowing its error.
+     *
+     * @param flight                    The query in progress
+     * @return                          The price it found, or null if the query was cancelled
+     * @throws PriceNotFoundException   Throw in case the query failed, or a FetchCancelledException
+     *                                  in case the wait was interrupted
+     */
+    private static Double await(Flight flight) throws PriceNotFoundException {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new PriceNotFoundException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FetchCancelledException("Interrupted while waiting for a shared query.", e);
+        }
+    }
+
+    /**
+     * Returns the canonical form of a url: surrounding whitespace and any fragment removed, the
+     * scheme and host in lower case, a default port dropped, and an empty path written as "/".
+     * Urls that cannot be parsed are only trimmed.
+     *
+     * @param url   The Web url to canonicalize
+     * @return      The canonical form of the url
+     */
+    static String canonicalize(String url) {
+        String trimmed = url.trim();
+        try {
+            URI uri = new URI(trimmed);
+            if (uri.getScheme() == null || uri.getHost() == null)
+                return trimmed;
+            String scheme = uri.getScheme().toLowerCase(Locale.US);
+            int port = uri.getPort();
+            if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https")))
+                port = -1;
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            StringBuilder canonical = new StringBuilder(trimmed.length());
+            canonical.append(scheme).append("://").append(uri.getHost().toLowerCase(Locale.US));
+            if (port != -1)
+                canonical.append(':').append(port);
+            canonical.append(path);
+            if (uri.getRawQuery() != null)
+                canonical.append('?').append(uri.getRawQuery());
+            return canonical.toString();
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+    }
+}
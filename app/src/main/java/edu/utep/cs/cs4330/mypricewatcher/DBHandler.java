@@ -2,101 +2,901 @@ package edu.utep.cs.cs4330.mypricewatcher;
 
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.database.Cursor;
 import android.content.Context;
 import android.content.ContentValues;
 import android.util.Log;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
+/**
+ *  Stores the tracked items and their price history in an SQLite database. The application shares
+ *  a single DBHandler, and with it a single connection, which is opened on first use and kept open
+ *  for the lifetime of the process instead of being opened and closed around every statement. The
+ *  database uses write-ahead logging, so that the background threads persisting refreshes and
+ *  price history do not block reads made by the UI.
+ *
+ * @author Damian Najera
+ * @version 1.1
+ */
 public class DBHandler extends SQLiteOpenHelper {
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 5;
     private static final String DATABASE_NAME = "items.db";
 
     public static final String TABLE_ITEMS = "items";
     public static final String COLUMN_ID = "_id";
     public static final String COLUMN_NAME = "name";
-    public static final String COLUMN_INIT_PRICE = "initPrice";
-    public static final String COLUMN_CURR_PRICE = "currPrice";
+    public static final String COLUMN_INIT_PRICE = "initPriceCents";
+    public static final String COLUMN_CURR_PRICE = "currPriceCents";
     public static final String COLUMN_PERC_CHANGE = "percChange";
     public static final String COLUMN_URL = "url";
     public static final String COLUMN_DATE_ADDED = "dateAdded";
+    public static final String COLUMN_ETAG = "etag";
+    public static final String COLUMN_LAST_MODIFIED = "lastModified";
+    public static final String INDEX_ITEMS_URL = "items_url";
 
-    public DBHandler(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
-        super(context, DATABASE_NAME, factory, DATABASE_VERSION);
+    public static final String TABLE_PRICE_HISTORY = "price_history";
+    public static final String COLUMN_ITEM_ID = "item_id";
+    public static final String COLUMN_TIME = "time";
+    public static final String COLUMN_RESOLUTION = "resolution";
+    public static final String COLUMN_PRICE = "priceCents";
+    public static final String COLUMN_MIN_PRICE = "minCents";
+    public static final String COLUMN_MAX_PRICE = "maxCents";
+    public static final String COLUMN_SAMPLES = "samples";
+    public static final String INDEX_PRICE_HISTORY_ITEM_TIME = "price_history_item_time";
+    public static final String INDEX_PRICE_HISTORY_RESOLUTION_TIME = "price_history_resolution_time";
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    private static final String ITEM_COLUMNS = COLUMN_ID + ", " + COLUMN_NAME + ", " + COLUMN_INIT_PRICE + ", " +
+            COLUMN_CURR_PRICE + ", " + COLUMN_PERC_CHANGE + ", " + COLUMN_URL + ", " + COLUMN_DATE_ADDED + ", " +
+            COLUMN_ETAG + ", " + COLUMN_LAST_MODIFIED;
+    private static final String STORED_ITEM = COLUMN_NAME + " IS NOT NULL";
+    private static DBHandler instance;
+
+    /**
+     * The constructor for a DBHandler over a database of the given name. The application shares
+     * the one returned by getInstance(); others are for tests, which must not touch the stored
+     * watch list.
+     *
+     * @param context   Any context of the application
+     * @param name      The name of the database file
+     */
+    DBHandler(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Getter for the DBHandler shared by the application. Its connection is never closed, since
+     * the platform closes it with the process.
+     *
+     * @param context   Any context of the application
+     * @return          The shared DBHandler
+     */
+    public static synchronized DBHandler getInstance(Context context) {
+        if (instance == null)
+            instance = new DBHandler(context.getApplicationContext(), DATABASE_NAME);
+        return instance;
+    }
+
+    /**
+     * Replace the DBHandler shared by the application, so that an instrumented test can run the
+     * app over a throwaway database instead of the stored watch list.
+     *
+     * @param dbHandler The DBHandler to share, or null for getInstance() to open the stored one
+     */
+    static synchronized void setInstance(DBHandler dbHandler) {
+        instance = dbHandler;
     }
 
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
-        String query = "CREATE TABLE " + TABLE_ITEMS + "(" +
+        createItemsTable(sqLiteDatabase, TABLE_ITEMS);
+        createUrlIndex(sqLiteDatabase);
+        createPriceHistoryTable(sqLiteDatabase);
+    }
+
+    /**
+     * Create the items table. Prices are stored in whole cents, the percentage change as a
+     * fraction, and the date added in milliseconds since the epoch, so that loading an item
+     * does not parse any strings.
+     *
+     * @param db    The database
+     * @param table The name to create the table under
+     */
+    private static void createItemsTable(SQLiteDatabase db, String table) {
+        String query = "CREATE TABLE " + table + "(" +
                 COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 COLUMN_NAME + " TEXT, " +
-                COLUMN_INIT_PRICE + " TEXT, " +
-                COLUMN_CURR_PRICE + " TEXT, " +
-                COLUMN_PERC_CHANGE + " TEXT, " +
+                COLUMN_INIT_PRICE + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_CURR_PRICE + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_PERC_CHANGE + " REAL NOT NULL DEFAULT 0, " +
                 COLUMN_URL + " TEXT, " +
-                COLUMN_DATE_ADDED + " TEXT " +
+                COLUMN_DATE_ADDED + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_ETAG + " TEXT, " +
+                COLUMN_LAST_MODIFIED + " TEXT " +
                 ");";
-        sqLiteDatabase.execSQL(query);
+        db.execSQL(query);
     }
 
+    /**
+     * Upgrade the schema one version at a time, keeping the stored items.
+     *
+     * {@inheritDoc}
+     */
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + TABLE_ITEMS);
-        onCreate(sqLiteDatabase);
+    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            sqLiteDatabase.execSQL("ALTER TABLE " + TABLE_ITEMS + " ADD COLUMN " + COLUMN_ETAG + " TEXT");
+            sqLiteDatabase.execSQL("ALTER TABLE " + TABLE_ITEMS + " ADD COLUMN " + COLUMN_LAST_MODIFIED + " TEXT");
+        }
+        if (oldVersion < 3)
+            migrateToTypedColumns(sqLiteDatabase);
+        if (oldVersion < 4)
+            createUrlIndex(sqLiteDatabase);
+        if (oldVersion < 5)
+            createPriceHistoryTable(sqLiteDatabase);
+    }
+
+    /**
+     * Index the items by url, so that finding whether a url is already tracked does not scan the
+     * whole table.
+     *
+     * @param db The database
+     */
+    private static void createUrlIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_ITEMS_URL + " ON " + TABLE_ITEMS + "(" + COLUMN_URL + ")");
+    }
+
+    /**
+     * Create the append-only price history table, holding every observed price of every item, and
+     * the hourly and daily aggregates that replace old observations. It is indexed by item and
+     * time, so that the history of an item over a period is a single range scan, and by
+     * resolution and time, so that downsampling finds old history without scanning the table.
+     *
+     * @param db The database
+     */
+    private static void createPriceHistoryTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_PRICE_HISTORY + "(" +
+                COLUMN_ITEM_ID + " INTEGER NOT NULL, " +
+                COLUMN_TIME + " INTEGER NOT NULL, " +
+                COLUMN_RESOLUTION + " INTEGER NOT NULL DEFAULT " + PricePoint.RESOLUTION_RAW + ", " +
+                COLUMN_PRICE + " INTEGER NOT NULL, " +
+                COLUMN_MIN_PRICE + " INTEGER NOT NULL, " +
+                COLUMN_MAX_PRICE + " INTEGER NOT NULL, " +
+                COLUMN_SAMPLES + " INTEGER NOT NULL DEFAULT 1" +
+                ");");
+        db.execSQL("CREATE INDEX " + INDEX_PRICE_HISTORY_ITEM_TIME + " ON " + TABLE_PRICE_HISTORY +
+                "(" + COLUMN_ITEM_ID + ", " + COLUMN_TIME + ")");
+        db.execSQL("CREATE INDEX " + INDEX_PRICE_HISTORY_RESOLUTION_TIME + " ON " + TABLE_PRICE_HISTORY +
+                "(" + COLUMN_RESOLUTION + ", " + COLUMN_TIME + ")");
+    }
+
+    /**
+     * Convert the items stored by version 2, whose prices, percentage change and date added are
+     * display strings such as "$1,234.00", "- 5%" and "09/30/18", into typed columns. SQLite
+     * cannot change a column's type, so the rows are copied into a new table and the new table
+     * replaces the old one. The prices were rendered in the locale of the device, so they are
+     * parsed here rather than in SQL; a price that cannot be read is stored as 0, which marks an
+     * Item without a price, and its validators are dropped, so that the next refresh fetches the
+     * price again and takes it as the initial one. The percentage change is recomputed from the
+     * converted prices, and the date is taken as noon local time on the day it names.
+     *
+     * @param db The database being upgraded
+     */
+    private static void migrateToTypedColumns(SQLiteDatabase db) {
+        String migrated = TABLE_ITEMS + "_v3";
+        createItemsTable(db, migrated);
+        db.execSQL("INSERT INTO " + migrated + " (" +
+                COLUMN_ID + ", " + COLUMN_NAME + ", " +
+                COLUMN_URL + ", " + COLUMN_DATE_ADDED + ", " + COLUMN_ETAG + ", " + COLUMN_LAST_MODIFIED + ") " +
+                "SELECT " + COLUMN_ID + ", " + COLUMN_NAME + ", " + COLUMN_URL + ", " +
+                "COALESCE(CAST(strftime('%s', '20' || substr(dateAdded, 7, 2) || '-' || substr(dateAdded, 1, 2)" +
+                " || '-' || substr(dateAdded, 4, 2) || ' 12:00:00', 'utc') AS INTEGER)," +
+                " CAST(strftime('%s', 'now') AS INTEGER)) * 1000, " +
+                COLUMN_ETAG + ", " + COLUMN_LAST_MODIFIED + " FROM " + TABLE_ITEMS);
+        SQLiteStatement setPrices = db.compileStatement("UPDATE " + migrated + " SET " +
+                COLUMN_INIT_PRICE + " = ?, " + COLUMN_CURR_PRICE + " = ? WHERE " + COLUMN_ID + " = ?");
+        SQLiteStatement flag = db.compileStatement("UPDATE " + migrated + " SET " +
+                COLUMN_ETAG + " = NULL, " + COLUMN_LAST_MODIFIED + " = NULL WHERE " + COLUMN_ID + " = ?");
+        Cursor cursor = db.rawQuery("SELECT " + COLUMN_ID + ", initPrice, currPrice FROM " + TABLE_ITEMS, null);
+        try {
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                long initCents = parseDisplayedCents(cursor.getString(1));
+                long currCents = parseDisplayedCents(cursor.getString(2));
+                if (initCents < 0 || currCents < 0) {
+                    Log.d("DBHandler.migrateToTypedColumns", "Unreadable price of item " + id + ": " +
+                            cursor.getString(1) + ", " + cursor.getString(2));
+                    flag.bindLong(1, id);
+                    flag.executeUpdateDelete();
+                }
+                setPrices.bindLong(1, Math.max(initCents, 0));
+                setPrices.bindLong(2, Math.max(currCents, 0));
+                setPrices.bindLong(3, id);
+                setPrices.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            setPrices.close();
+            flag.close();
+        }
+        db.execSQL("UPDATE " + migrated + " SET " + COLUMN_PERC_CHANGE + " = CASE WHEN " + COLUMN_INIT_PRICE +
+                " = 0 THEN 0 ELSE (" + COLUMN_CURR_PRICE + " - " + COLUMN_INIT_PRICE + ") * 1.0 / " +
+                COLUMN_INIT_PRICE + " END");
+        db.execSQL("DROP TABLE " + TABLE_ITEMS);
+        db.execSQL("ALTER TABLE " + migrated + " RENAME TO " + TABLE_ITEMS);
+    }
+
+    /**
+     * Parse a price stored by version 2 into whole cents. Those prices were rendered with the
+     * pattern "$#,##0.00" in the locale of the device at the time, which need not be its locale
+     * now, so the separators are not taken from any locale. Any single symbol between digits is
+     * taken as a separator: since the prices always have two decimals and digits are grouped in
+     * threes, one followed by exactly two final digits is the decimal separator, and the others
+     * group digits. Currency symbols around the number are ignored, so "$1,234.50",
+     * "1.234,50 kr", "$1 234,50" and "$1'234.50" are all 123450 cents.
+     *
+     * @param text  The price, as stored by version 2
+     * @return      The price in cents, or -1 if the text is not a price
+     */
+    static long parseDisplayedCents(String text) {
+        if (text == null || text.indexOf('-') >= 0)
+            return -1;
+        int first = 0;
+        while (first < text.length() && !isAsciiDigit(text.charAt(first)))
+            first++;
+        int last = text.length() - 1;
+        while (last >= first && !isAsciiDigit(text.charAt(last)))
+            last--;
+        if (first > last || last - first > 30)
+            return -1;
+        long digits = 0;
+        int count = 0;                  /* Digits read */
+        int afterSeparator = -1;        /* Digits read since the last separator, if any */
+        for (int i = first; i <= last; i++) {
+            char c = text.charAt(i);
+            if (isAsciiDigit(c)) {
+                if (++count > 16)
+                    return -1;
+                digits = digits * 10 + (c - '0');
+                if (afterSeparator >= 0)
+                    afterSeparator++;
+            } else if (afterSeparator != 0 && !Character.isLetterOrDigit(c)) {
+                afterSeparator = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (afterSeparator == 2)
+            return digits;
+        if (afterSeparator != -1 && afterSeparator != 3)
+            return -1;
+        return digits * 100;
+    }
+
+    /**
+     * Returns whether a char is one of the digits 0 to 9.
+     *
+     * @param c The char
+     * @return  True if it is a digit
+     */
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
     public void addItem(Item item) {
-        Log.d("a;lsdkjf", "WRITING " + item.getName());
+        Log.d("DBHandler.addItem", "Writing " + item.getName());
+        PriceSnapshot price = item.getPriceSnapshot();
         ContentValues values = new ContentValues();
         values.put(COLUMN_NAME, item.getName());
-        values.put(COLUMN_INIT_PRICE, item.getInitPrice());
-        values.put(COLUMN_CURR_PRICE, item.getCurrPrice());
-        values.put(COLUMN_PERC_CHANGE, item.getPercChange());
+        values.put(COLUMN_INIT_PRICE, price.getInitPriceCents());
+        values.put(COLUMN_CURR_PRICE, price.getCurrPriceCents());
+        values.put(COLUMN_PERC_CHANGE, price.getPercChange());
         values.put(COLUMN_URL, item.getURL());
-        values.put(COLUMN_DATE_ADDED, item.getDateAdded());
+        values.put(COLUMN_DATE_ADDED, item.getDateAddedMillis());
+        putValidators(values, item.getURL());
 
         SQLiteDatabase db = getWritableDatabase();
-        db.insert(TABLE_ITEMS, null, values);
-        db.close();
+        long id = db.insert(TABLE_ITEMS, null, values);
+        if (id != -1) {
+            item.setId(id);
+            PriceHistoryWriter.getInstance().record(id, price.getCurrPriceCents(), System.currentTimeMillis());
+        }
     }
 
+    /**
+     * Delete a stored item and its price history, found by its ID.
+     *
+     * @param item The item to delete
+     */
     public void deleteItem(Item item) {
+        if (item.getId() <= 0)
+            return;
         SQLiteDatabase db = getWritableDatabase();
-        db.execSQL("DELETE FROM " + TABLE_ITEMS + " WHERE " + COLUMN_NAME + "=\"" + item.getName() + "\";");
-        db.close();
+        db.beginTransactionNonExclusive();
+        try {
+            executeUpdateDelete(db, "DELETE FROM " + TABLE_PRICE_HISTORY + " WHERE " + COLUMN_ITEM_ID + " = ?", item.getId());
+            executeUpdateDelete(db, "DELETE FROM " + TABLE_ITEMS + " WHERE " + COLUMN_ID + " = ?", item.getId());
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+        }
     }
 
+    /**
+     * Rename a stored item and change its url, found by its ID, and then the item itself. If the
+     * url changes, the validators stored for the old url are cleared, since they do not apply to
+     * the new one.
+     *
+     * @param item      The item to edit
+     * @param newName   The item's new name
+     * @param newUrl    The item's new url
+     */
     public void editItem(Item item, String newName, String newUrl) {
+        if (item.getId() <= 0)
+            return;
+        boolean urlChanged = !newUrl.equals(item.getURL());
         SQLiteDatabase db = getWritableDatabase();
-        db.execSQL("UPDATE " + TABLE_ITEMS + " SET name = \'" + newName + "\'" + " WHERE name = \'" + item.getName() + "\';");
-        db.execSQL("UPDATE " + TABLE_ITEMS + " SET url = \'" + newUrl + "\'" + " WHERE url = \'" + item.getURL() + "\';");
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_ITEMS + " SET " + COLUMN_NAME + " = ?, " +
+                COLUMN_URL + " = ?" + (urlChanged ? ", " + COLUMN_ETAG + " = NULL, " + COLUMN_LAST_MODIFIED + " = NULL" : "") +
+                " WHERE " + COLUMN_ID + " = ?");
+        try {
+            update.bindString(1, newName);
+            update.bindString(2, newUrl);
+            update.bindLong(3, item.getId());
+            update.executeUpdateDelete();
+        }
+        finally {
+            update.close();
+        }
+        if (urlChanged)
+            ValidatorStore.getInstance().remove(item.getURL());
+        item.applySavedEdit(newName, newUrl);
+    }
 
+    /**
+     * Run an UPDATE or DELETE statement whose only parameter is an ID.
+     *
+     * @param db    The database
+     * @param sql   The statement
+     * @param id    The ID to bind
+     * @return      The number of rows changed
+     */
+    private static int executeUpdateDelete(SQLiteDatabase db, String sql, long id) {
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            statement.bindLong(1, id);
+            return statement.executeUpdateDelete();
+        }
+        finally {
+            statement.close();
+        }
     }
 
     public ArrayList<Item> getItems() {
         ArrayList<Item> items = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery("SELECT " + ITEM_COLUMNS + " FROM " + TABLE_ITEMS + " WHERE " + STORED_ITEM, null);
+        try {
+            while (c.moveToNext())
+                items.add(readItem(c));
+        }
+        finally {
+            c.close();
+        }
+        return items;
+    }
+
+    /**
+     * Visit every stored item in the order they were added, reading them through a cursor rather
+     * than into a list, so that any number of items can be visited in constant memory.
+     *
+     * @param visitor       The visitor of the items
+     * @throws IOException  Throw in case the visitor fails, which stops the visit
+     */
+    public void forEachItem(ItemVisitor visitor) throws IOException {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery("SELECT " + ITEM_COLUMNS + " FROM " + TABLE_ITEMS + " WHERE " + STORED_ITEM +
+                " ORDER BY " + COLUMN_ID, null);
+        try {
+            while (c.moveToNext())
+                visitor.visit(readItem(c));
+        }
+        finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Read the price data of every stored item into a PriceStore, in the order they were added,
+     * straight from the cursor's columns, without building an Item per row.
+     *
+     * @return The stored items' price data
+     */
+    public PriceStore getPriceStore() {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery("SELECT " + COLUMN_ID + ", " + COLUMN_NAME + ", " + COLUMN_INIT_PRICE + ", " +
+                COLUMN_CURR_PRICE + ", " + COLUMN_URL + ", " + COLUMN_DATE_ADDED + " FROM " + TABLE_ITEMS +
+                " WHERE " + STORED_ITEM + " ORDER BY " + COLUMN_ID, null);
+        PriceStore store;
+        try {
+            store = new PriceStore(c.getCount());
+            while (c.moveToNext())
+                store.add(c.getLong(0), c.getString(1), c.getLong(2), c.getLong(3), c.getString(4), c.getLong(5));
+        }
+        finally {
+            c.close();
+        }
+        store.trimToSize();
+        return store;
+    }
+
+    /**
+     * Visit the whole price history of the stored items through a cursor, grouped by item and
+     * oldest first, along with the url of the item each point belongs to.
+     *
+     * @param visitor       The visitor of the price points
+     * @throws IOException  Throw in case the visitor fails, which stops the visit
+     */
+    public void forEachPricePoint(PriceHistoryVisitor visitor) throws IOException {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery("SELECT i." + COLUMN_URL + ", h." + COLUMN_ITEM_ID + ", h." + COLUMN_TIME + ", h." +
+                COLUMN_RESOLUTION + ", h." + COLUMN_PRICE + ", h." + COLUMN_MIN_PRICE + ", h." + COLUMN_MAX_PRICE +
+                ", h." + COLUMN_SAMPLES + " FROM " + TABLE_PRICE_HISTORY + " h JOIN " + TABLE_ITEMS + " i ON i." +
+                COLUMN_ID + " = h." + COLUMN_ITEM_ID + " WHERE i." + STORED_ITEM +
+                " ORDER BY h." + COLUMN_ITEM_ID + ", h." + COLUMN_TIME, null);
+        try {
+            while (c.moveToNext())
+                visitor.visit(c.getString(0), new PricePoint(c.getLong(1), c.getLong(2), c.getInt(3),
+                        c.getLong(4), c.getLong(5), c.getLong(6), c.getInt(7)));
+        }
+        finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Store a batch of imported items in a single transaction, skipping any whose url is already
+     * tracked, including by an earlier item of the same import. Stored items are given their ID.
+     *
+     * @param items The imported items
+     * @return      The number of items stored
+     */
+    public int importItems(List<Item> items) {
         SQLiteDatabase db = getWritableDatabase();
-        String query = "SELECT * FROM " + TABLE_ITEMS + " WHERE 1";
-        Cursor c = db.rawQuery(query, null);
-        c.moveToFirst();
-        try {
-            while (c.moveToNext()) {
-                if (c.getString(c.getColumnIndex("name")) != null) {
-                    String name = c.getString(c.getColumnIndex("name"));
-                    Double initPrice = Double.parseDouble(c.getString(c.getColumnIndex("initPrice")).replace("$", ""));
-                    Double currPrice = Double.parseDouble(c.getString(c.getColumnIndex("currPrice")).replace("$", ""));
-                    Double percChange = Double.parseDouble(c.getString(c.getColumnIndex("percChange")).replace("%", ""));
-                    String url = c.getString(c.getColumnIndex("url"));
-                    String dateAdded = c.getString(c.getColumnIndex("dateAdded"));
-                    Item item = new Item(name, initPrice, currPrice, percChange, url, dateAdded);
-                    items.add(item);
+        SQLiteStatement exists = db.compileStatement("SELECT EXISTS(SELECT 1 FROM " + TABLE_ITEMS +
+                " WHERE " + COLUMN_URL + " = ?)");
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_ITEMS + " (" + COLUMN_NAME + ", " +
+                COLUMN_INIT_PRICE + ", " + COLUMN_CURR_PRICE + ", " + COLUMN_PERC_CHANGE + ", " + COLUMN_URL + ", " +
+                COLUMN_DATE_ADDED + ") VALUES (?, ?, ?, ?, ?, ?)");
+        int stored = 0;
+        db.beginTransactionNonExclusive();
+        try {
+            for (Item item : items) {
+                exists.bindString(1, item.getURL());
+                if (exists.simpleQueryForLong() != 0)
+                    continue;
+                insert.bindString(1, item.getName());
+                insert.bindLong(2, item.getInitPriceCents());
+                insert.bindLong(3, item.getCurrPriceCents());
+                insert.bindDouble(4, item.getPercChangeValue());
+                insert.bindString(5, item.getURL());
+                insert.bindLong(6, item.getDateAddedMillis());
+                long id = insert.executeInsert();
+                if (id != -1) {
+                    item.setId(id);
+                    stored++;
                 }
             }
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+            exists.close();
+            insert.close();
+        }
+        return stored;
+    }
+
+    /**
+     * Store a batch of imported price history in a single transaction. Each point belongs to the
+     * stored item with the url at the same position; points of urls that are not tracked, of items
+     * deleted while the import runs, and points already stored for the same item, time and
+     * resolution, are skipped.
+     *
+     * @param urls      The url of the item of each point
+     * @param points    The imported points, whose item IDs are ignored
+     * @return          The number of points stored
+     */
+    public int importPriceHistory(List<String> urls, List<PricePoint> points) {
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement find = db.compileStatement("SELECT IFNULL((SELECT " + COLUMN_ID + " FROM " + TABLE_ITEMS +
+                " WHERE " + COLUMN_URL + " = ? AND " + STORED_ITEM + " ORDER BY " + COLUMN_ID + " LIMIT 1), 0)");
+        SQLiteStatement exists = db.compileStatement("SELECT EXISTS(SELECT 1 FROM " + TABLE_PRICE_HISTORY +
+                " WHERE " + COLUMN_ITEM_ID + " = ? AND " + COLUMN_TIME + " = ? AND " + COLUMN_RESOLUTION + " = ?)");
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_PRICE_HISTORY + " (" +
+                COLUMN_ITEM_ID + ", " + COLUMN_TIME + ", " + COLUMN_RESOLUTION + ", " + COLUMN_PRICE + ", " +
+                COLUMN_MIN_PRICE + ", " + COLUMN_MAX_PRICE + ", " + COLUMN_SAMPLES + ") SELECT ?, ?, ?, ?, ?, ?, ?" +
+                " WHERE EXISTS (SELECT 1 FROM " + TABLE_ITEMS + " WHERE " + COLUMN_ID + " = ?1)");
+        String url = null;
+        long itemId = 0;
+        int stored = 0;
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < points.size(); i++) {
+                if (!urls.get(i).equals(url)) {
+                    url = urls.get(i);
+                    find.bindString(1, url);
+                    itemId = find.simpleQueryForLong();
+                }
+                if (itemId == 0)
+                    continue;
+                PricePoint point = points.get(i);
+                exists.bindLong(1, itemId);
+                exists.bindLong(2, point.getTime());
+                exists.bindLong(3, point.getResolution());
+                if (exists.simpleQueryForLong() != 0)
+                    continue;
+                insert.bindLong(1, itemId);
+                insert.bindLong(2, point.getTime());
+                insert.bindLong(3, point.getResolution());
+                insert.bindLong(4, point.getPriceCents());
+                insert.bindLong(5, point.getMinCents());
+                insert.bindLong(6, point.getMaxCents());
+                insert.bindLong(7, point.getSamples());
+                if (insert.executeInsert() != -1)
+                    stored++;
+            }
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+            find.close();
+            exists.close();
+            insert.close();
+        }
+        return stored;
+    }
+
+    /**
+     * Returns a page of items in the order they were added: the items following the item with
+     * the given ID, after skipping a few. The page is found through the primary key, so reading
+     * a page costs the same wherever it is in the table, plus the rows skipped.
+     *
+     * @param afterId   The ID of the item preceding the page, or 0 for the first page
+     * @param skip      The number of items between that item and the page
+     * @param limit     The most items in the page
+     * @return          The items in the page
+     */
+    public List<Item> getItemsAfter(long afterId, int skip, int limit) {
+        List<Item> items = new ArrayList<>(limit);
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery("SELECT " + ITEM_COLUMNS + " FROM " + TABLE_ITEMS + " WHERE " + STORED_ITEM +
+                " AND " + COLUMN_ID + " > ? ORDER BY " + COLUMN_ID + " LIMIT ? OFFSET ?",
+                new String[] { String.valueOf(afterId), String.valueOf(limit), String.valueOf(skip) });
+        try {
+            while (c.moveToNext())
+                items.add(readItem(c));
         }
         finally {
             c.close();
         }
         return items;
     }
+
+    /**
+     * Returns the ID of the item a number of items after the item with the given ID, reading only
+     * the primary key, so that a page can be found without loading the pages before it.
+     *
+     * @param afterId   The ID of the item to count from, or 0 to count from the start
+     * @param offset    The number of items to skip past it
+     * @return          The ID of the item, or -1 if there are not that many items
+     */
+    public long getItemIdAfter(long afterId, int offset) {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery("SELECT " + COLUMN_ID + " FROM " + TABLE_ITEMS + " WHERE " + STORED_ITEM +
+                " AND " + COLUMN_ID + " > ? ORDER BY " + COLUMN_ID + " LIMIT 1 OFFSET ?",
+                new String[] { String.valueOf(afterId), String.valueOf(offset) });
+        try {
+            return c.moveToNext() ? c.getLong(0) : -1;
+        }
+        finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Returns the number of stored items.
+     *
+     * @return The number of items
+     */
+    public int getItemCount() {
+        return countItems("", null);
+    }
+
+    /**
+     * Returns the number of items added before the item with the given ID, which is its position
+     * in the order the items were added.
+     *
+     * @param id    The ID of the item
+     * @return      The number of items before it
+     */
+    public int getItemPosition(long id) {
+        return countItems(" AND " + COLUMN_ID + " < ?", new String[] { String.valueOf(id) });
+    }
+
+    /**
+     * Count the stored items matching a condition.
+     *
+     * @param condition The condition to add to the query, or an empty string
+     * @param args      The condition's arguments, or null
+     * @return          The number of matching items
+     */
+    private int countItems(String condition, String[] args) {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_ITEMS + " WHERE " + STORED_ITEM + condition, args);
+        try {
+            return c.moveToNext() ? c.getInt(0) : 0;
+        }
+        finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Build an Item from the current row of a cursor over ITEM_COLUMNS, and remember the
+     * validators stored with it.
+     *
+     * @param c The cursor
+     * @return  The Item
+     */
+    private static Item readItem(Cursor c) {
+        String name = c.getString(1);
+        double initPrice = c.getLong(2) / 100.0;
+        double currPrice = c.getLong(3) / 100.0;
+        double percChange = c.getDouble(4);
+        String url = c.getString(5);
+        long dateAdded = c.getLong(6);
+        Item item = new Item(name, initPrice, currPrice, percChange, url, dateAdded);
+        item.setId(c.getLong(0));
+        ValidatorStore.getInstance().put(url, c.getString(7), c.getString(8), currPrice);
+        return item;
+    }
+
+    /**
+     * Save the refreshed prices of many items, along with the validators of the responses they
+     * came from, in a single transaction, so that a whole refresh is persisted at once or not at
+     * all. The update statements are compiled once and reused for every item, instead of being
+     * built and parsed per row. An item whose validators the ValidatorStore has forgotten to make
+     * room keeps the validators stored with it. Items that have not changed since they were last
+     * saved are skipped, and the others are marked saved once the transaction commits. Each item's
+     * prices are written from a single PriceSnapshot, so a price updated meanwhile is never half
+     * saved.
+     *
+     * @param items The refreshed items
+     * @return      The number of rows updated
+     */
+    public int saveRefreshedPrices(Collection<Item> items) {
+        List<Item> changed = new ArrayList<>();
+        for (Item item : items)
+            if (item.getId() > 0 && item.isDirty())
+                changed.add(item);
+        if (changed.isEmpty())
+            return 0;
+        int[] versions = new int[changed.size()];
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_ITEMS + " SET " +
+                COLUMN_CURR_PRICE + " = ?, " + COLUMN_PERC_CHANGE + " = ?, " +
+                COLUMN_ETAG + " = ?, " + COLUMN_LAST_MODIFIED + " = ?, " + COLUMN_INIT_PRICE + " = ? WHERE " +
+                COLUMN_ID + " = ?");
+        SQLiteStatement updatePrices = db.compileStatement("UPDATE " + TABLE_ITEMS + " SET " +
+                COLUMN_CURR_PRICE + " = ?, " + COLUMN_PERC_CHANGE + " = ?, " + COLUMN_INIT_PRICE + " = ? WHERE " +
+                COLUMN_ID + " = ?");
+        int updated = 0;
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < versions.length; i++) {
+                Item item = changed.get(i);
+                versions[i] = item.getVersion();
+                PriceSnapshot price = item.getPriceSnapshot();
+                if (!ValidatorStore.getInstance().remembers(item.getURL())) {
+                    updatePrices.bindLong(1, price.getCurrPriceCents());
+                    updatePrices.bindDouble(2, price.getPercChange());
+                    updatePrices.bindLong(3, price.getInitPriceCents());
+                    updatePrices.bindLong(4, item.getId());
+                    updated += updatePrices.executeUpdateDelete();
+                    continue;
+                }
+                ValidatorStore.Validator validator = ValidatorStore.getInstance().get(item.getURL());
+                update.clearBindings();
+                update.bindLong(1, price.getCurrPriceCents());
+                update.bindDouble(2, price.getPercChange());
+                bindStringOrNull(update, 3, validator == null ? null : validator.getETag());
+                bindStringOrNull(update, 4, validator == null ? null : validator.getLastModified());
+                update.bindLong(5, price.getInitPriceCents());
+                update.bindLong(6, item.getId());
+                updated += update.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+            update.close();
+            updatePrices.close();
+        }
+        for (int i = 0; i < versions.length; i++)
+            changed.get(i).markSaved(versions[i]);
+        return updated;
+    }
+
+    /**
+     * Append observed prices to the price history in a single transaction, reusing one compiled
+     * insert statement for every observation. Observations are queued before they are written,
+     * so the item may have been deleted meanwhile; the insert checks that the item still exists,
+     * so that the history of a deleted item is never written after deleteItem removed it.
+     *
+     * @param points The observed prices
+     */
+    public void appendPriceHistory(Collection<PricePoint> points) {
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_PRICE_HISTORY + " (" +
+                COLUMN_ITEM_ID + ", " + COLUMN_TIME + ", " + COLUMN_RESOLUTION + ", " + COLUMN_PRICE + ", " +
+                COLUMN_MIN_PRICE + ", " + COLUMN_MAX_PRICE + ", " + COLUMN_SAMPLES + ") SELECT ?, ?, ?, ?, ?, ?, ?" +
+                " WHERE EXISTS (SELECT 1 FROM " + TABLE_ITEMS + " WHERE " + COLUMN_ID + " = ?1)");
+        db.beginTransactionNonExclusive();
+        try {
+            for (PricePoint point : points) {
+                insert.bindLong(1, point.getItemId());
+                insert.bindLong(2, point.getTime());
+                insert.bindLong(3, point.getResolution());
+                insert.bindLong(4, point.getPriceCents());
+                insert.bindLong(5, point.getMinCents());
+                insert.bindLong(6, point.getMaxCents());
+                insert.bindLong(7, point.getSamples());
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+            insert.close();
+        }
+    }
+
+    /**
+     * Returns the price history of an item over a period, oldest first. Old history is only
+     * available as hourly or daily aggregates.
+     *
+     * @param itemId    The database ID of the item
+     * @param from      The start of the period, inclusive, in milliseconds since the epoch
+     * @param to        The end of the period, exclusive, in milliseconds since the epoch
+     * @return          The item's price points within the period
+     */
+    public List<PricePoint> getPriceHistory(long itemId, long from, long to) {
+        List<PricePoint> points = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery("SELECT " + COLUMN_TIME + ", " + COLUMN_RESOLUTION + ", " + COLUMN_PRICE + ", " +
+                COLUMN_MIN_PRICE + ", " + COLUMN_MAX_PRICE + ", " + COLUMN_SAMPLES + " FROM " + TABLE_PRICE_HISTORY +
+                " WHERE " + COLUMN_ITEM_ID + " = ? AND " + COLUMN_TIME + " >= ? AND " + COLUMN_TIME + " < ?" +
+                " ORDER BY " + COLUMN_TIME,
+                new String[] { String.valueOf(itemId), String.valueOf(from), String.valueOf(to) });
+        try {
+            while (c.moveToNext())
+                points.add(new PricePoint(itemId, c.getLong(0), c.getInt(1), c.getLong(2),
+                        c.getLong(3), c.getLong(4), c.getInt(5)));
+        }
+        finally {
+            c.close();
+        }
+        return points;
+    }
+
+    /**
+     * Returns the price an item had at a given time: the latest price point at or before it.
+     *
+     * @param itemId    The database ID of the item
+     * @param time      The time, in milliseconds since the epoch
+     * @return          The latest price point at or before the time, or null if there is none
+     */
+    public PricePoint getPriceAt(long itemId, long time) {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery("SELECT " + COLUMN_TIME + ", " + COLUMN_RESOLUTION + ", " + COLUMN_PRICE + ", " +
+                COLUMN_MIN_PRICE + ", " + COLUMN_MAX_PRICE + ", " + COLUMN_SAMPLES + " FROM " + TABLE_PRICE_HISTORY +
+                " WHERE " + COLUMN_ITEM_ID + " = ? AND " + COLUMN_TIME + " <= ?" +
+                " ORDER BY " + COLUMN_TIME + " DESC LIMIT 1",
+                new String[] { String.valueOf(itemId), String.valueOf(time) });
+        try {
+            if (!c.moveToNext())
+                return null;
+            return new PricePoint(itemId, c.getLong(0), c.getInt(1), c.getLong(2), c.getLong(3), c.getLong(4), c.getInt(5));
+        }
+        finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Downsample old price history in a single transaction: observations older than the raw
+     * retention are replaced by one aggregate per item and hour, hourly aggregates older than the
+     * hourly retention by one per item and day, and daily aggregates older than the daily
+     * retention are dropped. Only whole hours and days are downsampled, and hours and days are
+     * counted in UTC.
+     *
+     * @param now           The current time, in milliseconds since the epoch
+     * @param rawMillis     The age after which observations are downsampled into hourly aggregates
+     * @param hourlyMillis  The age after which hourly aggregates are downsampled into daily aggregates
+     * @param dailyMillis   The age after which daily aggregates are dropped
+     */
+    public void compactPriceHistory(long now, long rawMillis, long hourlyMillis, long dailyMillis) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            downsample(db, PricePoint.RESOLUTION_RAW, PricePoint.RESOLUTION_HOURLY, HOUR_MILLIS,
+                    (now - rawMillis) / HOUR_MILLIS * HOUR_MILLIS);
+            downsample(db, PricePoint.RESOLUTION_HOURLY, PricePoint.RESOLUTION_DAILY, DAY_MILLIS,
+                    (now - hourlyMillis) / DAY_MILLIS * DAY_MILLIS);
+            db.delete(TABLE_PRICE_HISTORY, COLUMN_RESOLUTION + " = ? AND " + COLUMN_TIME + " < ?",
+                    new String[] { String.valueOf(PricePoint.RESOLUTION_DAILY), String.valueOf(now - dailyMillis) });
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Replace the price points of a resolution older than the cutoff by one aggregate per item
+     * and period of the coarser resolution. The aggregate's price is the average of the points it
+     * replaces, weighted by how many observations each stands for.
+     *
+     * @param db        The database, in a transaction
+     * @param from      The resolution of the points to replace
+     * @param to        The resolution of the aggregates
+     * @param period    The length of an aggregate's period, in milliseconds
+     * @param cutoff    The time before which points are replaced, on a period boundary
+     */
+    private static void downsample(SQLiteDatabase db, int from, int to, long period, long cutoff) {
+        db.execSQL("INSERT INTO " + TABLE_PRICE_HISTORY + " (" + COLUMN_ITEM_ID + ", " + COLUMN_TIME + ", " +
+                COLUMN_RESOLUTION + ", " + COLUMN_PRICE + ", " + COLUMN_MIN_PRICE + ", " + COLUMN_MAX_PRICE + ", " +
+                COLUMN_SAMPLES + ") SELECT " + COLUMN_ITEM_ID + ", (" + COLUMN_TIME + " / " + period + ") * " + period +
+                ", " + to + ", CAST(ROUND(SUM(" + COLUMN_PRICE + " * " + COLUMN_SAMPLES + ") * 1.0 / SUM(" +
+                COLUMN_SAMPLES + ")) AS INTEGER), MIN(" + COLUMN_MIN_PRICE + "), MAX(" + COLUMN_MAX_PRICE + "), SUM(" +
+                COLUMN_SAMPLES + ") FROM " + TABLE_PRICE_HISTORY + " WHERE " + COLUMN_RESOLUTION + " = ? AND " +
+                COLUMN_TIME + " < ? GROUP BY " + COLUMN_ITEM_ID + ", " + COLUMN_TIME + " / " + period,
+                new Object[] { from, cutoff });
+        db.delete(TABLE_PRICE_HISTORY, COLUMN_RESOLUTION + " = ? AND " + COLUMN_TIME + " < ?",
+                new String[] { String.valueOf(from), String.valueOf(cutoff) });
+    }
+
+    /**
+     * Bind a string to a statement's parameter, or null if there is no string.
+     *
+     * @param statement The statement
+     * @param index     The 1-based index of the parameter
+     * @param value     The string, or null
+     */
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null)
+            statement.bindNull(index);
+        else
+            statement.bindString(index, value);
+    }
+
+    /**
+     * Put the validators remembered for the url into the values, or nulls if none are remembered.
+     *
+     * @param values    The values of the item's row
+     * @param url       The item's url
+     */
+    private static void putValidators(ContentValues values, String url) {
+        ValidatorStore.Validator validator = ValidatorStore.getInstance().get(url);
+        values.put(COLUMN_ETAG, validator == null ? null : validator.getETag());
+        values.put(COLUMN_LAST_MODIFIED, validator == null ? null : validator.getLastModified());
+    }
 }
@@ -0,0 +1,19 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  A PriceNotFoundException thrown when a fetch was cancelled or aborted because its result no
+ *  longer mattered, such as when the activity that asked for it finished. It says nothing about
+ *  the Web service, so it is neither counted as a failure of the service nor retried.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class FetchCancelledException extends PriceNotFoundException {
+    public FetchCancelledException(String message) {
+        super(message);
+    }
+
+    public FetchCancelledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,476 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import android.util.Log;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  The HTTP layer used by the PriceFinderClient. Connections are kept alive and handed back to the
+ *  platform's connection pool after every exchange, instead of being disconnected, so that later
+ *  queries to the same host reuse the open socket instead of paying for a new TCP handshake. For a
+ *  socket to be reusable its response body has to be read to the end and closed, so the transport
+ *  drains whatever the ResponseHandler leaves unread, unless too much is left, in which case the
+ *  connection is closed instead of reading an oversized body to its end. Idle pooled connections
+ *  are evicted after the keep-alive duration. Requests to a single host are paced by a token
+ *  bucket, and the number in flight at once is bounded by an adaptive limit, which backs off when
+ *  the host slows down or pushes back and probes upward, never past the connections allowed per
+ *  host, while it is healthy.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class HttpTransport {
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;       /* Default connections per host */
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 5 * 60 * 1000; /* Default idle connection lifetime */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10 * 1000; /* Default time allowed to connect */
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 15 * 1000;    /* Default time allowed between reads */
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 20.0;      /* Default sustained request rate per host */
+    public static final int DEFAULT_BURST = 20;                         /* Default request burst per host */
+    private static final int DRAIN_BUFFER_SIZE = 1024;                  /* Size of the buffer used to drain bodies */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;               /* Most bytes drained to reuse a connection */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;              /* Response code of a rate-limited request */
+
+    private final int maxConnectionsPerHost;                            /* Connections allowed per host at once */
+    private final ConcurrentHashMap<String, HostLimits> hostLimits;     /* Rate and concurrency limits per host */
+    private volatile double requestsPerSecond;                          /* Sustained request rate per host */
+    private volatile int burst;                                         /* Request burst per host */
+    private volatile boolean keepAlive;                                 /* Whether connections are reused */
+    private final AtomicLong requestCount;                              /* Exchanges made over the transport */
+    private final AtomicLong requestNanos;                              /* Total time spent in exchanges */
+    private final AtomicLong bytesReceived;                             /* Response body bytes read */
+    private volatile int connectTimeoutMillis;                          /* Time allowed to connect */
+    private volatile int readTimeoutMillis;                             /* Time allowed between reads */
+    private final ConcurrentHashMap<Thread, HttpURLConnection> active;  /* In-flight connections by thread */
+
+    /* Keep-alive defaults for the platform's connection pool, unless the application configured it already */
+    static {
+        if (System.getProperty("http.keepAlive") == null)
+            System.setProperty("http.keepAlive", "true");
+        if (System.getProperty("http.maxConnections") == null)
+            System.setProperty("http.maxConnections", String.valueOf(DEFAULT_MAX_CONNECTIONS_PER_HOST));
+        if (System.getProperty("http.keepAliveDuration") == null)
+            System.setProperty("http.keepAliveDuration", String.valueOf(DEFAULT_KEEP_ALIVE_MILLIS));
+    }
+
+    /**
+     * The rate and concurrency limits of a single host.
+     */
+    private static class HostLimits {
+        private final TokenBucket bucket;           /* Paces the requests sent to the host */
+        private final AdaptiveLimiter limiter;      /* Bounds the requests in flight to the host */
+
+        private HostLimits(TokenBucket bucket, AdaptiveLimiter limiter) {
+            this.bucket = bucket;
+            this.limiter = limiter;
+        }
+    }
+
+    /**
+     * Thrown for an exchange that was aborted, or whose thread was interrupted, because its
+     * result no longer mattered.
+     */
+    private static class CancelledException extends InterruptedIOException {
+        private CancelledException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Handles the response of a single exchange made over the HttpTransport.
+     *
+     * @param <T> The type of the value read from the response
+     */
+    public interface ResponseHandler<T> {
+        /**
+         * Read a value from the response. The body does not need to be read to the end, or
+         * closed; the transport does both once the handler returns.
+         *
+         * @param con           The connection, whose response code and headers are available
+         * @param body          The response body, or the error body for unsuccessful responses (may be null)
+         * @return              The value read from the response
+         * @throws IOException  Throw in case the response cannot be read
+         */
+        T handle(HttpURLConnection con, InputStream body) throws IOException;
+    }
+
+    /**
+     * The default constructor for an HttpTransport.
+     */
+    public HttpTransport() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+    }
+
+    /**
+     * The constructor for an HttpTransport allowing a given number of requests in flight to a
+     * single host. The platform's connection pool is shared by the whole process and is not
+     * configured by the transport; see configurePool().
+     *
+     * @param maxConnectionsPerHost The maximum number of requests in flight to a single host at once
+     */
+    public HttpTransport(int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost < 1)
+            throw new IllegalArgumentException("Connections per host must be positive.");
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        hostLimits = new ConcurrentHashMap<>();
+        requestsPerSecond = DEFAULT_REQUESTS_PER_SECOND;
+        burst = DEFAULT_BURST;
+        keepAlive = true;
+        requestCount = new AtomicLong();
+        requestNanos = new AtomicLong();
+        bytesReceived = new AtomicLong();
+        connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+        active = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Configure the platform's HttpURLConnection pool, which every HttpTransport and every other
+     * HttpURLConnection of the process share. This is application-level configuration: the pool
+     * reads it the first time a connection is opened, so it has to be called once at startup,
+     * before any query is made. Until then the pool keeps connections alive with the default
+     * connections per host and keep-alive duration.
+     *
+     * @param maxIdleConnectionsPerHost The maximum number of idle connections kept per host
+     * @param keepAliveMillis           How long an idle pooled connection is kept before it is evicted
+     */
+    public static void configurePool(int maxIdleConnectionsPerHost, long keepAliveMillis) {
+        if (maxIdleConnectionsPerHost < 1 || keepAliveMillis < 0)
+            throw new IllegalArgumentException("Invalid connection pool configuration.");
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(maxIdleConnectionsPerHost));
+        System.setProperty("http.keepAliveDuration", String.valueOf(keepAliveMillis));
+    }
+
+    /**
+     * Make a GET request and hand its response to the handler.
+     *
+     * @param url           The URL to request
+     * @param handler       The handler reading the response
+     * @param <T>           The type of the value read from the response
+     * @return              The value read by the handler
+     * @throws IOException  Throw in case the exchange fails
+     */
+    public <T> T get(URL url, ResponseHandler<T> handler) throws IOException {
+        return get(url, null, handler);
+    }
+
+    /**
+     * Make a GET request with the given extra request headers, such as validators of a
+     * conditional request, and hand its response to the handler.
+     *
+     * @param url           The URL to request
+     * @param headers       The request headers to add, by name (may be null)
+     * @param handler       The handler reading the response
+     * @param <T>           The type of the value read from the response
+     * @return              The value read by the handler
+     * @throws IOException  Throw in case the exchange fails
+     */
+    public <T> T get(URL url, Map<String, String> headers, ResponseHandler<T> handler) throws IOException {
+        return execute(url, "GET", headers, null, null, handler);
+    }
+
+    /**
+     * Make a POST request with the given body and hand its response to the handler.
+     *
+     * @param url           The URL to request
+     * @param contentType   The content type of the request body
+     * @param body          The request body
+     * @param handler       The handler reading the response
+     * @param <T>           The type of the value read from the response
+     * @return              The value read by the handler
+     * @throws IOException  Throw in case the exchange fails
+     */
+    public <T> T post(URL url, String contentType, byte[] body, ResponseHandler<T> handler) throws IOException {
+        return execute(url, "POST", null, contentType, body, handler);
+    }
+
+    /**
+     * Set whether connections are handed back to the pool after every exchange. With keep-alive
+     * off every connection is closed once its exchange is done, which is only useful to compare
+     * refresh latency with and without connection reuse.
+     *
+     * @param keepAlive Whether connections are reused
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Set how long to wait for a connection to be established before giving up.
+     *
+     * @param connectTimeoutMillis The connect timeout, in milliseconds
+     */
+    public void setConnectTimeout(int connectTimeoutMillis) {
+        if (connectTimeoutMillis < 0)
+            throw new IllegalArgumentException("Timeout must not be negative.");
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    /**
+     * Set how long to wait for the server to send data before giving up.
+     *
+     * @param readTimeoutMillis The read timeout, in milliseconds
+     */
+    public void setReadTimeout(int readTimeoutMillis) {
+        if (readTimeoutMillis < 0)
+            throw new IllegalArgumentException("Timeout must not be negative.");
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Set how many requests per second may be sent to a single host, and in how large a burst.
+     * Takes effect for hosts not contacted yet.
+     *
+     * @param requestsPerSecond The sustained request rate per host
+     * @param burst             The largest burst of requests per host
+     */
+    public void setRateLimit(double requestsPerSecond, int burst) {
+        if (requestsPerSecond <= 0 || burst < 1)
+            throw new IllegalArgumentException("Rate and burst must be positive.");
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+    }
+
+    /**
+     * Getter for the number of requests currently allowed in flight to a host.
+     *
+     * @param host  The host name
+     * @param port  The port, or -1 for the default port
+     * @return      The host's current concurrency limit, or the connections allowed per host if it
+     *              has not been contacted yet
+     */
+    public int getConcurrencyLimit(String host, int port) {
+        HostLimits limits = hostLimits.get(host + ":" + port);
+        return limits == null ? maxConnectionsPerHost : limits.limiter.getLimit();
+    }
+
+    /**
+     * Abort the exchange the given thread is in the middle of, if any, by closing its connection.
+     * The blocked thread then fails with an IOException instead of waiting for its read timeout,
+     * one for which isCancellation() is true.
+     *
+     * @param worker The thread whose exchange should be aborted
+     */
+    public void abort(Thread worker) {
+        HttpURLConnection con = active.remove(worker);
+        if (con != null) {
+            Log.d("HttpTransport.abort", "Aborting exchange with " + con.getURL().getHost());
+            con.disconnect();
+        }
+    }
+
+    /**
+     * Returns whether an exchange failed because it was aborted, or because its thread was
+     * interrupted, rather than because of the host or the network.
+     *
+     * @param e The IOException the exchange failed with
+     * @return  Whether the exchange was cancelled
+     */
+    public static boolean isCancellation(IOException e) {
+        return e instanceof CancelledException;
+    }
+
+    /**
+     * Getter for the number of exchanges made over the transport.
+     *
+     * @return The number of exchanges
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Getter for the average duration of an exchange, from opening the connection to draining the
+     * response.
+     *
+     * @return The average exchange latency, in milliseconds
+     */
+    public double getAverageLatencyMillis() {
+        long count = requestCount.get();
+        return count == 0 ? 0.0 : requestNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * Getter for the number of response body bytes read over the transport, including bytes
+     * drained so that connections could be reused.
+     *
+     * @return The number of bytes received
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Make a single exchange once the host's rate and concurrency limits allow it, and let the
+     * concurrency limit adapt to how the exchange went.
+     *
+     * @param url           The URL to request
+     * @param method        The request method
+     * @param headers       The request headers to add, by name, or null
+     * @param contentType   The content type of the request body, or null
+     * @param body          The request body, or null
+     * @param handler       The handler reading the response
+     * @param <T>           The type of the value read from the response
+     * @return              The value read by the handler
+     * @throws IOException  Throw in case the exchange fails, or was cancelled
+     */
+    private <T> T execute(URL url, String method, Map<String, String> headers, String contentType, byte[] body,
+                          ResponseHandler<T> handler) throws IOException {
+        HostLimits limits = limitsFor(url);
+        try {
+            limits.bucket.acquire();
+            limits.limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancelledException("Interrupted while waiting for a connection to " + url.getHost());
+        }
+        long start = System.nanoTime();
+        HttpURLConnection con = null;
+        boolean reusable = false;
+        boolean sampled = false;        /* Whether the exchange says how the host is coping */
+        boolean dropped = false;        /* Whether the host failed or pushed back */
+        Thread self = Thread.currentThread();
+        try {
+            con = (HttpURLConnection) url.openConnection();
+            active.put(self, con);
+            if (self.isInterrupted())
+                throw new CancelledException("Exchange with " + url.getHost() + " was cancelled");
+            con.setConnectTimeout(connectTimeoutMillis);
+            con.setReadTimeout(readTimeoutMillis);
+            con.setRequestMethod(method);
+            if (!keepAlive)
+                con.setRequestProperty("Connection", "close");
+            if (headers != null)
+                for (Map.Entry<String, String> header : headers.entrySet())
+                    con.setRequestProperty(header.getKey(), header.getValue());
+            if (body != null) {
+                con.setDoOutput(true);
+                con.setRequestProperty("Content-Type", contentType);
+                con.setFixedLengthStreamingMode(body.length);
+                OutputStream out = con.getOutputStream();
+                try {
+                    out.write(body);
+                } finally {
+                    out.close();
+                }
+            }
+            int code = con.getResponseCode();
+            sampled = true;
+            dropped = code == HTTP_TOO_MANY_REQUESTS || code >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+            InputStream in = code < HttpURLConnection.HTTP_BAD_REQUEST ? con.getInputStream() : con.getErrorStream();
+            if (in != null)
+                in = new CountingInputStream(in);
+            try {
+                T result = handler.handle(con, in);
+                reusable = keepAlive && (in == null || drain(in));
+                return result;
+            } finally {
+                if (in != null)
+                    in.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            /* Closing a connection under a blocked exchange may surface as either kind of exception */
+            boolean aborted = con != null && active.get(self) != con;  /* abort() took it out of the active map */
+            if (!(e instanceof CancelledException || aborted || self.isInterrupted())) {
+                /* Only a timeout or a reset connection says the host is struggling, unlike a local failure */
+                if (e instanceof SocketTimeoutException || e instanceof SocketException)
+                    sampled = dropped = true;
+                throw e;
+            }
+            sampled = false;
+            if (e instanceof CancelledException)
+                throw e;
+            CancelledException cancelled = new CancelledException("Exchange with " + url.getHost() + " was cancelled");
+            cancelled.initCause(e);
+            throw cancelled;
+        } finally {
+            if (con != null)
+                active.remove(self, con);
+            if (con != null && !reusable)
+                con.disconnect();
+            long elapsed = System.nanoTime() - start;
+            if (sampled)
+                limits.limiter.release(elapsed, dropped);
+            else
+                limits.limiter.release();
+            requestCount.incrementAndGet();
+            requestNanos.addAndGet(elapsed);
+        }
+    }
+
+    /**
+     * Returns the rate and concurrency limits of the URL's host, creating them on first use. The
+     * concurrency limit starts at half the connections allowed per host.
+     *
+     * @param url   The URL whose host's limits are returned
+     * @return      The host's limits
+     */
+    private HostLimits limitsFor(URL url) {
+        String host = url.getHost() + ":" + url.getPort();
+        HostLimits limits = hostLimits.get(host);
+        if (limits == null) {
+            HostLimits created = new HostLimits(new TokenBucket(requestsPerSecond, burst),
+                    new AdaptiveLimiter(Math.max(1, maxConnectionsPerHost / 2), 1, maxConnectionsPerHost));
+            limits = hostLimits.putIfAbsent(host, created);
+            if (limits == null)
+                limits = created;
+        }
+        return limits;
+    }
+
+    /**
+     * Read whatever is left of a response body, so that its connection can be reused. Gives up
+     * once more than MAX_DRAIN_BYTES were discarded, since closing the connection is then cheaper.
+     *
+     * @param in            The response body
+     * @return              Whether the body was read to its end
+     * @throws IOException  Throw in case the body cannot be read
+     */
+    private static boolean drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+        int drained = 0;
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            drained += n;
+            if (drained > MAX_DRAIN_BYTES)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Counts the bytes read from a response body into the transport's received bytes.
+     */
+    private class CountingInputStream extends FilterInputStream {
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1)
+                bytesReceived.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0)
+                bytesReceived.addAndGet(n);
+            return n;
+        }
+    }
+}
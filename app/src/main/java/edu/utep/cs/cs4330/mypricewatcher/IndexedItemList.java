@@ -0,0 +1,321 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  An in-memory list of Items that finds an Item from its database ID in constant time, and its
+ *  position in time logarithmic in the size of the list. Items are kept in slots in the order they
+ *  were added; removing an Item only empties its slot, and a Fenwick tree counting the filled
+ *  slots turns a slot into a position and back. The slots are compacted once most of them are
+ *  empty, so that the list never holds more than twice the slots it needs. A snapshot of the
+ *  list is copied straight from the slots the first time it is asked for after a change, and
+ *  handed out again until the next one. The list itself is not thread-safe; the Tracker holds
+ *  its lock around every use of it.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class IndexedItemList extends AbstractList<Item> implements ItemIndex, ItemSnapshotSource {
+    private static final int INITIAL_CAPACITY = 16;     /* Slots of a new list */
+
+    private Item[] slots;                               /* Items in the order they were added, null once removed */
+    private int[] tree;                                 /* Fenwick tree of the number of filled slots, 1-based */
+    private int used;                                   /* Number of slots handed out */
+    private int size;                                   /* Number of filled slots */
+    private final Map<Long, Integer> slotById;          /* Slot of every stored Item, by its database ID */
+    private List<Item> snapshot;                        /* Snapshot handed out since the last change, or null */
+
+    /**
+     * The constructor for an empty IndexedItemList.
+     */
+    public IndexedItemList() {
+        slots = new Item[INITIAL_CAPACITY];
+        tree = new int[INITIAL_CAPACITY + 1];
+        slotById = new HashMap<>();
+    }
+
+    /**
+     * The constructor for an IndexedItemList holding the given Items, in order.
+     *
+     * @param items The Items
+     */
+    public IndexedItemList(Collection<Item> items) {
+        this();
+        for (Item item : items)
+            add(item);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Item get(int index) {
+        return slots[slotAt(index)];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add an Item to the end of the list, in constant amortized time.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(Item item) {
+        if (used == slots.length)
+            rebuild(Math.max(INITIAL_CAPACITY, 2 * size + 1));
+        int slot = used++;
+        slots[slot] = item;
+        increment(slot, 1);
+        size++;
+        index(item, slot);
+        snapshot = null;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Insert an Item before the end of the list, which moves every Item after it.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(int index, Item item) {
+        if (index == size) {
+            add(item);
+            return;
+        }
+        int slot = slotAt(index);
+        Item[] old = slots;
+        int oldUsed = used;
+        slots = new Item[Math.max(INITIAL_CAPACITY, 2 * (size + 1))];
+        tree = new int[slots.length + 1];
+        slotById.clear();
+        used = 0;
+        size = 0;
+        for (int i = 0; i < oldUsed; i++) {
+            if (i == slot)
+                add(item);
+            if (old[i] != null)
+                add(old[i]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Item set(int index, Item item) {
+        int slot = slotAt(index);
+        Item old = slots[slot];
+        unindex(old);
+        slots[slot] = item;
+        index(item, slot);
+        snapshot = null;
+        return old;
+    }
+
+    /**
+     * Remove the Item at the position by emptying its slot, in logarithmic time.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Item remove(int index) {
+        int slot = slotAt(index);
+        Item removed = slots[slot];
+        slots[slot] = null;
+        increment(slot, -1);
+        size--;
+        unindex(removed);
+        snapshot = null;
+        modCount++;
+        if (used > INITIAL_CAPACITY && size < used / 2)
+            rebuild(Math.max(INITIAL_CAPACITY, 2 * size));
+        return removed;
+    }
+
+    /**
+     * Remove an Item, found by its database ID if it is stored.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index == -1)
+            return false;
+        remove(index);
+        return true;
+    }
+
+    /**
+     * Returns the position of an Item, found by its database ID if it is stored, and by searching
+     * the list otherwise.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public int indexOf(Object o) {
+        if (o instanceof Item && ((Item) o).getId() > 0)
+            return positionOf(((Item) o).getId());
+        return super.indexOf(o);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        slots = new Item[INITIAL_CAPACITY];
+        tree = new int[INITIAL_CAPACITY + 1];
+        slotById.clear();
+        used = 0;
+        size = 0;
+        snapshot = null;
+        modCount++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int positionOf(long id) {
+        Integer slot = slotById.get(id);
+        return slot == null ? -1 : countBefore(slot);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Item getById(long id) {
+        Integer slot = slotById.get(id);
+        return slot == null ? null : slots[slot];
+    }
+
+    /**
+     * Returns a copy of the Items, taken from the slots in one pass, or the copy already handed
+     * out if the list has not changed since.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Item> snapshot() {
+        if (snapshot == null) {
+            Item[] copy = new Item[size];
+            int count = 0;
+            for (int i = 0; i < used; i++)
+                if (slots[i] != null)
+                    copy[count++] = slots[i];
+            snapshot = Collections.unmodifiableList(Arrays.asList(copy));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the slot holding the Item at a position, by walking down the Fenwick tree.
+     *
+     * @param index The position
+     * @return      The slot
+     */
+    private int slotAt(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        int node = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(slots.length); step > 0; step >>= 1) {
+            int next = node + step;
+            if (next <= slots.length && tree[next] < remaining) {
+                node = next;
+                remaining -= tree[next];
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the number of filled slots before a slot.
+     *
+     * @param slot  The slot
+     * @return      The number of filled slots before it
+     */
+    private int countBefore(int slot) {
+        int count = 0;
+        for (int node = slot; node > 0; node -= node & -node)
+            count += tree[node];
+        return count;
+    }
+
+    /**
+     * Add to the count of filled slots at a slot.
+     *
+     * @param slot  The slot
+     * @param delta 1 if the slot was filled, -1 if it was emptied
+     */
+    private void increment(int slot, int delta) {
+        for (int node = slot + 1; node <= slots.length; node += node & -node)
+            tree[node] += delta;
+    }
+
+    /**
+     * Move the Items into a new set of slots without empty ones, and rebuild the tree over them.
+     *
+     * @param capacity The number of slots
+     */
+    private void rebuild(int capacity) {
+        Item[] old = slots;
+        int oldUsed = used;
+        slots = new Item[capacity];
+        tree = new int[capacity + 1];
+        slotById.clear();
+        used = 0;
+        for (int i = 0; i < oldUsed; i++) {
+            if (old[i] == null)
+                continue;
+            slots[used] = old[i];
+            index(old[i], used);
+            used++;
+        }
+        for (int node = 1; node <= used; node++)
+            tree[node] += 1;
+        for (int node = 1; node <= capacity; node++) {
+            int parent = node + (node & -node);
+            if (parent <= capacity)
+                tree[parent] += tree[node];
+        }
+    }
+
+    /**
+     * Remember the slot of a stored Item.
+     *
+     * @param item  The Item
+     * @param slot  Its slot
+     */
+    private void index(Item item, int slot) {
+        if (item != null && item.getId() > 0)
+            slotById.put(item.getId(), slot);
+    }
+
+    /**
+     * Forget the slot of a stored Item.
+     *
+     * @param item The Item
+     */
+    private void unindex(Item item) {
+        if (item != null && item.getId() > 0)
+            slotById.remove(item.getId());
+    }
+}
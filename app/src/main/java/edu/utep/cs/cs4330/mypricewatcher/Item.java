@@ -2,10 +2,11 @@ package edu.utep.cs.cs4330.mypricewatcher;
 
 import android.os.Parcel;
 import android.os.Parcelable;
-import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Encapsulates an item and information about it, including
@@ -13,27 +14,31 @@ import java.util.Calendar;
  * is created, the current price (which will be updated and fetched by
  * the PriceFinder object, the percentage change (which will be updated
  * when the current price is updated, the web URL associated with the
- * item, and the a String representation of the date when the object was created.
+ * item, and the date when the object was created. Every change to the
+ * name, url or current price bumps the Item's version, so that only
+ * Items changed since they were last saved are written back. The
+ * prices are held in an immutable PriceSnapshot, replaced whole on
+ * every update, so a reader on any thread sees a current price and a
+ * percentage change that belong together without taking a lock. The
+ * prices are rendered as text by the PriceFormatter once per version,
+ * instead of by shared DecimalFormats on every call.
  *
  * @author Damian Najera
- * @version 1.3
+ * @version 1.5
  */
 public class Item implements Parcelable {
-    private int _id;                            /* Database ID of the item */
-    private String name;                        /* Name of the item */
-    private double initPrice;                   /* Initial price of the item */
-    private double currPrice;                   /* Current (last fetched) priced of the item */
-    private double percChange;                  /* Percentage change from initial to current price */
-    private String url;                         /* The Web URL of the item */
-    private String dateAdded;                   /* String representation of the date the Item was created */
-    private static final PriceFinder priceFinder = new PriceFinderClient();
+    private long _id;                           /* Database ID of the item, 0 until it is stored */
+    private volatile String name;               /* Name of the item */
+    private volatile PriceSnapshot price;       /* Initial and current price of the item, and the change between them */
+    private volatile String url;                /* The Web URL of the item */
+    private long dateAdded;                     /* Milliseconds since the epoch when the Item was created */
+    private int version;                        /* Number of changes to the name, url or current price */
+    private volatile int savedVersion;          /* Version last written to the database */
+    private static final PriceFinder priceFinder = new CachingPriceFinder(
+            new CoalescingPriceFinder(new ResilientPriceFinder(new PriceFinderClient())));
 
     /* Date formatter for displaying dates */
     private static SimpleDateFormat dateFormatter = new SimpleDateFormat("MM/dd/yy", java.util.Locale.US);
-    /* Decimal formatter for percentages */
-    private static final DecimalFormat percFormatter = new DecimalFormat("#0.##%;- #0.##%");
-    /* Decimal formatter for dollar values */
-    private static final DecimalFormat dollarFormatter = new DecimalFormat("$#,##0.00");
 
     /**
      * The default constructor for an Item object.
@@ -43,11 +48,10 @@ public class Item implements Parcelable {
      */
     public Item(String name, String url) {
         this.name = name;
-        initPrice = priceFinder.fetchPrice(url);
-        currPrice = initPrice;
-        percChange = 0.0;
+        long cents = Math.round(priceFinder.fetchPrice(url) * 100);
+        dateAdded = System.currentTimeMillis();
+        price = new PriceSnapshot(cents, cents, 0.0, dateAdded);
         this.url = url;
-        dateAdded = calToDate(Calendar.getInstance());
     }
 
     /**
@@ -56,12 +60,16 @@ public class Item implements Parcelable {
      * @param in The Parcel object encapsulating the Item object
      */
     private Item(Parcel in) {
+        this._id = in.readLong();
         this.name = in.readString();
-        this.initPrice = in.readDouble();
-        this.currPrice = in.readDouble();
-        this.percChange = in.readDouble();
+        long initPriceCents = in.readLong();
+        long currPriceCents = in.readLong();
+        double percChange = in.readDouble();
         this.url = in.readString();
-        this.dateAdded = in.readString();
+        this.dateAdded = in.readLong();
+        this.version = in.readInt();
+        this.savedVersion = in.readInt();
+        this.price = new PriceSnapshot(initPriceCents, currPriceCents, percChange, in.readLong());
     }
 
     /**
@@ -101,22 +109,109 @@ public class Item implements Parcelable {
      */
     @Override
     public void writeToParcel(Parcel parcel, int i) {
+        PriceSnapshot p = price;
+        parcel.writeLong(_id);
         parcel.writeString(name);
-        parcel.writeDouble(initPrice);
-        parcel.writeDouble(currPrice);
-        parcel.writeDouble(percChange);
+        parcel.writeLong(p.getInitPriceCents());
+        parcel.writeLong(p.getCurrPriceCents());
+        parcel.writeDouble(p.getPercChange());
         parcel.writeString(url);
-        parcel.writeString(dateAdded);
+        parcel.writeLong(dateAdded);
+        parcel.writeInt(getVersion());
+        parcel.writeInt(savedVersion);
+        parcel.writeLong(p.getFetchedAt());
     }
 
     /**
-     * Convert Calendar instance into a string representation: MM/dd/yy.
+     * Convert a time into a string representation of its date: MM/dd/yy.
      *
-     * @param c The Calendar instance whose date will be return as a string representation
-     * @return  The string representation of the Calendar instance's date.
+     * @param millis    The time, in milliseconds since the epoch
+     * @return          The string representation of the time's date
      */
-    private static String calToDate(Calendar c) {
-        return dateFormatter.format(c.getTime());
+    private static String millisToDate(long millis) {
+        synchronized (dateFormatter) {
+            return dateFormatter.format(new Date(millis));
+        }
+    }
+
+    /**
+     * Getter for Item's database ID.
+     *
+     * @return The Item's database ID, or 0 if it is not stored yet
+     */
+    public long getId() {
+        return _id;
+    }
+
+    /**
+     * Setter for Item's database ID, once it is stored.
+     *
+     * @param id The Item's database ID
+     */
+    void setId(long id) {
+        _id = id;
+    }
+
+    /**
+     * Getter for the Item's version, which changes every time its name, url or current price does.
+     *
+     * @return The Item's version
+     */
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns whether the Item changed since it was last written to the database.
+     *
+     * @return Whether the Item has unsaved changes
+     */
+    public boolean isDirty() {
+        return getVersion() != savedVersion;
+    }
+
+    /**
+     * Getter for the version of the Item last written to the database.
+     *
+     * @return The saved version
+     */
+    int getSavedVersion() {
+        return savedVersion;
+    }
+
+    /**
+     * Remember that a version of the Item was written to the database. Changes made after that
+     * version was read keep the Item dirty.
+     *
+     * @param version The version that was written
+     */
+    void markSaved(int version) {
+        savedVersion = version;
+    }
+
+    /**
+     * Rename the Item and change its url once the edit has been written to the database. The
+     * edit is applied atomically with respect to every other change of the Item, and it only
+     * marks the Item as saved if the Item was saved before, so that its version moved by this
+     * edit alone; a price fetched before the edit and not written yet keeps the Item dirty, so
+     * that the next refresh still writes it.
+     *
+     * @param name  The Item's new name
+     * @param url   The Item's new url
+     */
+    synchronized void applySavedEdit(String name, String url) {
+        boolean saved = version == savedVersion;
+        setName(name);
+        setURL(url);
+        if (saved)
+            savedVersion = version;
+    }
+
+    /**
+     * Bump the Item's version after a change.
+     */
+    private synchronized void changed() {
+        version++;
     }
 
     /**
@@ -132,7 +227,10 @@ public class Item implements Parcelable {
      * Setter for Item's name.
      */
     public void setName(String name) {
+        if (name == null ? this.name == null : name.equals(this.name))
+            return;
         this.name = name;
+        changed();
     }
 
     /**
@@ -141,7 +239,7 @@ public class Item implements Parcelable {
      * @return The string representation of the Item's initial price
      */
     public String getInitPrice() {
-        return doubleToDollar(initPrice);
+        return price.getInitPriceText();
     }
 
     /**
@@ -150,7 +248,7 @@ public class Item implements Parcelable {
      * @return The string representation of the Item's current price
      */
     public String getCurrPrice() {
-        return doubleToDollar(currPrice);
+        return price.getCurrPriceText();
     }
 
     /**
@@ -159,15 +257,62 @@ public class Item implements Parcelable {
      * @return The string representation of the Item's percentage change
      */
     public String getPercChange() {
-        return doubleToPerc(percChange);
+        return price.getPercChangeText();
+    }
+
+    /**
+     * Getter for Item's initial price in whole cents, as it is stored.
+     *
+     * @return The Item's initial price, in cents
+     */
+    public long getInitPriceCents() {
+        return price.getInitPriceCents();
+    }
+
+    /**
+     * Getter for Item's current price in whole cents, as it is stored.
+     *
+     * @return The Item's current price, in cents
+     */
+    public long getCurrPriceCents() {
+        return price.getCurrPriceCents();
+    }
+
+    /**
+     * Getter for Item's percentage change from its initial price to its current price, as a fraction.
+     *
+     * @return The Item's percentage change, where 0.05 is 5%
+     */
+    public double getPercChangeValue() {
+        return price.getPercChange();
+    }
+
+    /**
+     * Getter for Item's price state: its initial and current prices, the percentage change
+     * between them, and when the current price was fetched. Reading the prices from one snapshot,
+     * rather than through the getters above one at a time, guarantees they belong together.
+     *
+     * @return The Item's current PriceSnapshot
+     */
+    public PriceSnapshot getPriceSnapshot() {
+        return price;
     }
 
     /**
      * Getter for Item's date added string representation associated with the date it was created.
      *
-     * @return The Calendar instance associate with the date it was created
+     * @return The string representation of the date it was created
      */
     public String getDateAdded() {
+        return millisToDate(dateAdded);
+    }
+
+    /**
+     * Getter for the time the Item was created.
+     *
+     * @return The time it was created, in milliseconds since the epoch
+     */
+    public long getDateAddedMillis() {
         return dateAdded;
     }
 
@@ -184,7 +329,10 @@ public class Item implements Parcelable {
      * Setter for the Item's url.
      */
     public void setURL(String url) {
+        if (url == null ? this.url == null : url.equals(this.url))
+            return;
         this.url = url;
+        changed();
     }
 
     /**
@@ -192,35 +340,110 @@ public class Item implements Parcelable {
      * its current price and recalculated the percentage change.
      */
     public void fetchCurrPrice() {
-        currPrice = priceFinder.fetchPrice(this.url);
-        calcPercChange();
+        fetchCurrPrice(false);
     }
 
     /**
-     * Calculates the Item's percentage change for the initial price to the current price.
+     * Invokes the PriceFinder instance to fetch this Item's current price, and then updates
+     * its current price and recalculated the percentage change.
+     *
+     * @param bypassCache Whether a recently fetched price must not be reused
      */
-    private void calcPercChange() {
-        percChange = (currPrice - initPrice) / initPrice;
+    public void fetchCurrPrice(boolean bypassCache) {
+        setCurrPrice(priceFinder.fetchPrice(this.url, bypassCache));
     }
 
     /**
-     * Convert double into a string fomratted as a dollar value.
+     * Invokes the PriceFinder instance to fetch this Item's current price in the background. Once
+     * the price is found, the Item's current price and percentage change are updated before the
+     * callback is notified.
      *
-     * @param d The value of type double that will be formatted into a dollar string representation
-     * @return  The dollar value string representation of the double value
+     * @param callback  The callback to notify once the price is found or cannot be found
+     * @return          The request, which can be cancelled once its result no longer matters
      */
-    private static String doubleToDollar(double d) {
-        return dollarFormatter.format(d);
+    public PriceRequest fetchCurrPriceAsync(PriceCallback callback) {
+        return priceFinder.fetchPriceAsync(this.url, new PriceCallback() {
+            @Override
+            public void onPriceFetched(String url, double price) {
+                setCurrPrice(price);
+                callback.onPriceFetched(url, price);
+            }
+
+            @Override
+            public void onPriceError(String url, Exception error) {
+                callback.onPriceError(url, error);
+            }
+        });
     }
 
     /**
-     * Covert double into a string formatted as a percentage value.
+     * Invokes the PriceFinder instance to fetch the current prices of many Items in a single
+     * batch, and then updates the current price and percentage change of every Item whose
+     * price was found.
      *
-     * @param d The value of type double that will be formatted into a percentage string representation.
-     * @return  The percentage string representation of the double value
+     * @param items The Items whose prices should be fetched
+     * @return      The Items whose price could not be found
      */
-    private static String doubleToPerc(double d) {
-        return percFormatter.format(d);
+    public static List<Item> fetchCurrPrices(List<Item> items) {
+        List<String> urls = new ArrayList<>(items.size());
+        for (Item i : items)
+            urls.add(i.url);
+        Map<String, Double> prices = priceFinder.fetchPrices(urls);
+        List<Item> notFound = new ArrayList<>();
+        for (Item i : items) {
+            Double price = prices.get(i.url);
+            if (price != null)
+                i.setCurrPrice(price);
+            else
+                notFound.add(i);
+        }
+        return notFound;
+    }
+
+    /**
+     * Updates the Item's current price and recalculates the percentage change, and appends the
+     * price to the Item's price history. The new prices are published as a single PriceSnapshot,
+     * together with the version they belong to. A price that has not moved by a whole cent only
+     * records when it was fetched, and leaves the Item's version and its history untouched. An
+     * Item imported without a price takes the first price fetched as its initial price.
+     *
+     * @param price The Item's newly fetched price
+     */
+    void setCurrPrice(double price) {
+        long cents = Math.round(price * 100);
+        long now = System.currentTimeMillis();
+        boolean moved;
+        synchronized (this) {
+            PriceSnapshot old = this.price;
+            moved = cents != old.getCurrPriceCents() || old.getInitPriceCents() == 0;
+            this.price = old.withCurrPrice(cents, now);
+            if (moved)
+                changed();
+        }
+        if (moved)
+            PriceHistoryWriter.getInstance().record(_id, cents, now);
+    }
+
+    /**
+     * Constructor for rebuilding an Item exactly as it was saved in a snapshot, including its
+     * database ID and whether it has unsaved changes.
+     *
+     * @param id            The Item's database ID
+     * @param name          The Item's name
+     * @param price         The Item's price state
+     * @param url           The Item's web URL
+     * @param dateAdded     The time the Item was created, in milliseconds since the epoch
+     * @param version       The Item's version
+     * @param savedVersion  The version last written to the database
+     */
+    Item(long id, String name, PriceSnapshot price, String url, long dateAdded, int version, int savedVersion) {
+        this.name = name;
+        this.price = price;
+        this.url = url;
+        this.dateAdded = dateAdded;
+        this._id = id;
+        this.version = version;
+        this.savedVersion = savedVersion;
     }
 
     /**
@@ -231,13 +454,11 @@ public class Item implements Parcelable {
      * @param currPrice     The Item's current price
      * @param percChange    The Item's percentage change from initial price to current price
      * @param url           The Item's web URL
-     * @param dateAdded     The date the Item was created
+     * @param dateAdded     The time the Item was created, in milliseconds since the epoch
      */
-    public Item(String name, double initPrice, double currPrice, double percChange, String url, String dateAdded) {
+    public Item(String name, double initPrice, double currPrice, double percChange, String url, long dateAdded) {
         this.name = name;
-        this.initPrice = initPrice;
-        this.currPrice = currPrice;
-        this.percChange = percChange;
+        this.price = new PriceSnapshot(Math.round(initPrice * 100), Math.round(currPrice * 100), percChange, 0);
         this.url = url;
         this.dateAdded = dateAdded;
     }
@@ -9,6 +9,7 @@ import android.text.method.LinkMovementMethod;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.TextView;
+import android.widget.Toast;
 
 
 /**
@@ -34,6 +35,7 @@ public class ItemActivity extends AppCompatActivity implements DeleteDialogListe
     private TextView url;                       /* URL of the item */
     private Intent intentResult;                /* Intent that will hold any result for MainActivity */
     private boolean hasSetResult = false;       /* Whether a result has been set with setResult(int) */
+    private PriceRequest pendingRefresh;        /* The refresh in flight, if any */
 
     /**
      * Override to retrieve and initialize the fields to display for the current Item.
@@ -128,24 +130,50 @@ public class ItemActivity extends AppCompatActivity implements DeleteDialogListe
     }
 
     /**
-     * Refresh current item's price by having the item refresh its price, then update
-     * the current price in the interface.
+     * Override in order to abandon a refresh still in flight, since nothing will be shown of its result.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onDestroy() {
+        if (pendingRefresh != null)
+            pendingRefresh.cancel(true);
+        super.onDestroy();
+    }
+
+    /**
+     * Refresh current item's price by having the item refresh its price in the background, then
+     * update the current price in the interface. A refresh still in flight is abandoned first.
      */
     private void refreshItem() {
-        currItem.fetchCurrPrice();
-        updateValues();
-        intentResult = new Intent();
-        intentResult.putExtra("item", currItem);
-        setResult(RESULT_OK, intentResult);
-        hasSetResult = true;
+        if (pendingRefresh != null)
+            pendingRefresh.cancel(true);
+        pendingRefresh = currItem.fetchCurrPriceAsync(new PriceCallback() {
+            @Override
+            public void onPriceFetched(String url, double price) {
+                runOnUiThread(() -> {
+                    updateValues();
+                    intentResult = new Intent();
+                    intentResult.putExtra("item", currItem);
+                    setResult(RESULT_OK, intentResult);
+                    hasSetResult = true;
+                });
+            }
+
+            @Override
+            public void onPriceError(String url, Exception error) {
+                runOnUiThread(() -> Toast.makeText(ItemActivity.this, "Error getting price", Toast.LENGTH_LONG).show());
+            }
+        });
     }
 
     /**
      * Update the current price of the item, and the percentage change.
      */
     private void updateValues() {
-        priceCurr.setText(Html.fromHtml(getString(R.string.curr_price_template, currItem.getCurrPrice())));
-        percChange.setText(Html.fromHtml(getString(R.string.perc_change_template, currItem.getPercChange())));
+        PriceSnapshot price = currItem.getPriceSnapshot();
+        priceCurr.setText(Html.fromHtml(getString(R.string.curr_price_template, price.getCurrPriceText())));
+        percChange.setText(Html.fromHtml(getString(R.string.perc_change_template, price.getPercChangeText())));
     }
 
     /**
@@ -154,12 +182,13 @@ public class ItemActivity extends AppCompatActivity implements DeleteDialogListe
     private void displayItem() {
         itemName = findViewById(R.id.item_name);
         itemName.setText(Html.fromHtml(getString(R.string.item_name_template, currItem.getName())));
+        PriceSnapshot price = currItem.getPriceSnapshot();
         priceInit = findViewById(R.id.init_price);
-        priceInit.setText(Html.fromHtml(getString(R.string.init_price_template, currItem.getInitPrice(), currItem.getDateAdded())));
+        priceInit.setText(Html.fromHtml(getString(R.string.init_price_template, price.getInitPriceText(), currItem.getDateAdded())));
         priceCurr = findViewById(R.id.curr_price);
-        priceCurr.setText(Html.fromHtml(getString(R.string.curr_price_template, currItem.getCurrPrice())));
+        priceCurr.setText(Html.fromHtml(getString(R.string.curr_price_template, price.getCurrPriceText())));
         percChange = findViewById(R.id.perc_change);
-        percChange.setText(Html.fromHtml(getString(R.string.perc_change_template, currItem.getPercChange())));
+        percChange.setText(Html.fromHtml(getString(R.string.perc_change_template, price.getPercChangeText())));
         url = findViewById(R.id.item_url);
         url.setText(Html.fromHtml(getString(R.string.url_template, currItem.getURL())));
         url.setClickable(true);
@@ -0,0 +1,27 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  Implemented by a list of Items that can find an Item, and its position, from the Item's
+ *  database ID without searching the list, so that the Tracker can update or remove an Item
+ *  handed back by another activity in constant time however many Items are tracked.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public interface ItemIndex {
+    /**
+     * Returns the position of the Item with the given database ID.
+     *
+     * @param id    The Item's database ID
+     * @return      The Item's position, or -1 if it is not in the list
+     */
+    int positionOf(long id);
+
+    /**
+     * Returns the Item with the given database ID, if it is held in memory.
+     *
+     * @param id    The Item's database ID
+     * @return      The Item, or null if it is not in the list or not in memory
+     */
+    Item getById(long id);
+}
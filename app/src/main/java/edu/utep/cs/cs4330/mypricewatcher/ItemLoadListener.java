@@ -0,0 +1,19 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  Listener to be implemented by anything showing a PagedItemList, to learn when the stored
+ *  Items have been counted and the first page of them loaded in the background. It is invoked
+ *  through the executor given to PagedItemList.load(), so an activity passing runOnUiThread can
+ *  update its interface directly.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public interface ItemLoadListener {
+    /**
+     * Invoked once the list holds the stored Items, and its first page is in memory.
+     *
+     * @param count The number of stored Items
+     */
+    void onItemsLoaded(int count);
+}
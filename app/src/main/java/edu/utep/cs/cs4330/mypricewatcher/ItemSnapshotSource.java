@@ -0,0 +1,22 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.util.List;
+
+/**
+ *  Implemented by a list of Items that can hand out a snapshot of itself: a list that holds the
+ *  same Items in the same order however the list changes afterwards, and that cannot be changed
+ *  itself. A snapshot can be read on any thread while Items are added to or removed from the
+ *  list on others, so that the Tracker's readers never see it change under them.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public interface ItemSnapshotSource {
+    /**
+     * Returns a snapshot of the Items currently in the list. Must be called with the list's
+     * writers held off.
+     *
+     * @return The immutable snapshot
+     */
+    List<Item> snapshot();
+}
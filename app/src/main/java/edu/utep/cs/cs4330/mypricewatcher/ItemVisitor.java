@@ -0,0 +1,20 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.io.IOException;
+
+/**
+ *  Visitor to be implemented by anything reading every stored Item in turn, such as an export,
+ *  without holding them all in memory. It is invoked on the thread reading the database.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public interface ItemVisitor {
+    /**
+     * Invoked once for every stored Item, in the order they were added.
+     *
+     * @param item          The Item
+     * @throws IOException  Throw in case the Item cannot be written out, which stops the visit
+     */
+    void visit(Item item) throws IOException;
+}
@@ -0,0 +1,22 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.util.List;
+
+/**
+ *  Implemented by a list of Items that are loaded from the database as they are needed, so that
+ *  the thread showing the list can ask for an Item without waiting for it to be loaded. An Item
+ *  that is not in memory yet is loaded in the background, and shown as a placeholder meanwhile.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public interface LazyItemList extends List<Item> {
+    /**
+     * Returns the Item at the position if it is in memory, and otherwise starts loading it in the
+     * background without waiting for it.
+     *
+     * @param index The position
+     * @return      The Item, or null if it is being loaded
+     */
+    Item getIfLoaded(int index);
+}
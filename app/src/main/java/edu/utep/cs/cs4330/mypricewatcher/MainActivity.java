@@ -2,23 +2,40 @@ package edu.utep.cs.cs4330.mypricewatcher;
 
 import android.content.Context;
 import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
+import android.util.Log;
 import android.view.ContextMenu;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The Main Activity features the viewing and managing of a list of items whose prices will be
@@ -29,6 +46,7 @@ import java.util.List;
  * Activity also has two addition items: 1) a refresh button that, when clicked, will refresh the
  * current price for all the items in the list 2) an add button that, when clicked, will display
  * an AddItemDialog, so that the item's url can be entered, and the item can be added to the list.
+ * The overflow menu also offers importing and exporting the list, and a summary of its prices.
  *
  * @author Damian Najera
  * @version 1.2
@@ -38,23 +56,67 @@ public class MainActivity extends AppCompatActivity implements DeleteDialogListe
     private ItemListAdapter itemsAdapter;       /* The adapter for the ListView */
     private int selectedPosition;               /* Selected context menu option position */
     private DBHandler dbHandler;                /* DB handler for storing tracked items */
+    private final List<PriceRequest> pendingRequests = new ArrayList<>(); /* Single-item refreshes in flight */
+    private long createdAt;                     /* Uptime when the activity was created, for startup timings */
+    private volatile long firstFrameAt;         /* Uptime when the list was first drawn, or 0 */
+    private volatile long itemsLoadedAt;        /* Uptime when the stored items were loaded, or 0 */
+    private static final int REQUEST_IMPORT = 70;   /* Request code for picking a watch list to import */
+    private static final int REQUEST_EXPORT = 71;   /* Request code for creating a watch list to export to */
+
+    /* Single thread writing items to the database, so that writes never hold up the UI thread and are made in order */
+    private static final ExecutorService dbWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "item-writer");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
      * Private class for a custom ArrayAdapter: ItemListAdapter. This custom adapter defines
      * what list is kept track of in a ListView, and what a single row in the ListView looks like.
+     * It shows a snapshot of the tracked items, so the rows do not change under the ListView when
+     * items are added in the background; a new snapshot is shown once publish() is invoked. An
+     * item paged in from the database is never loaded on the UI thread: its row is left blank
+     * until its page is loaded in the background, and the list is redrawn then.
      */
     private class ItemListAdapter extends ArrayAdapter<Item> {
-        private final List<Item> items;     /* Internal list of items to manage displaying */
+        private List<Item> items;           /* Snapshot of the tracked items being displayed */
 
         /**
          * Private constructor for the ItemListAdapter.
          *
          * @param ctx       The Context that invoked the creation of this ItemListAdapter
-         * @param items     The List to display
          */
-        private ItemListAdapter(Context ctx, List<Item> items) {
-            super(ctx, android.R.layout.simple_list_item_1, items);
-            this.items = items;
+        private ItemListAdapter(Context ctx) {
+            super(ctx, android.R.layout.simple_list_item_1);
+            items = tracker.getItems();
+        }
+
+        /**
+         * Show a new snapshot of the tracked items. Must be invoked on the UI thread.
+         */
+        private void publish() {
+            items = tracker.getItems();
+            notifyDataSetChanged();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getCount() {
+            return items.size();
+        }
+
+        /**
+         * Returns the item at the position, or null if it is still being loaded.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public Item getItem(int position) {
+            if (items instanceof LazyItemList)
+                return ((LazyItemList) items).getIfLoaded(position);
+            return items.get(position);
         }
 
         /**
@@ -66,13 +128,16 @@ public class MainActivity extends AppCompatActivity implements DeleteDialogListe
         @Override
         public View getView(int position, View convertView, @NonNull ViewGroup parent) {
             View row = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_row, parent, false);
-            Item item = items.get(position);
+            Item item = getItem(position);
+            if (item == null)
+                return row;
+            PriceSnapshot price = item.getPriceSnapshot();
             TextView view = row.findViewById(R.id.item_name);
             view.setText(item.getName());
             view = row.findViewById(R.id.initial_price);
-            view.setText(item.getInitPrice());
+            view.setText(price.getInitPriceText());
             view = row.findViewById(R.id.current_price);
-            view.setText(item.getCurrPrice());
+            view.setText(price.getCurrPriceText());
 
             row.setOnClickListener(view1 -> {
                 Intent i = new Intent("edu.utep.cs.cs4330.mypricewatcher.ITEM_ACTIVITY");
@@ -86,62 +151,125 @@ public class MainActivity extends AppCompatActivity implements DeleteDialogListe
     }
 
     /**
-     * Override what happens when a result from another activity is given to this activity.
+     * Override what happens when a result from another activity is given to this activity. An
+     * edited item is shown right away and saved in the background; a deleted item is shown gone
+     * once it is deleted from the database in the background.
      *
      * {@inheritDoc}
      */
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_IMPORT || requestCode == REQUEST_EXPORT) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null)
+                transferWatchList(data.getData(), requestCode == REQUEST_IMPORT);
+            return;
+        }
         if (resultCode == RESULT_OK) {
             Item item = data.getParcelableExtra("item");
-            List<Item> items = tracker.getItems();
-            for (Item i : items) {
-                if (i.getName().equals(item.getName())) {
-                    int index = items.indexOf(i);
-                    items.set(index, item);
-                    runOnUiThread(() -> itemsAdapter.notifyDataSetChanged());
-                    return;
-                }
+            if (tracker.replaceItem(item)) {
+                itemsAdapter.publish();
+                if (item.isDirty())
+                    dbWriter.execute(() -> dbHandler.saveRefreshedPrices(Collections.singletonList(item)));
+                return;
             }
         }
 
         if (resultCode == 2) {
             Item item = data.getParcelableExtra("itemToDelete");
-            List<Item> items = tracker.getItems();
-            for (Item i : items) {
-                if (i.getName().equals(item.getName())) {
-                    items.remove(i);
-                    runOnUiThread(() -> itemsAdapter.notifyDataSetChanged());
-                    return;
-                }
-            }
+            dbWriter.execute(() -> {
+                if (tracker.deleteItem(dbHandler, item))
+                    runOnUiThread(() -> itemsAdapter.publish());
+            });
         }
     }
 
     /**
      * Override what happens when the activity is created. Create and initialize the tracker and Items table.
+     * The list is shown right away, and filled once the stored items are loaded in the background.
      *
      * {@inheritDoc}
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        createdAt = SystemClock.uptimeMillis();
         setContentView(R.layout.activity_main);
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
         tracker = Tracker.getInstance();
+        dbHandler = DBHandler.getInstance(this);
+        PriceHistoryWriter.getInstance().setDatabase(dbHandler);
+        if (savedInstanceState != null)
+            restoreTracker(savedInstanceState.getLong("trackerSnapshot"));
+        initTracker(dbHandler);
         ListView itemsList = findViewById(R.id.items_list);
 
         itemsList.addHeaderView(getLayoutInflater().inflate(R.layout.items_list_titles, itemsList, false), null, false);
-        itemsAdapter = new ItemListAdapter(this, tracker.getItems());
+        itemsAdapter = new ItemListAdapter(this);
         itemsList.setAdapter(itemsAdapter);
+        logFirstFrame(itemsList);
 
         registerForContextMenu(itemsList);
+    }
 
-        dbHandler = new DBHandler(this, null, null, 1);
-        initTracker(dbHandler);
+    /**
+     * Returns how long after its creation the activity first drew the list, for the instrumented
+     * startup test.
+     *
+     * @return The time to the first frame in milliseconds, or -1 if no frame has been drawn yet
+     */
+    long getTimeToFirstFrame() {
+        long at = firstFrameAt;
+        return at == 0 ? -1 : at - createdAt;
+    }
+
+    /**
+     * Returns how long after its creation the activity showed the stored items, for the
+     * instrumented startup test.
+     *
+     * @return The time to the full list in milliseconds, or -1 if the items are still being loaded
+     */
+    long getTimeToFullList() {
+        long at = itemsLoadedAt;
+        return at == 0 ? -1 : at - createdAt;
+    }
+
+    /**
+     * Log the time from the activity's creation to the first frame drawing the list.
+     *
+     * @param itemsList The ListView showing the items
+     */
+    private void logFirstFrame(ListView itemsList) {
+        itemsList.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                itemsList.getViewTreeObserver().removeOnPreDrawListener(this);
+                firstFrameAt = SystemClock.uptimeMillis();
+                Log.d("MainActivity.onCreate", "First frame after " + (firstFrameAt - createdAt) + " ms");
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Override in order to abandon any price fetch still in flight once the activity is finishing,
+     * since nothing will be shown of its result.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onDestroy() {
+        tracker.setPageLoadListener(null, null);
+        if (isFinishing()) {
+            tracker.cancelPriceUpdates();
+            for (PriceRequest r : pendingRequests)
+                r.cancel(true);
+            pendingRequests.clear();
+            PriceHistoryWriter.getInstance().flush();
+        }
+        super.onDestroy();
     }
 
     /**
@@ -165,25 +293,37 @@ public class MainActivity extends AppCompatActivity implements DeleteDialogListe
     public boolean onContextItemSelected(MenuItem item) {
         AdapterView.AdapterContextMenuInfo info = (AdapterView.AdapterContextMenuInfo) item.getMenuInfo();
         selectedPosition = info.position - 1;
+        if (itemsAdapter.getItem(selectedPosition) == null)
+            return true;
         switch (item.getItemId()) {
             case (R.id.refresh_context):
-                try {
-                    new Thread(() -> {
-                        tracker.getItems().get(selectedPosition).fetchCurrPrice();
-                        runOnUiThread(() -> itemsAdapter.notifyDataSetChanged());
-                    }).start();
-                    Toast.makeText(this, "Refreshing Price...", Toast.LENGTH_LONG).show();
-                    return true;
-                }
-                catch(PriceNotFoundException e) {
-                    Toast.makeText(this, "Error getting price", Toast.LENGTH_LONG).show();
-                }
+                Item selected = itemsAdapter.getItem(selectedPosition);
+                PriceRequest request = selected.fetchCurrPriceAsync(new PriceCallback() {
+                    @Override
+                    public void onPriceFetched(String url, double price) {
+                        if (!selected.isDirty())
+                            return;
+                        dbWriter.execute(() -> {
+                            dbHandler.saveRefreshedPrices(Collections.singletonList(selected));
+                            runOnUiThread(() -> itemsAdapter.publish());
+                        });
+                    }
+
+                    @Override
+                    public void onPriceError(String url, Exception error) {
+                        runOnUiThread(() -> Toast.makeText(MainActivity.this, "Error getting price", Toast.LENGTH_LONG).show());
+                    }
+                });
+                trackRequest(request);
+                Toast.makeText(this, "Refreshing Price...", Toast.LENGTH_LONG).show();
+                return true;
+
             case (R.id.delete_context):
                 new DeleteDialog().show(getSupportFragmentManager(), "DeleteDialog");
                 return true;
 
             case (R.id.edit_item_context):
-                ManageItemDialog.newInstance(tracker.getItems().get(selectedPosition)).show(getSupportFragmentManager(), "");
+                ManageItemDialog.newInstance(itemsAdapter.getItem(selectedPosition)).show(getSupportFragmentManager(), "");
                 return true;
         }
         return true;
@@ -210,6 +350,10 @@ public class MainActivity extends AppCompatActivity implements DeleteDialogListe
             addItem.setIcon(R.drawable.ic_add_white_24dp);
             addItem.setShowAsAction(MenuItem.SHOW_AS_ACTION_IF_ROOM);
         }
+
+        menu.add(0, 2, 2, "Import Items");
+        menu.add(0, 3, 3, "Export Items");
+        menu.add(0, 4, 4, "Price Summary");
         return true;
     }
 
@@ -234,31 +378,36 @@ public class MainActivity extends AppCompatActivity implements DeleteDialogListe
     }
 
     /**
-     * Override in order to restore the tracker and last selectedPosition.
+     * Override in order to restore the last selectedPosition. The tracker is restored in onCreate().
      *
      * {@inheritDoc}
      */
     @Override
     protected void onRestoreInstanceState(Bundle savedInstanceState) {
-        tracker = savedInstanceState.getParcelable("tracker");
         selectedPosition = savedInstanceState.getInt("selectedPosition");
         super.onRestoreInstanceState(savedInstanceState);
     }
 
     /**
-     * Override in order to save the tracker and last selectedPosition.
+     * Override in order to save the tracker and last selectedPosition. The tracker is written to
+     * a snapshot file, and only the snapshot's token is saved.
      *
      * {@inheritDoc}
      */
     @Override
     protected void onSaveInstanceState(Bundle outState) {
-        outState.putParcelable("tracker", tracker);
+        try {
+            outState.putLong("trackerSnapshot", tracker.saveSnapshot(snapshotFile()));
+        } catch (IOException e) {
+            Log.d("MainActivity.onSaveInstanceState", "Unable to save the tracker: " + e.getMessage());
+        }
         outState.putInt("selectedPosition", selectedPosition);
         super.onSaveInstanceState(outState);
     }
 
     /**
-     * Implement handling of onResponse() from DeleteDialogListener.
+     * Implement handling of onResponse() from DeleteDialogListener. The item is deleted from the
+     * database in the background, and shown gone once it is.
      *
      * @param d       The DeleteItemDialog instance that is returning a response
      * @param proceed A boolean describing whether a user selected the positive or negative button
@@ -266,10 +415,13 @@ public class MainActivity extends AppCompatActivity implements DeleteDialogListe
     @Override
     public void onResponse(DeleteDialog d, boolean proceed) {
         if (proceed) {
-            Item item = tracker.getItems().get(selectedPosition);
-            tracker.removeItem(item);
-            dbHandler.deleteItem(item);
-            runOnUiThread(() -> itemsAdapter.notifyDataSetChanged());
+            Item item = itemsAdapter.getItem(selectedPosition);
+            if (item == null)
+                return;
+            dbWriter.execute(() -> {
+                if (tracker.deleteItem(dbHandler, item))
+                    runOnUiThread(() -> itemsAdapter.publish());
+            });
         } else d.dismiss();
     }
 
@@ -282,26 +434,87 @@ public class MainActivity extends AppCompatActivity implements DeleteDialogListe
     private boolean getMenuChoice(MenuItem item) {
         switch (item.getItemId()) {
             case 0:
-                for (Item i : tracker.getItems()) {
-                    new Thread(() -> {
-                        try {
-                            i.fetchCurrPrice();
-                            runOnUiThread(() -> itemsAdapter.notifyDataSetChanged());
-                            runOnUiThread(() -> Toast.makeText(this, "Updated price for: " + i.getName(), Toast.LENGTH_LONG).show());
+                tracker.updatePrices(new RefreshListener() {
+                    @Override
+                    public void onProgress(Item i, boolean success, int completed, int total) {
+                        if (success) {
+                            if (i.isDirty())
+                                runOnUiThread(() -> itemsAdapter.publish());
                         }
-                        catch(PriceNotFoundException e) {
-                            runOnUiThread(() -> Toast.makeText(this, "An error occurred getting the price for: " + i.getName(), Toast.LENGTH_LONG).show());
-                        }
-                    }).start();
-                }
+                        else
+                            runOnUiThread(() -> Toast.makeText(MainActivity.this, "An error occurred getting the price for: " + i.getName(), Toast.LENGTH_LONG).show());
+                    }
+
+                    @Override
+                    public void onComplete(RefreshStats stats) {
+                        List<Item> changed = tracker.takeChanges();
+                        dbWriter.execute(() -> {
+                            dbHandler.saveRefreshedPrices(changed);
+                            tracker.replaceItems(changed);
+                            runOnUiThread(() -> {
+                                itemsAdapter.publish();
+                                Toast.makeText(MainActivity.this, "Updated prices for " + stats.getSucceeded() + " of " + stats.getTotal() + " items", Toast.LENGTH_LONG).show();
+                            });
+                        });
+                    }
+                });
+                Toast.makeText(this, "Refreshing Prices...", Toast.LENGTH_LONG).show();
                 return true;
             case 1:
                 ManageItemDialog.newInstance().show(getSupportFragmentManager(), "");
                 return true;
+            case 2:
+                Intent pick = new Intent(Intent.ACTION_GET_CONTENT);
+                pick.addCategory(Intent.CATEGORY_OPENABLE);
+                pick.setType("*/*");
+                startActivityForResult(pick, REQUEST_IMPORT);
+                return true;
+            case 3:
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+                    Toast.makeText(this, "Exporting needs Android 4.4 or newer", Toast.LENGTH_LONG).show();
+                    return true;
+                }
+                Intent create = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+                create.addCategory(Intent.CATEGORY_OPENABLE);
+                create.setType("application/json");
+                create.putExtra(Intent.EXTRA_TITLE, "watchlist.json");
+                startActivityForResult(create, REQUEST_EXPORT);
+                return true;
+            case 4:
+                dbWriter.execute(() -> {
+                    String summary = summarize(dbHandler.getPriceStore());
+                    runOnUiThread(() -> Toast.makeText(this, summary, Toast.LENGTH_LONG).show());
+                });
+                return true;
         }
         return false;
     }
 
+    /**
+     * Summarize the prices of the stored items: their number and total current price, their
+     * average change, and how many have dropped in price, with the biggest drop. The summary is
+     * computed over the store's arrays, without building an Item per stored item.
+     *
+     * @param store The price data of every stored item
+     * @return      The summary to show
+     */
+    private static String summarize(PriceStore store) {
+        if (store.isEmpty())
+            return "No items are tracked";
+        StringBuilder summary = new StringBuilder()
+                .append(store.size()).append(" items, ")
+                .append(PriceFormatter.formatCents(store.getTotalCurrPriceCents())).append(" in total, ")
+                .append(PriceFormatter.formatPercChange(store.getAveragePercChange())).append(" on average");
+        int drops = store.filterPriceDrops().length;
+        if (drops > 0) {
+            int biggest = store.sortByPercChange(false)[0];
+            summary.append("\n").append(drops).append(" price drops, the biggest ")
+                    .append(PriceFormatter.formatPercChange(store.getPercChange(biggest)))
+                    .append(" on ").append(store.getName(biggest));
+        }
+        return summary.toString();
+    }
+
     /**
      * Override onItemManaged from the ManageItemDialogListener in order to respond accordingly.
      *
@@ -315,36 +528,144 @@ public class MainActivity extends AppCompatActivity implements DeleteDialogListe
     public void onItemManaged(ManageItemDialog d, String itemName, String url, boolean proceed, boolean newItem) {
         if (proceed) {
             if (newItem) {
-
-                new Thread(() -> {
+                dbWriter.execute(() -> {
                     try {
                         runOnUiThread(() -> Toast.makeText(this, "Adding item at: " + url, Toast.LENGTH_LONG).show());
-                        Item item = tracker.addItem(itemName, url);
+                        Item item = new Item(itemName, url);
                         dbHandler.addItem(item);
-                        runOnUiThread(() -> itemsAdapter.notifyDataSetChanged());
+                        tracker.addItem(item);
+                        runOnUiThread(() -> itemsAdapter.publish());
                         runOnUiThread(() -> Toast.makeText(this, "Added item!", Toast.LENGTH_LONG).show());
                     }
                     catch(PriceNotFoundException e) {
                         runOnUiThread(() -> Toast.makeText(this, "Error with URL: " + url, Toast.LENGTH_LONG).show());
                     }
-                }).start();
+                });
                 Toast.makeText(this, "Adding: " + itemName, Toast.LENGTH_LONG).show();
             }
             if (!newItem) {
-                Item itemToModify = tracker.getItems().get(selectedPosition);
-                dbHandler.editItem(itemToModify, itemName, url);
-                itemToModify.setName(itemName);
-                itemToModify.setURL(url);
-                runOnUiThread(() -> itemsAdapter.notifyDataSetChanged());
+                Item itemToModify = itemsAdapter.getItem(selectedPosition);
+                if (itemToModify == null)
+                    return;
+                dbWriter.execute(() -> {
+                    dbHandler.editItem(itemToModify, itemName, url);
+                    runOnUiThread(() -> itemsAdapter.publish());
+                });
                 Toast.makeText(this, "Item saved!", Toast.LENGTH_LONG).show();
             }
         } else d.dismiss();
     }
 
+    /**
+     * Import a watch list from, or export it to, a document picked by the user, in the background.
+     * The list is reloaded once an import is stored.
+     *
+     * @param uri       The document
+     * @param isImport  Whether to import the watch list, rather than export it
+     */
+    private void transferWatchList(Uri uri, boolean isImport) {
+        Toast.makeText(this, isImport ? "Importing items..." : "Exporting items...", Toast.LENGTH_LONG).show();
+        new Thread(() -> {
+            String message;
+            try {
+                if (isImport) {
+                    InputStream in = getContentResolver().openInputStream(uri);
+                    int stored;
+                    try {
+                        stored = WatchListTransfer.importWatchList(dbHandler,
+                                new BufferedReader(new InputStreamReader(in, "UTF-8")));
+                    } finally {
+                        in.close();
+                    }
+                    tracker.reloadItems(this::runOnUiThread, count -> itemsAdapter.publish());
+                    message = "Imported " + stored + " items";
+                }
+                else {
+                    OutputStream out = getContentResolver().openOutputStream(uri);
+                    try {
+                        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+                        message = "Exported " + WatchListTransfer.exportJson(dbHandler, writer) + " items";
+                    } finally {
+                        out.close();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.d("MainActivity.transferWatchList", "Unable to transfer the watch list: " + e.getMessage());
+                message = (isImport ? "Unable to import: " : "Unable to export: ") + e.getMessage();
+            }
+            String result = message;
+            runOnUiThread(() -> Toast.makeText(this, result, Toast.LENGTH_LONG).show());
+        }).start();
+    }
+
+    /**
+     * Remember a single-item refresh, so that it can be cancelled if the activity finishes first,
+     * and forget the refreshes that are already done.
+     *
+     * @param request The refresh to remember
+     */
+    private void trackRequest(PriceRequest request) {
+        Iterator<PriceRequest> it = pendingRequests.iterator();
+        while (it.hasNext())
+            if (it.next().isDone())
+                it.remove();
+        pendingRequests.add(request);
+    }
+
+    /**
+     * Restore the tracker from the snapshot saved before the activity was destroyed, if the
+     * process no longer holds it. Changes that were not saved to the database yet are saved now,
+     * in the background.
+     *
+     * @param token The token of the snapshot, or 0 if none was saved
+     */
+    private void restoreTracker(long token) {
+        if (token == 0)
+            return;
+        try {
+            if (!tracker.restoreSnapshot(snapshotFile(), token))
+                return;
+        } catch (IOException e) {
+            Log.d("MainActivity.restoreTracker", "Unable to restore the tracker: " + e.getMessage());
+            return;
+        }
+        List<Item> changed = tracker.takeChanges();
+        if (!changed.isEmpty())
+            dbWriter.execute(() -> dbHandler.saveRefreshedPrices(changed));
+    }
+
+    /**
+     * Returns the app-private file the tracker's snapshot is written to.
+     *
+     * @return The snapshot file
+     */
+    private File snapshotFile() {
+        return new File(getFilesDir(), "tracker.snapshot");
+    }
+
+    /**
+     * Back the tracker with the stored items, paged in from the database as they are shown, so
+     * that opening the app does not load every tracked item. The database is opened and the items
+     * counted in the background, and the list is refreshed once they are, and again whenever a
+     * page of items shown blank is loaded. An activity recreated while the tracker already pages
+     * through the database keeps using it.
+     *
+     * @param dbHandler The database the items are stored in
+     */
     private void initTracker(DBHandler dbHandler) {
-        ArrayList<Item> storedItems = dbHandler.getItems();
-        for (Item i : storedItems)
-            tracker.addItem(i);
+        if (!tracker.isPaged()) {
+            PagedItemList items = new PagedItemList(dbHandler);
+            tracker.setItems(items);
+            items.load(this::runOnUiThread, count -> {
+                itemsAdapter.publish();
+                itemsLoadedAt = SystemClock.uptimeMillis();
+                Log.d("MainActivity.initTracker", "Loaded " + count + " items after "
+                        + (itemsLoadedAt - createdAt) + " ms");
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+                    reportFullyDrawn();
+            });
+        }
+        tracker.setPageLoadListener(this::runOnUiThread, page -> itemsAdapter.notifyDataSetChanged());
     }
 }
 
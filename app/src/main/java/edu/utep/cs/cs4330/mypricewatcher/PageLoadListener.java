@@ -0,0 +1,19 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  Listener to be implemented by anything showing a PagedItemList, to learn when a page of Items
+ *  has been loaded in the background, such as one shown as placeholders until then. It is invoked
+ *  through the executor given to PagedItemList.setPageLoadListener(), so an activity passing
+ *  runOnUiThread can redraw the list directly.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public interface PageLoadListener {
+    /**
+     * Invoked once a page of Items is in memory.
+     *
+     * @param pageIndex The index of the page
+     */
+    void onPageLoaded(int pageIndex);
+}
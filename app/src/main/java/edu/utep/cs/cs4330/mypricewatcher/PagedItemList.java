@@ -0,0 +1,794 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ *  A list of the Items stored in the database that only keeps a few pages of them in memory. An
+ *  Item is loaded, along with the rest of its page, the first time its position is asked for, and
+ *  the pages next to it are loaded in the background, so that scrolling finds them ready. Pages
+ *  are found by keyset pagination on the Items' IDs rather than by offset, so loading a page costs
+ *  the same wherever it is in the table; removing an Item moves the start of every later page one
+ *  row on rather than forgetting it, so this still holds after Items are deleted. The least
+ *  recently used page is dropped once more than a few are held. A new list is empty until load()
+ *  counts the stored Items and loads the first page in the background, so that opening the
+ *  database never holds up the first frame. The position of every Item in memory is indexed by
+ *  its ID, so that finding an Item that is shown does not query the database. The database is
+ *  read without holding the list's lock, and what was read is only kept under it if the stored
+ *  Items did not change meanwhile, so that the thread showing the list never waits for another
+ *  thread's query; it shows a placeholder for an Item whose page is not in memory yet, and is told
+ *  once the page is loaded. A snapshot of the list keeps the size it had when it was taken, and
+ *  reads its Items from the list through a log of the Items removed since, so that it shows the
+ *  same Items however the list changes, without copying a single page.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class PagedItemList extends AbstractList<Item> implements ItemIndex, ItemSnapshotSource, LazyItemList {
+    public static final int DEFAULT_PAGE_SIZE = 50;         /* Default number of Items per page */
+    public static final int DEFAULT_MAX_PAGES = 8;          /* Default number of pages held in memory */
+    private static final int PREFETCH_DISTANCE = 10;        /* Distance from a page's edge that loads its neighbour */
+    private static final int MAX_LOGGED_REMOVALS = 64;      /* Removals remembered for the snapshots taken before them */
+
+    private final DBHandler dbHandler;                      /* Database the Items are stored in */
+    private final int pageSize;                             /* Number of Items per page */
+    private final LinkedHashMap<Integer, List<Item>> pages; /* Pages held in memory, least recently used first */
+    private final List<Long> pageStarts;                    /* ID of the Item preceding each known page */
+    private final List<Integer> pageSkips;                  /* Items between each known start and its page */
+    private final Map<Long, Integer> positions;             /* Position of every Item in memory, by its ID */
+    private final Set<Integer> prefetching;                 /* Pages being loaded in the background */
+    private final ExecutorService prefetcher;               /* Single thread loading neighbouring pages */
+    private int size;                                       /* Number of stored Items shown */
+    private boolean loading;                                /* Whether a load has not been published yet */
+    private int loadedSize;                                 /* Number of stored Items counted by the load, or -1 */
+    private int loadedPages;                                /* Pages loaded over the list's lifetime */
+    private final List<Integer> removedPositions;           /* Positions of the last removals, oldest first */
+    private final List<Item> removedItems;                  /* Items of the last removals, null if not in memory */
+    private int removals;                                   /* Removals over the list's lifetime */
+    private int generation;                                 /* Changed whenever the stored Items change, so that a page read before is not kept */
+    private int deleting;                                   /* Items being deleted from the database and not removed yet */
+    private Executor pagePublisher;                         /* Executor of the thread told of pages loaded, or null */
+    private PageLoadListener pageListener;                  /* Listener told of pages loaded in the background, or null */
+
+    /**
+     * A snapshot of the list. It keeps the size the list had when it was taken, and finds where
+     * each of its Items is now by replaying the removals made since: an Item removed since is
+     * returned from the removal log, and an Item after it is read one position earlier. Once more
+     * than MAX_LOGGED_REMOVALS removals were made since it was taken, the removals it needs are
+     * no longer logged, so rather than replay part of them the snapshot is reloaded: it shows
+     * the list as it is now, in as many rows as it had, and has no Item past the list's end.
+     */
+    private final class Snapshot extends AbstractList<Item> implements LazyItemList {
+        private final int size;         /* Size of the list when the snapshot was taken */
+        private final int removals;     /* Removals made before the snapshot was taken */
+
+        private Snapshot(int size, int removals) {
+            this.size = size;
+            this.removals = removals;
+        }
+
+        /**
+         * Returns the Item at the position, waiting for its page to be loaded if it is not in memory.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public Item get(int index) {
+            return read(index, true);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Item getIfLoaded(int index) {
+            return read(index, false);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the Item at a position of the snapshot, from the removal log if it was removed
+         * since, and otherwise from the page it is in now.
+         *
+         * @param index The position in the snapshot
+         * @param wait  Whether to wait for the Item's page to be loaded if it is not in memory
+         * @return      The Item, or null if it is not in memory and not waited for
+         */
+        private Item read(int index, boolean wait) {
+            while (true) {
+                int position;
+                if (index < 0 || index >= size)
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                synchronized (PagedItemList.this) {
+                    position = index;
+                    if (!isReloaded()) {
+                        int firstLogged = PagedItemList.this.removals - removedPositions.size();
+                        for (int r = removals - firstLogged; r < removedPositions.size(); r++) {
+                            int at = removedPositions.get(r);
+                            if (position == at && removedItems.get(r) != null)
+                                return removedItems.get(r);
+                            if (position > at)
+                                position--;
+                        }
+                    }
+                    if (position >= PagedItemList.this.size) {
+                        if (wait)
+                            throw new IndexOutOfBoundsException("Item at " + index + " is no longer stored");
+                        return null;
+                    }
+                    List<Item> page = pages.get(position / pageSize);
+                    if (page != null || !wait) {
+                        prefetchAround(position);
+                        Item item = itemIn(page, position);
+                        if (item == null && wait)
+                            throw new IndexOutOfBoundsException("Item at " + index + " is no longer stored");
+                        return item;
+                    }
+                }
+                load(position / pageSize);
+            }
+        }
+
+        /**
+         * Returns whether the removals made since the snapshot was taken are no longer all logged,
+         * so that the snapshot shows the list as it is now. Must hold the list's lock.
+         *
+         * @return Whether the snapshot was reloaded
+         */
+        private boolean isReloaded() {
+            return removals < PagedItemList.this.removals - removedPositions.size();
+        }
+    }
+
+    /**
+     * The constructor for a PagedItemList with the default page size and number of pages.
+     *
+     * @param dbHandler The database the Items are stored in
+     */
+    public PagedItemList(DBHandler dbHandler) {
+        this(dbHandler, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    /**
+     * The constructor for a PagedItemList.
+     *
+     * @param dbHandler The database the Items are stored in
+     * @param pageSize  The number of Items per page
+     * @param maxPages  The most pages held in memory at once
+     */
+    public PagedItemList(DBHandler dbHandler, int pageSize, int maxPages) {
+        if (pageSize < 1 || maxPages < 3)
+            throw new IllegalArgumentException("Page size must be positive, and at least 3 pages must be held.");
+        this.dbHandler = dbHandler;
+        this.pageSize = pageSize;
+        pages = new LinkedHashMap<Integer, List<Item>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Item>> eldest) {
+                if (size() <= maxPages)
+                    return false;
+                unindex(eldest.getValue());
+                return true;
+            }
+        };
+        pageStarts = new ArrayList<>();
+        pageStarts.add(0L);
+        pageSkips = new ArrayList<>();
+        pageSkips.add(0);
+        positions = new HashMap<>();
+        removedPositions = new ArrayList<>();
+        removedItems = new ArrayList<>();
+        prefetching = new HashSet<>();
+        prefetcher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "item-prefetcher");
+            t.setDaemon(true);
+            return t;
+        });
+        loadedSize = -1;
+    }
+
+    /**
+     * Count the stored Items and load the first page of them in the background, then publish the
+     * count through the given executor, so that the list only changes size on the thread showing
+     * it. The Items are counted without holding the list's lock, and counted again if Items were
+     * added or removed meanwhile, so that Items added while the load runs are counted once.
+     *
+     * @param publisher The executor of the thread showing the list, such as runOnUiThread
+     * @param listener  The listener told once the Items are loaded
+     */
+    public void load(Executor publisher, ItemLoadListener listener) {
+        synchronized (this) {
+            loading = true;
+            loadedSize = -1;
+        }
+        prefetcher.execute(() -> {
+            int counted;
+            while (true) {
+                int readGeneration;
+                synchronized (PagedItemList.this) {
+                    awaitDeletions();
+                    readGeneration = generation;
+                }
+                counted = dbHandler.getItemCount();
+                synchronized (PagedItemList.this) {
+                    if (generation != readGeneration)
+                        continue;
+                    invalidateFrom(0);
+                    loadedSize = counted;
+                    break;
+                }
+            }
+            if (counted > 0)
+                load(0);
+            publisher.execute(() -> {
+                int count;
+                synchronized (PagedItemList.this) {
+                    size = loadedSize;
+                    loadedSize = -1;
+                    loading = false;
+                    modCount++;
+                    count = size;
+                }
+                listener.onItemsLoaded(count);
+            });
+        });
+    }
+
+    /**
+     * Returns the Item at the position, loading its page if it is not in memory, and loading the
+     * neighbouring page in the background if the position is close to the edge of its page. The
+     * page is read without holding the list's lock, but the caller waits for it, so the thread
+     * showing the list should use getIfLoaded() instead.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Item get(int index) {
+        List<Item> page;
+        synchronized (this) {
+            checkIndex(index);
+            page = pages.get(index / pageSize);
+        }
+        if (page == null)
+            page = load(index / pageSize);
+        prefetchAround(index);
+        Item item = itemIn(page, index);
+        if (item == null)
+            throw new IndexOutOfBoundsException("Item at " + index + " is no longer stored");
+        return item;
+    }
+
+    /**
+     * Returns the Item at the position if its page is in memory, and otherwise loads the page in
+     * the background, and tells the page listener once it is loaded.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Item getIfLoaded(int index) {
+        List<Item> page;
+        synchronized (this) {
+            checkIndex(index);
+            page = pages.get(index / pageSize);
+        }
+        prefetchAround(index);
+        return itemIn(page, index);
+    }
+
+    /**
+     * Set the listener told whenever a page is loaded in the background, such as one whose Items
+     * were shown as placeholders until then.
+     *
+     * @param publisher The executor of the thread showing the list, such as runOnUiThread, or null
+     * @param listener  The listener, or null to stop telling one
+     */
+    public synchronized void setPageLoadListener(Executor publisher, PageLoadListener listener) {
+        pagePublisher = publisher;
+        pageListener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Add an Item that was just stored to the end of the list. While the list is loading, an
+     * Item stored before the Items were counted is already part of the count. A page being read
+     * meanwhile is read again, since it may have been read before the Item was stored.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean add(Item item) {
+        generation++;
+        if (loading) {
+            if (loadedSize != -1)
+                append(loadedSize++, item);
+        }
+        else {
+            append(size++, item);
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Replace the Item at the position in memory, such as with a copy edited by another activity.
+     * Nothing is replaced if the Item's page is not in memory, since the page is read from the
+     * database when it is next needed.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Item set(int index, Item item) {
+        checkIndex(index);
+        List<Item> page = pages.get(index / pageSize);
+        if (itemIn(page, index) == null)
+            return null;
+        Item old = page.set(index % pageSize, item);
+        positions.remove(old.getId());
+        if (item.getId() > 0)
+            positions.put(item.getId(), index);
+        return old;
+    }
+
+    /**
+     * Put Items in place of the Items in memory with the same IDs, such as Items refreshed and
+     * saved after their pages were dropped and read again, and read any page being read again,
+     * since it may have been read before they were saved.
+     *
+     * @param items The Items
+     */
+    public synchronized void update(Collection<Item> items) {
+        generation++;
+        for (Item item : items) {
+            Integer position = positions.get(item.getId());
+            List<Item> page = position == null ? null : pages.get(position / pageSize);
+            if (page != null)
+                page.set(position % pageSize, item);
+        }
+    }
+
+    /**
+     * Remove an Item that was just deleted from the database from the list. The pages from the
+     * Item's page on are reloaded when they are next needed, from starts moved one row on.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Item remove(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        List<Item> page = pages.get(index / pageSize);
+        Item removed = page != null && index % pageSize < page.size() ? page.get(index % pageSize) : null;
+        removeAt(index, removed);
+        return removed;
+    }
+
+    /**
+     * Remove an Item that was just deleted from the database from the list. Its position is the
+     * number of stored Items that were added before it, which is only asked of the database,
+     * without holding the list's lock, if the Item is not in memory.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Item))
+            return false;
+        long id = ((Item) o).getId();
+        int stored = id > 0 && !isInMemory(id) ? dbHandler.getItemPosition(id) : -1;
+        synchronized (this) {
+            Integer position = id > 0 ? positions.get(id) : null;
+            int index = position != null ? position : id > 0 ? stored : indexOf(o);
+            if (index == -1 || index >= size)
+                return false;
+            removeAt(index, (Item) o);
+            return true;
+        }
+    }
+
+    /**
+     * Delete a stored Item from the database and remove it from the list, without holding the
+     * list's lock while the database is written. No page is read while the Item is deleted but
+     * not removed yet, and one being read when the deletion starts is not kept, so the list never
+     * holds a page, or the start of one, without the Item while it still counts it.
+     *
+     * @param item  The Item to delete
+     * @return      Whether the Item was in the list
+     */
+    public boolean delete(Item item) {
+        synchronized (this) {
+            deleting++;
+            generation++;
+        }
+        try {
+            dbHandler.deleteItem(item);
+            return remove(item);
+        }
+        finally {
+            synchronized (this) {
+                deleting--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the position of a stored Item, found from its ID rather than by searching the list.
+     * An Item that is not stored yet is searched for among the pages in memory.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Item))
+            return -1;
+        Item item = (Item) o;
+        if (item.getId() > 0)
+            return positionOf(item.getId());
+        synchronized (this) {
+            for (Map.Entry<Integer, List<Item>> e : pages.entrySet()) {
+                int offset = e.getValue().indexOf(item);
+                if (offset != -1)
+                    return e.getKey() * pageSize + offset;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the position of a stored Item from the index of the Items in memory, and only asks
+     * the database for the position of an Item whose page is not in memory, without holding the
+     * list's lock.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public int positionOf(long id) {
+        synchronized (this) {
+            Integer position = positions.get(id);
+            if (position != null)
+                return position;
+        }
+        int index = dbHandler.getItemPosition(id);
+        try {
+            return index < size() && get(index).getId() == id ? index : -1;
+        } catch (IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Item getById(long id) {
+        Integer position = positions.get(id);
+        if (position == null)
+            return null;
+        List<Item> page = pages.get(position / pageSize);
+        return page == null ? null : page.get(position % pageSize);
+    }
+
+    /**
+     * Returns a snapshot of the list, which costs the same however many Items are stored.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized List<Item> snapshot() {
+        return new Snapshot(size, removals);
+    }
+
+    /**
+     * Getter for the number of pages loaded from the database over the list's lifetime.
+     *
+     * @return The number of pages loaded
+     */
+    public synchronized int getLoadedPageCount() {
+        return loadedPages;
+    }
+
+    /**
+     * Returns a page, loading it if it is not in memory. The page, and where it starts if that is
+     * not known yet, are read from the database without holding the list's lock, and the page is
+     * put in memory under it, unless the stored Items changed meanwhile, in which case it is read
+     * again. Must not hold the list's lock.
+     *
+     * @param pageIndex The index of the page
+     * @return          The Items in the page
+     */
+    private List<Item> load(int pageIndex) {
+        while (true) {
+            int known;
+            long after;
+            int skip;
+            int readGeneration;
+            synchronized (this) {
+                List<Item> page = pages.get(pageIndex);
+                if (page != null)
+                    return page;
+                awaitDeletions();
+                known = knownPageStart(pageIndex);
+                after = pageStarts.get(known);
+                skip = pageSkips.get(known);
+                readGeneration = generation;
+            }
+            List<Long> starts = new ArrayList<>();
+            for (int p = known; p < pageIndex && after != Long.MAX_VALUE; p++) {
+                long next = dbHandler.getItemIdAfter(after, skip + pageSize - 1);
+                after = next == -1 ? Long.MAX_VALUE : next;
+                skip = 0;
+                if (next != -1)
+                    starts.add(next);
+            }
+            List<Item> page = Collections.synchronizedList(dbHandler.getItemsAfter(after, skip, pageSize));
+            synchronized (this) {
+                if (generation != readGeneration)
+                    continue;
+                List<Item> loaded = pages.get(pageIndex);
+                if (loaded != null)
+                    return loaded;
+                for (int i = pageStarts.size() - known - 1; i < starts.size(); i++)
+                    addPageStart(starts.get(i));
+                if (!page.isEmpty() && pageStarts.size() == pageIndex + 1)
+                    addPageStart(page.get(page.size() - 1).getId());
+                else if (page.size() == pageSize && pageStarts.size() > pageIndex + 1) {
+                    pageStarts.set(pageIndex + 1, page.get(pageSize - 1).getId());
+                    pageSkips.set(pageIndex + 1, 0);
+                }
+                for (int i = 0; i < page.size(); i++)
+                    positions.put(page.get(i).getId(), pageIndex * pageSize + i);
+                pages.put(pageIndex, page);
+                loadedPages++;
+            }
+            return page;
+        }
+    }
+
+    /**
+     * Wait until no Item is being deleted from the database without having been removed from the
+     * list yet, so that what is read from the database matches the list. Must hold the list's lock.
+     */
+    private void awaitDeletions() {
+        while (deleting > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the Item at a position within its page, or null if the page is not in memory or no
+     * longer holds that many Items.
+     *
+     * @param page  The page, or null if it is not in memory
+     * @param index The position
+     * @return      The Item, or null
+     */
+    private Item itemIn(List<Item> page, int index) {
+        int offset = index % pageSize;
+        return page != null && offset < page.size() ? page.get(offset) : null;
+    }
+
+    /**
+     * Throw if a position is not within the list. Must hold the list's lock.
+     *
+     * @param index The position
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    /**
+     * Returns whether a stored Item is in memory.
+     *
+     * @param id    The Item's database ID
+     * @return      Whether its page is held
+     */
+    private synchronized boolean isInMemory(long id) {
+        return positions.containsKey(id);
+    }
+
+    /**
+     * Remove the Item at a position, and log the removal for the snapshots taken before it. The
+     * pages from its page on are dropped, and every later page whose known start was at or after
+     * the Item starts one row further past it, so that finding a later page does not walk the
+     * pages before it again. Must hold the list's lock.
+     *
+     * @param index     The position
+     * @param removed   The Item removed, or null if it is not in memory
+     */
+    private void removeAt(int index, Item removed) {
+        int pageIndex = index / pageSize;
+        dropPagesFrom(pageIndex);
+        for (int p = pageIndex + 1; p < pageSkips.size(); p++) {
+            int skip = pageSkips.get(p);
+            if (index <= p * pageSize - 1 - skip)
+                pageSkips.set(p, skip + 1);
+        }
+        size--;
+        modCount++;
+        removals++;
+        removedPositions.add(index);
+        removedItems.add(removed);
+        if (removedPositions.size() > MAX_LOGGED_REMOVALS) {
+            removedPositions.remove(0);
+            removedItems.remove(0);
+        }
+    }
+
+    /**
+     * Put an Item after the last one, in memory if its page is held. Must hold the list's lock.
+     *
+     * @param count The number of Items before it
+     * @param item  The Item
+     */
+    private void append(int count, Item item) {
+        int lastPage = count / pageSize;
+        List<Item> page = pages.get(lastPage);
+        if (page != null && !positions.containsKey(item.getId())) {
+            page.add(item);
+            if (item.getId() > 0)
+                positions.put(item.getId(), count);
+        }
+        forgetPageStartsAfter(lastPage);
+    }
+
+    /**
+     * Returns the last page up to the given one whose start is known, after working out the
+     * starts that follow from the full pages in memory. The starts of the pages after it are left
+     * to be read from the primary key. Must hold the list's lock.
+     *
+     * @param pageIndex The index of the page
+     * @return          The index of the last page up to it whose start is known
+     */
+    private int knownPageStart(int pageIndex) {
+        while (pageStarts.size() <= pageIndex) {
+            List<Item> previous = pages.get(pageStarts.size() - 1);
+            if (previous == null || previous.size() < pageSize)
+                break;
+            addPageStart(previous.get(pageSize - 1).getId());
+        }
+        return Math.min(pageStarts.size() - 1, pageIndex);
+    }
+
+    /**
+     * Remember where the page after the last known one starts. Must hold the list's lock.
+     *
+     * @param afterId The ID of the Item preceding the page
+     */
+    private void addPageStart(long afterId) {
+        pageStarts.add(afterId);
+        pageSkips.add(0);
+    }
+
+    /**
+     * Forget where the pages after the given page start. Must hold the list's lock.
+     *
+     * @param pageIndex The index of the last page whose start is kept
+     */
+    private void forgetPageStartsAfter(int pageIndex) {
+        while (pageStarts.size() > pageIndex + 1) {
+            pageStarts.remove(pageStarts.size() - 1);
+            pageSkips.remove(pageSkips.size() - 1);
+        }
+    }
+
+    /**
+     * Drop the pages from the given page on, and forget where they start. Must hold the list's
+     * lock.
+     *
+     * @param pageIndex The index of the first page to drop
+     */
+    private void invalidateFrom(int pageIndex) {
+        dropPagesFrom(pageIndex);
+        forgetPageStartsAfter(pageIndex);
+    }
+
+    /**
+     * Drop the pages from the given page on, since removing an Item shifts every Item after it,
+     * and make any page being read not be kept. Must hold the list's lock.
+     *
+     * @param pageIndex The index of the first page to drop
+     */
+    private void dropPagesFrom(int pageIndex) {
+        generation++;
+        Iterator<Map.Entry<Integer, List<Item>>> it = pages.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, List<Item>> e = it.next();
+            if (e.getKey() >= pageIndex) {
+                unindex(e.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Forget the positions of the Items of a page dropped from memory. Must hold the list's lock.
+     *
+     * @param page The Items of the page
+     */
+    private void unindex(List<Item> page) {
+        for (Item item : page)
+            positions.remove(item.getId());
+    }
+
+    /**
+     * Load the page of a position in the background if it is not in memory, and the neighbouring
+     * page if the position is close to the edge of its page.
+     *
+     * @param index The position
+     */
+    private void prefetchAround(int index) {
+        int pageIndex = index / pageSize;
+        int offset = index % pageSize;
+        prefetch(pageIndex);
+        if (offset >= pageSize - PREFETCH_DISTANCE)
+            prefetch(pageIndex + 1);
+        else if (offset < PREFETCH_DISTANCE && pageIndex > 0)
+            prefetch(pageIndex - 1);
+    }
+
+    /**
+     * Load a page in the background, unless it is in memory, being loaded, or past the end of the
+     * list, and tell the page listener once it is loaded.
+     *
+     * @param pageIndex The index of the page
+     */
+    private void prefetch(int pageIndex) {
+        synchronized (this) {
+            if (pageIndex < 0 || pageIndex * pageSize >= size || pages.containsKey(pageIndex)
+                    || !prefetching.add(pageIndex))
+                return;
+        }
+        prefetcher.execute(() -> {
+            Executor publisher;
+            PageLoadListener listener;
+            synchronized (PagedItemList.this) {
+                if (pageIndex * pageSize >= size || pages.containsKey(pageIndex)) {
+                    prefetching.remove(pageIndex);
+                    return;
+                }
+            }
+            try {
+                load(pageIndex);
+            } finally {
+                synchronized (PagedItemList.this) {
+                    prefetching.remove(pageIndex);
+                    publisher = pagePublisher;
+                    listener = pageListener;
+                }
+            }
+            if (listener != null)
+                publisher.execute(() -> listener.onPageLoaded(pageIndex));
+        });
+    }
+}
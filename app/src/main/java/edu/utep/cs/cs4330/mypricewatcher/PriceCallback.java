@@ -0,0 +1,28 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  Callback to be implemented when fetching a price asynchronously with fetchPriceAsync(). Exactly
+ *  one of its methods is invoked, from a background thread, once the price is found, the fetch
+ *  fails, or the fetch runs past its deadline. Neither method is invoked for a fetch that was
+ *  cancelled by the caller.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public interface PriceCallback {
+    /**
+     * Invoked when the price of the item at the url was found.
+     *
+     * @param url   The Web url containing the item
+     * @param price The price of the item
+     */
+    void onPriceFetched(String url, double price);
+
+    /**
+     * Invoked when the price of the item at the url could not be found in time.
+     *
+     * @param url   The Web url containing the item
+     * @param error The reason the price could not be found, a TimeoutException if the deadline passed
+     */
+    void onPriceError(String url, Exception error);
+}
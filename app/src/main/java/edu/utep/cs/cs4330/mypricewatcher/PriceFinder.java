@@ -1,6 +1,13 @@
 package edu.utep.cs.cs4330.mypricewatcher;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A PriceFinder is responsible for parsing through a web URL
@@ -14,6 +21,21 @@ public class PriceFinder {
     private static final Random r = new Random();
     private static final double min = 0.0;
     private static final double max = 100.0;
+    public static final long DEFAULT_DEADLINE_MILLIS = 30 * 1000;   /* Default overall deadline of an async fetch */
+    private static final int ASYNC_POOL_SIZE = 2;                   /* Threads running async fetches */
+
+    /* Threads running the asynchronous fetches */
+    private static final ExecutorService asyncExecutor = Executors.newFixedThreadPool(ASYNC_POOL_SIZE, r -> {
+        Thread t = new Thread(r, "price-fetch");
+        t.setDaemon(true);
+        return t;
+    });
+    /* Thread expiring asynchronous fetches that run past their deadline */
+    private static final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "price-fetch-deadline");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
      * The constructor for a PriceFinder.
@@ -31,4 +53,81 @@ public class PriceFinder {
     public double fetchPrice(String url) {
         return min + (max - min) * r.nextDouble();
     }
+
+    /**
+     * Returns a double representation of the item found withing the url. PriceFinders that
+     * remember prices should fetch a new one when asked to bypass the cache; by default this is
+     * the same as fetchPrice(String).
+     *
+     * @param url           The Web url containing an item
+     * @param bypassCache   Whether a remembered price must not be used
+     * @return              A double representation of the item's price
+     */
+    public double fetchPrice(String url, boolean bypassCache) {
+        return fetchPrice(url);
+    }
+
+    /**
+     * Fetch the price of the item found within the url in the background, with the default deadline.
+     *
+     * @param url       The Web url containing an item
+     * @param callback  The callback to notify once the price is found or cannot be found, or null
+     * @return          The request, which can be cancelled once its result no longer matters
+     */
+    public PriceRequest fetchPriceAsync(String url, PriceCallback callback) {
+        return fetchPriceAsync(url, DEFAULT_DEADLINE_MILLIS, callback);
+    }
+
+    /**
+     * Fetch the price of the item found within the url in the background. If the price has not
+     * been found once the deadline passes, the request is cancelled and the callback is notified
+     * with a TimeoutException.
+     *
+     * @param url               The Web url containing an item
+     * @param deadlineMillis    How long to wait for the price, overall, before giving up
+     * @param callback          The callback to notify once the price is found or cannot be found, or null
+     * @return                  The request, which can be cancelled once its result no longer matters
+     */
+    public PriceRequest fetchPriceAsync(String url, long deadlineMillis, PriceCallback callback) {
+        final PriceRequest request = new PriceRequest(this, url, callback);
+        asyncExecutor.execute(request);
+        request.setDeadline(deadlines.schedule(request::expire, deadlineMillis, TimeUnit.MILLISECONDS));
+        return request;
+    }
+
+    /**
+     * Abort whatever fetch the worker thread is in the middle of, because its result is no longer
+     * needed. Subclasses that block on the network should override this; by default nothing is done.
+     *
+     * @param worker The thread whose fetch should be aborted
+     */
+    protected void abort(Thread worker) {
+    }
+
+    /**
+     * Returns the prices of the items found within each of the urls. Urls whose price could not
+     * be found are left out of the returned map, but a failure of the service itself, or the
+     * cancellation of the fetch, is thrown. Subclasses able to look up many urls at once should
+     * override this; by default every url is fetched one at a time with fetchPrice().
+     *
+     * @param urls  The Web urls containing the items
+     * @return      A map from each url to the double representation of its item's price
+     */
+    public Map<String, Double> fetchPrices(Collection<String> urls) {
+        Map<String, Double> prices = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (prices.containsKey(url))
+                continue;
+            try {
+                prices.put(url, fetchPrice(url));
+            }
+            catch (ServiceUnavailableException | CircuitOpenException | FetchCancelledException e) {
+                throw e;
+            }
+            catch (PriceNotFoundException e) {
+                /* Leave the url out, so the caller can tell its price was not found */
+            }
+        }
+        return prices;
+    }
 }
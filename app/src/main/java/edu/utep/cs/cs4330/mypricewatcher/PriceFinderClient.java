@@ -2,11 +2,17 @@ package edu.utep.cs.cs4330.mypricewatcher;
 
 import android.util.Log;
 
-import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  *  A subclass of PriceFinder that overrides fetchPrice(). This PriceFinder subclass will actually
@@ -19,74 +25,271 @@ import java.net.URL;
 public class PriceFinderClient  extends PriceFinder{
     private final String USER = "dgnajera";
     private final String PIN = "cs.utep.edu";
-    private final String WS_URL = "http://142.93.17.10/query";
+    public static final String DEFAULT_WS_URL = "http://142.93.17.10/query";   /* Query endpoint of the Web service */
     private final int RESPONSE_OK = 200;
-    private String response;
+    private volatile boolean batchSupported = true;     /* Whether the Web service accepts batch queries */
+    private volatile int maxBodyBytes = PriceParser.DEFAULT_MAX_BODY_BYTES;    /* Largest response body parsed */
+    private final HttpTransport transport;              /* Pooled, keep-alive HTTP transport */
+    private final ValidatorStore validators;            /* Validators of the last full response per url */
+    private final String wsUrl;                         /* Query endpoint queried by the client */
+
+    /**
+     * The default constructor for a PriceFinderClient, using a default HttpTransport.
+     */
+    public PriceFinderClient() {
+        this(new HttpTransport());
+    }
+
+    /**
+     * The constructor for a PriceFinderClient that queries the Web service over the given transport.
+     *
+     * @param transport The HttpTransport to query the Web service over
+     */
+    public PriceFinderClient(HttpTransport transport) {
+        this(transport, ValidatorStore.getInstance());
+    }
+
+    /**
+     * The constructor for a PriceFinderClient that queries the Web service over the given
+     * transport, and remembers the validators of its responses in the given store.
+     *
+     * @param transport     The HttpTransport to query the Web service over
+     * @param validators    The store of validators to make conditional queries with
+     */
+    public PriceFinderClient(HttpTransport transport, ValidatorStore validators) {
+        this(transport, validators, DEFAULT_WS_URL);
+    }
+
+    /**
+     * The constructor for a PriceFinderClient that queries the Web service at the given query
+     * endpoint, such as a local stub of the Web service.
+     *
+     * @param transport     The HttpTransport to query the Web service over
+     * @param validators    The store of validators to make conditional queries with
+     * @param wsUrl         The query endpoint of the Web service, without a trailing slash
+     */
+    public PriceFinderClient(HttpTransport transport, ValidatorStore validators, String wsUrl) {
+        this.transport = transport;
+        this.validators = validators;
+        this.wsUrl = wsUrl;
+    }
 
     /**
      * Override in order to actually query a Web service for the item price information.
      *
      * @param url                       The Web url containing an item
      * @return                          The price of the item at 'url'
-     * @throws PriceNotFoundException   Throw in case price is not found
+     * @throws PriceNotFoundException   Throw in case price is not found, a ServiceUnavailableException
+     *                                  in case the Web service failed, or a FetchCancelledException
+     *                                  in case the query was cancelled
      */
     @Override
     public double fetchPrice(String url) throws PriceNotFoundException{
+        double price = query(USER, PIN, url);
+        if (Double.isNaN(price))
+            throw new PriceNotFoundException();
+        return price;
+    }
+
+    /**
+     * Set the largest response body that is parsed. A larger response is treated as holding no
+     * price, instead of being read into memory.
+     *
+     * @param maxBodyBytes The largest response body, in bytes
+     */
+    public void setMaxBodyBytes(int maxBodyBytes) {
+        if (maxBodyBytes < 1)
+            throw new IllegalArgumentException("Body size must be positive.");
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Override in order to abort the worker's in-flight query to the Web service.
+     *
+     * @param worker The thread whose query should be aborted
+     */
+    @Override
+    protected void abort(Thread worker) {
+        transport.abort(worker);
+    }
+
+    /**
+     * Override in order to query the Web service for the prices of many items in a single
+     * request. Falls back to one query per url when the Web service does not support batch
+     * queries, or when the batch response cannot be matched up with the urls that were sent.
+     * Throws a ServiceUnavailableException if the Web service failed.
+     *
+     * @param urls  The Web urls containing the items
+     * @return      A map from each url to the price of its item, leaving out urls whose price was not found
+     */
+    @Override
+    public Map<String, Double> fetchPrices(Collection<String> urls) {
+        List<String> sites = new ArrayList<>(new LinkedHashSet<>(urls));
+        if (!batchSupported || sites.size() < 2)
+            return super.fetchPrices(sites);
+
+        double[] responses = batchQuery(USER, PIN, sites);
+        if (responses == null)
+            return super.fetchPrices(sites);
+
+        Map<String, Double> prices = new LinkedHashMap<>();
+        for (int i = 0; i < sites.size(); i++) {
+            /* Leave out urls without a price, so the caller can tell their price was not found */
+            if (!Double.isNaN(responses[i]))
+                prices.put(sites.get(i), responses[i]);
+        }
+        return prices;
+    }
+
+    /**
+     * Send every site to the web server in a single request, one site per line, and return the
+     * prices on the response lines, each of which holds either "Error" or the price of the site on
+     * the same line of the request. If the web server does not support batch queries, remember it,
+     * so that later batches go straight to one query per site.
+     *
+     * @param user  Web service user that is generating the request
+     * @param pin   Web service user pin
+     * @param sites The sites to send to the Web service, to have it return their prices
+     *
+     * @return      The price of every site, NaN for sites whose price was not found, or null if the
+     *              batch query is not supported or its response does not hold one line per site
+     * @throws ServiceUnavailableException Throw in case the Web service failed, or a
+     *                                     FetchCancelledException in case the query was cancelled
+     */
+    private double[] batchQuery(String user, String pin, List<String> sites) throws ServiceUnavailableException {
         try {
-            return Double.parseDouble(query(USER, PIN, url));
+            URL url = new URL(wsUrl + "/" + user + "/" + pin);
+            Log.d("PriceFinderClient.batchQuery", "Making batch query for " + sites.size() + " sites: " + url);
+            StringBuilder body = new StringBuilder();
+            for (String site : sites)
+                body.append(site).append('\n');
+            return transport.post(url, "text/plain; charset=utf-8", body.toString().getBytes("UTF-8"), (con, in) -> {
+                int code = con.getResponseCode();
+                if (code == RESPONSE_OK)
+                    return PriceParser.parsePrices(in, sites.size(), maxBodyBytes);
+                if (code == HttpURLConnection.HTTP_BAD_METHOD || code == HttpURLConnection.HTTP_NOT_FOUND
+                        || code == HttpURLConnection.HTTP_NOT_IMPLEMENTED) {
+                    Log.d("PriceFinderClient.batchQuery", "Batch queries not supported (" + code + "), falling back to single queries");
+                    batchSupported = false;
+                    return null;
+                }
+                checkAvailable(code);
+                return null;
+            });
         }
-        catch (java.lang.NumberFormatException e) {
-            throw new PriceNotFoundException();
+        catch (IOException e) {
+            throw failure("Batch query", e);
         }
     }
 
     /**
      * Build and send the query to the web server based on the parameters passed in, and
-     * return the response.
+     * return the response. If the validators of an earlier response for the site are known the
+     * query is conditional, and a 304 Not Modified answer returns the price of that response
+     * without any body being read.
      *
      * @param user  Web service user that is generating the request
      * @param pin   Web service user pin
      * @param site  The site to send to the Web service, to have it return the price
      *
-     * @return      Web service response (either "error" or the price of the item on the 'site'
+     * @return      The price of the item on the 'site', or NaN if the Web service could not find it
+     * @throws ServiceUnavailableException Throw in case the Web service failed, or a
+     *                                     FetchCancelledException in case the query was cancelled
      */
-    private String query(String user, String pin, String site) {
+    private double query(String user, String pin, String site) throws ServiceUnavailableException {
         try {
-            String query = WS_URL + "/" + user + "/" + pin + "/" + site;
+            String query = wsUrl + "/" + user + "/" + pin + "/" + site;
             URL url = new URL(query);
-            Log.d("PriceFinderClient.query", "Making query: " + url);
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            if (con.getResponseCode() == RESPONSE_OK) {
-                response = readAll(con.getInputStream());
-                con.disconnect();
-                Log.d("PriceFinderClient.query", "Success! Response = " + response);
-                return response;
-            }
-            else {
-                con.disconnect();
-                return "Error";
+            ValidatorStore.Validator validator = validators.get(site);
+            Map<String, String> headers = null;
+            if (validator != null) {
+                headers = new HashMap<>();
+                if (validator.getETag() != null)
+                    headers.put("If-None-Match", validator.getETag());
+                if (validator.getLastModified() != null)
+                    headers.put("If-Modified-Since", validator.getLastModified());
             }
+            Log.d("PriceFinderClient.query", "Making query: " + url);
+            return transport.get(url, headers, (con, in) -> {
+                int code = con.getResponseCode();
+                if (code == HttpURLConnection.HTTP_NOT_MODIFIED && validator != null) {
+                    validators.recordNotModified();
+                    Log.d("PriceFinderClient.query", "Not modified, price = " + validator.getPrice());
+                    return validator.getPrice();
+                }
+                if (code == RESPONSE_OK) {
+                    double price = readPrice(in);
+                    Log.d("PriceFinderClient.query", "Success! Price = " + price);
+                    remember(site, con, price);
+                    return price;
+                }
+                checkAvailable(code);
+                return Double.NaN;
+            });
         }
-        catch (Exception e) {
-            return "Error";
+        catch (IOException e) {
+            throw failure("Query", e);
         }
     }
 
     /**
-     * Given an InputStream, read, build, and return the response.
+     * Remember the validators of a full response for the site, along with the price it held, so
+     * that the next query of the site can be conditional. Responses without a price are not
+     * remembered.
+     *
+     * @param site  The site that was queried
+     * @param con   The connection, whose response headers hold the validators
+     * @param price The price the response held, or NaN
+     */
+    private void remember(String site, HttpURLConnection con, double price) {
+        if (Double.isNaN(price))
+            validators.remove(site);
+        else
+            validators.put(site, con.getHeaderField("ETag"), con.getHeaderField("Last-Modified"), price);
+    }
+
+    /**
+     * Returns the exception to throw for a query that failed with an IOException: a
+     * FetchCancelledException if the query was aborted because its result no longer mattered,
+     * since the Web service did not fail, or a ServiceUnavailableException otherwise.
+     *
+     * @param query The kind of query that failed
+     * @param e     The IOException the query failed with
+     * @return      The exception to throw
+     */
+    private static PriceNotFoundException failure(String query, IOException e) {
+        if (HttpTransport.isCancellation(e))
+            return new FetchCancelledException(query + " was cancelled.", e);
+        return new ServiceUnavailableException(query + " failed: " + e.getMessage(), e);
+    }
+
+    /**
+     * Throw if the response code means the Web service itself failed, rather than that it could
+     * not find the price: it is overloaded (429 or 503) or hit a server error (5xx).
+     *
+     * @param code                          The response code of the Web service
+     * @throws ServiceUnavailableException  Throw in case the Web service failed
+     */
+    private static void checkAvailable(int code) throws ServiceUnavailableException {
+        if (code == 429 || code >= HttpURLConnection.HTTP_INTERNAL_ERROR)
+            throw new ServiceUnavailableException("Web service responded with " + code);
+    }
+
+    /**
+     * Given an InputStream, parse and return the price it holds. Only as much of the stream as
+     * the price needs is read, and the stream is left open, so that the transport can hand its
+     * connection back to the pool.
      *
      * @param stream        The InputStream from which to read from
-     * @return              The response read from the stream
-     * @throws Exception    Throw Exception
+     * @return              The price read from the stream, or NaN if it holds none
+     * @throws IOException  Throw in case the stream cannot be read
      */
-    private String readAll(InputStream stream) throws Exception {
-        BufferedReader in = new BufferedReader(new InputStreamReader(stream));
-        StringBuilder response = new StringBuilder();
-        String output;
-        while ((output = in.readLine()) != null) {
-            response.append(output);
+    private double readPrice(InputStream stream) throws IOException {
+        try {
+            return PriceParser.parsePrice(stream, maxBodyBytes);
+        }
+        catch (java.lang.NumberFormatException e) {
+            return Double.NaN;
         }
-        in.close();
-        return response.toString();
     }
 }
@@ -0,0 +1,189 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  Renders prices in cents and percentage changes in basis points as text, in place of shared
+ *  DecimalFormat instances, which are not thread-safe. Prices are rendered as "$#,##0.00" and
+ *  percentage changes as "#0.##%", or "- #0.##%" when negative, always with US separators. The
+ *  rendering methods write into a char array given by the caller and allocate nothing, so any
+ *  number of threads can call them at once; the methods returning a String render into a buffer
+ *  held by the calling thread, and only allocate the String itself. A PriceSnapshot keeps the
+ *  text rendered for it, so that every price is rendered once per version.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public final class PriceFormatter {
+    public static final int MAX_PRICE_LENGTH = 27;          /* Longest rendered price, such as -$92,233,720,368,547,758.08 */
+    public static final int MAX_PERC_LENGTH = 23;           /* Longest rendered percentage change */
+    private static final double BASIS_POINTS_LIMIT = 0x1p63;   /* Smallest number of basis points too large for a long */
+
+    /* Rendering buffer of each thread */
+    private static final ThreadLocal<char[]> buffers = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[MAX_PRICE_LENGTH];
+        }
+    };
+
+    /**
+     * This class only has static methods.
+     */
+    private PriceFormatter() {
+    }
+
+    /**
+     * Returns a price rendered as a String.
+     *
+     * @param cents The price, in cents
+     * @return      The price, such as $1,234.50
+     */
+    public static String formatCents(long cents) {
+        char[] buffer = buffers.get();
+        return new String(buffer, 0, formatCents(cents, buffer, 0));
+    }
+
+    /**
+     * Returns a percentage change rendered as a String.
+     *
+     * @param fraction  The percentage change, where 0.05 is 5%
+     * @return          The percentage change, such as 5.25% or - 12%
+     */
+    public static String formatPercChange(double fraction) {
+        char[] buffer = buffers.get();
+        return new String(buffer, 0, formatPercChange(fraction, buffer, 0));
+    }
+
+    /**
+     * Render a price into a char array.
+     *
+     * @param cents     The price, in cents
+     * @param out       The array, with room for MAX_PRICE_LENGTH chars from the offset
+     * @param offset    Where the price starts in the array
+     * @return          The number of chars written
+     */
+    public static int formatCents(long cents, char[] out, int offset) {
+        boolean negative = cents < 0;
+        long value = negative ? cents : -cents;           /* Kept negative, so that Long.MIN_VALUE fits */
+        long dollars = value / 100;
+        int digits = countDigits(dollars);
+        int length = (negative ? 1 : 0) + 1 + digits + (digits - 1) / 3 + 3;
+        int pos = offset + length;
+        int rest = (int) (dollars * 100 - value);
+        out[--pos] = (char) ('0' + rest % 10);
+        out[--pos] = (char) ('0' + rest / 10);
+        out[--pos] = '.';
+        for (int i = 0; i < digits; i++) {
+            if (i > 0 && i % 3 == 0)
+                out[--pos] = ',';
+            long next = dollars / 10;
+            out[--pos] = (char) ('0' + (next * 10 - dollars));
+            dollars = next;
+        }
+        out[--pos] = '$';
+        if (negative)
+            out[--pos] = '-';
+        return length;
+    }
+
+    /**
+     * Render a percentage change into a char array, rounded to whole basis points. A change that
+     * is not a number, such as that of an Item without an initial price, is rendered as NaN, and
+     * one too large to count in basis points is rendered as infinite, as an infinite one is.
+     *
+     * @param fraction  The percentage change, where 0.05 is 5%
+     * @param out       The array, with room for MAX_PERC_LENGTH chars from the offset
+     * @param offset    Where the percentage change starts in the array
+     * @return          The number of chars written
+     */
+    public static int formatPercChange(double fraction, char[] out, int offset) {
+        if (Double.isNaN(fraction))
+            return copy("NaN", out, offset);
+        double basisPoints = Math.rint(fraction * 10000);
+        if (basisPoints >= BASIS_POINTS_LIMIT || basisPoints < -BASIS_POINTS_LIMIT)
+            return copy(fraction > 0 ? "\u221E%" : "- \u221E%", out, offset);
+        return formatBasisPoints((long) basisPoints, out, offset);
+    }
+
+    /**
+     * Render a percentage change in basis points into a char array. Trailing zeros of the
+     * hundredths of a percent are left out.
+     *
+     * @param basisPoints   The percentage change, where 525 is 5.25%
+     * @param out           The array, with room for MAX_PERC_LENGTH chars from the offset
+     * @param offset        Where the percentage change starts in the array
+     * @return              The number of chars written
+     */
+    public static int formatBasisPoints(long basisPoints, char[] out, int offset) {
+        boolean negative = basisPoints < 0;
+        long value = negative ? basisPoints : -basisPoints;
+        long whole = value / 100;
+        int hundredths = (int) (whole * 100 - value);
+        int decimals = hundredths == 0 ? 0 : hundredths % 10 == 0 ? 1 : 2;
+        int digits = countDigits(whole);
+        int length = (negative ? 2 : 0) + digits + (decimals > 0 ? decimals + 1 : 0) + 1;
+        int pos = offset + length;
+        out[--pos] = '%';
+        if (decimals == 2)
+            out[--pos] = (char) ('0' + hundredths % 10);
+        if (decimals > 0) {
+            out[--pos] = (char) ('0' + hundredths / 10);
+            out[--pos] = '.';
+        }
+        for (int i = 0; i < digits; i++) {
+            long next = whole / 10;
+            out[--pos] = (char) ('0' + (next * 10 - whole));
+            whole = next;
+        }
+        if (negative) {
+            out[--pos] = ' ';
+            out[--pos] = '-';
+        }
+        return length;
+    }
+
+    /**
+     * Convert a percentage change to whole basis points, rounding half to even as DecimalFormat does.
+     * A change too large to count in basis points, including an infinite one, is clamped to
+     * Long.MAX_VALUE or Long.MIN_VALUE.
+     *
+     * @param fraction  The percentage change, where 0.05 is 5%
+     * @return          The percentage change in basis points, where 500 is 5%
+     * @throws IllegalArgumentException If the percentage change is not a number
+     */
+    public static long toBasisPoints(double fraction) {
+        if (Double.isNaN(fraction))
+            throw new IllegalArgumentException("Percentage change is not a number");
+        double basisPoints = Math.rint(fraction * 10000);
+        if (basisPoints >= BASIS_POINTS_LIMIT)
+            return Long.MAX_VALUE;
+        if (basisPoints < -BASIS_POINTS_LIMIT)
+            return Long.MIN_VALUE;
+        return (long) basisPoints;
+    }
+
+    /**
+     * Returns the number of decimal digits of a number, at least one for zero.
+     *
+     * @param negated   The number, negated
+     * @return          The number of digits
+     */
+    private static int countDigits(long negated) {
+        int digits = 1;
+        for (long n = negated / 10; n != 0; n /= 10)
+            digits++;
+        return digits;
+    }
+
+    /**
+     * Copy a string into a char array.
+     *
+     * @param s         The string
+     * @param out       The array
+     * @param offset    Where the string starts in the array
+     * @return          The number of chars written
+     */
+    private static int copy(String s, char[] out, int offset) {
+        s.getChars(0, s.length(), out, offset);
+        return s.length();
+    }
+}
@@ -0,0 +1,21 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.io.IOException;
+
+/**
+ *  Visitor to be implemented by anything reading the whole price history in turn, such as an
+ *  export, without holding it all in memory. It is invoked on the thread reading the database.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public interface PriceHistoryVisitor {
+    /**
+     * Invoked once for every price point, grouped by item and oldest first.
+     *
+     * @param url           The url of the item the point belongs to
+     * @param point         The price point
+     * @throws IOException  Throw in case the point cannot be written out, which stops the visit
+     */
+    void visit(String url, PricePoint point) throws IOException;
+}
@@ -0,0 +1,219 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  Appends every change in an Item's price to the price history in the database. Observations are
+ *  queued in memory and written by a single background thread, in one transaction per batch,
+ *  once a batch is full or shortly after the first observation of a batch was queued, so that a
+ *  refresh of many Items does not cost a database write per Item. At most once an hour, after a
+ *  batch was written, history older than the raw retention is downsampled into hourly aggregates,
+ *  hourly aggregates older than the hourly retention into daily aggregates, and daily aggregates
+ *  older than the daily retention are dropped, so that the history stays bounded. A batch that
+ *  cannot be written is queued again ahead of newer observations and retried shortly after.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class PriceHistoryWriter {
+    public static final int DEFAULT_BATCH_SIZE = 64;                                    /* Default observations per write */
+    public static final long DEFAULT_FLUSH_DELAY_MILLIS = 2000;                         /* Default wait for a batch to fill */
+    public static final int MAX_PENDING = 4096;                                         /* Observations kept while unwritten */
+    public static final long DEFAULT_RAW_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(7);      /* Default age of raw observations */
+    public static final long DEFAULT_HOURLY_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(90);  /* Default age of hourly aggregates */
+    public static final long DEFAULT_DAILY_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(730);  /* Default age of daily aggregates */
+    private static final long COMPACTION_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);      /* Time between downsamplings */
+    private static final PriceHistoryWriter instance = new PriceHistoryWriter();            /* Writer shared by the application */
+
+    private final ScheduledExecutorService executor;        /* Single thread writing the batches */
+    private final ArrayDeque<PricePoint> pending;           /* Observations not written yet, oldest first */
+    private volatile DBHandler dbHandler;                   /* Database written to, null until set */
+    private boolean flushScheduled;                         /* Whether a delayed write is scheduled */
+    private volatile int batchSize;                         /* Observations per write */
+    private volatile long rawRetentionMillis;               /* Age after which observations are downsampled hourly */
+    private volatile long hourlyRetentionMillis;            /* Age after which hourly aggregates are downsampled daily */
+    private volatile long dailyRetentionMillis;             /* Age after which daily aggregates are dropped */
+    private long lastCompaction;                            /* When history was last downsampled, on the writer thread */
+    private final AtomicLong writtenCount;                  /* Observations written */
+    private final AtomicLong droppedCount;                  /* Observations dropped because too many were pending */
+
+    /**
+     * The constructor for a PriceHistoryWriter. Use getInstance() for the writer shared by the application.
+     */
+    private PriceHistoryWriter() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "price-history-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        pending = new ArrayDeque<>();
+        batchSize = DEFAULT_BATCH_SIZE;
+        rawRetentionMillis = DEFAULT_RAW_RETENTION_MILLIS;
+        hourlyRetentionMillis = DEFAULT_HOURLY_RETENTION_MILLIS;
+        dailyRetentionMillis = DEFAULT_DAILY_RETENTION_MILLIS;
+        writtenCount = new AtomicLong();
+        droppedCount = new AtomicLong();
+    }
+
+    /**
+     * Getter for the PriceHistoryWriter shared by the application.
+     *
+     * @return The shared PriceHistoryWriter
+     */
+    public static PriceHistoryWriter getInstance() {
+        return instance;
+    }
+
+    /**
+     * Set the database the history is written to. Observations queued before the database is set
+     * are written once it is.
+     *
+     * @param dbHandler The database
+     */
+    public void setDatabase(DBHandler dbHandler) {
+        this.dbHandler = dbHandler;
+        flush();
+    }
+
+    /**
+     * Queue a price observed for an item. Items that are not stored in the database yet have no
+     * history, and are ignored.
+     *
+     * @param itemId        The database ID of the item
+     * @param priceCents    The observed price, in cents
+     * @param time          When the price was observed, in milliseconds since the epoch
+     */
+    public void record(long itemId, long priceCents, long time) {
+        if (itemId <= 0)
+            return;
+        synchronized (pending) {
+            if (pending.size() == MAX_PENDING) {
+                pending.pollFirst();
+                droppedCount.incrementAndGet();
+            }
+            pending.addLast(new PricePoint(itemId, time, priceCents));
+            if (pending.size() % batchSize == 0) {
+                executor.execute(this::write);
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(this::write, DEFAULT_FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Write every queued observation now, in the background.
+     */
+    public void flush() {
+        executor.execute(this::write);
+    }
+
+    /**
+     * Set the number of observations written at once.
+     *
+     * @param batchSize The number of observations per write
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive.");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set how long history is kept at each resolution. Takes effect at the next downsampling.
+     *
+     * @param rawMillis     The age after which observations are downsampled into hourly aggregates
+     * @param hourlyMillis  The age after which hourly aggregates are downsampled into daily aggregates
+     * @param dailyMillis   The age after which daily aggregates are dropped
+     */
+    public void setRetention(long rawMillis, long hourlyMillis, long dailyMillis) {
+        if (rawMillis < 0 || hourlyMillis < rawMillis || dailyMillis < hourlyMillis)
+            throw new IllegalArgumentException("Retention must not be negative, nor shrink with coarser resolution.");
+        rawRetentionMillis = rawMillis;
+        hourlyRetentionMillis = hourlyMillis;
+        dailyRetentionMillis = dailyMillis;
+    }
+
+    /**
+     * Getter for the number of observations written to the database.
+     *
+     * @return The number of observations written
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Getter for the number of observations dropped because too many were waiting to be written.
+     *
+     * @return The number of observations dropped
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Write every queued observation in a single transaction, and downsample old history if it
+     * has not been done within the last hour. A batch that fails to be written is queued again,
+     * oldest first, and a retry is scheduled; observations that no longer fit within MAX_PENDING
+     * are dropped and counted. Runs on the writer thread.
+     */
+    private void write() {
+        DBHandler db = dbHandler;
+        List<PricePoint> batch;
+        synchronized (pending) {
+            flushScheduled = false;
+            if (db == null || pending.isEmpty())
+                return;
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        try {
+            db.appendPriceHistory(batch);
+        } catch (RuntimeException e) {
+            Log.d("PriceHistoryWriter.write", "Unable to write " + batch.size() + " observations: " + e.getMessage());
+            requeue(batch);
+            return;
+        }
+        writtenCount.addAndGet(batch.size());
+        long now = System.currentTimeMillis();
+        if (now - lastCompaction >= COMPACTION_INTERVAL_MILLIS) {
+            lastCompaction = now;
+            try {
+                db.compactPriceHistory(now, rawRetentionMillis, hourlyRetentionMillis, dailyRetentionMillis);
+            } catch (RuntimeException e) {
+                Log.d("PriceHistoryWriter.write", "Unable to downsample the history: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Queue a batch that could not be written again, ahead of the observations queued since, and
+     * schedule another write. The oldest observations are dropped if more than MAX_PENDING would
+     * be waiting.
+     *
+     * @param batch The observations of the batch, oldest first
+     */
+    private void requeue(List<PricePoint> batch) {
+        synchronized (pending) {
+            for (int i = batch.size() - 1; i >= 0; i--)
+                pending.addFirst(batch.get(i));
+            while (pending.size() > MAX_PENDING) {
+                pending.pollFirst();
+                droppedCount.incrementAndGet();
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(this::write, DEFAULT_FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
@@ -5,10 +5,18 @@ package edu.utep.cs.cs4330.mypricewatcher;
  *  price is unable to be retrieved from the PriceFinder.
  *
  * @author Damian Najera
- * @version 1.0
+ * @version 1.1
  */
 public class PriceNotFoundException extends RuntimeException {
     public PriceNotFoundException() {
         super("Unable to fetch price.");
     }
+
+    public PriceNotFoundException(String message) {
+        super(message);
+    }
+
+    public PriceNotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
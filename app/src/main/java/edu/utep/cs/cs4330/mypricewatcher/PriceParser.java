@@ -0,0 +1,257 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ *  Parses prices straight out of the Web service's response bodies. The body is read into a
+ *  buffer reused by every query made on the same thread, each line is trimmed into a second
+ *  reused buffer, and an ordinary price such as "1234.56" is converted to a double directly from
+ *  its bytes, so that a refresh no longer builds a String per line and per response. Reading
+ *  stops as soon as the needed lines are complete, and a body larger than the allowed maximum is
+ *  rejected instead of being read into memory, so a huge or malicious response cannot make the
+ *  client allocate without bound.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public final class PriceParser {
+    public static final int DEFAULT_MAX_BODY_BYTES = 16 * 1024;     /* Default largest body that is parsed */
+    private static final int BUFFER_SIZE = 512;                     /* Size of the reused read buffer */
+    private static final int MAX_LINE_LENGTH = 32;                  /* Longest trimmed line that can hold a price */
+    private static final int LINE_TOO_LONG = -2;                    /* Returned for a line that cannot be a price */
+    private static final int MAX_EXACT_FRACTION_DIGITS = 22;        /* Largest power of ten a double holds exactly */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;        /* Largest integer a double holds exactly */
+
+    /* Powers of ten that a double holds exactly */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /* Buffers reused by every parse on the same thread */
+    private static final ThreadLocal<Scanner> scanners = new ThreadLocal<Scanner>() {
+        @Override
+        protected Scanner initialValue() {
+            return new Scanner();
+        }
+    };
+
+    /**
+     * Reads a body one byte at a time out of a reused buffer, counting the bytes read against the
+     * allowed maximum.
+     */
+    private static class Scanner {
+        private final byte[] buffer = new byte[BUFFER_SIZE];    /* Bytes read from the body */
+        private final byte[] line = new byte[MAX_LINE_LENGTH];  /* Trimmed contents of the current line */
+        private InputStream in;                                 /* Body being read */
+        private int position;                                   /* Next byte of the buffer to return */
+        private int limit;                                      /* Number of valid bytes in the buffer */
+        private int remaining;                                  /* Bytes that may still be read */
+
+        private void reset(InputStream in, int maxBytes) {
+            this.in = in;
+            position = 0;
+            limit = 0;
+            remaining = maxBytes;
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                if (remaining == 0) {
+                    if (in.read() == -1)
+                        return -1;
+                    throw new NumberFormatException("Response is larger than allowed.");
+                }
+                limit = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+                remaining -= limit;
+                position = 0;
+            }
+            return buffer[position++] & 0xff;
+        }
+    }
+
+    /**
+     * This class only has static methods.
+     */
+    private PriceParser() {
+    }
+
+    /**
+     * Parse the price on the first non-empty line of the body. The rest of the body is not read.
+     *
+     * @param in                        The response body
+     * @param maxBytes                  The most bytes that may be read before the price is complete
+     * @return                          The price
+     * @throws NumberFormatException    Throw in case the first line does not hold a price, or is
+     *                                  not complete within the allowed bytes
+     * @throws IOException              Throw in case the body cannot be read
+     */
+    public static double parsePrice(InputStream in, int maxBytes) throws IOException {
+        Scanner scanner = scanners.get();
+        scanner.reset(in, maxBytes);
+        try {
+            int length = nextLine(scanner);
+            if (length < 0)
+                throw new NumberFormatException(length == LINE_TOO_LONG ? "Line too long for a price." : "Empty response.");
+            return toDouble(scanner.line, length);
+        } finally {
+            scanner.in = null;
+        }
+    }
+
+    /**
+     * Parse one price per non-empty line of the body. A line that does not hold a price, such as
+     * "Error", is returned as NaN.
+     *
+     * @param in            The response body
+     * @param count         The number of lines expected
+     * @param maxBytes      The most bytes that may be read
+     * @return              The prices, one per line, or null if the body does not hold exactly
+     *                      the expected number of lines within the allowed bytes
+     * @throws IOException  Throw in case the body cannot be read
+     */
+    public static double[] parsePrices(InputStream in, int count, int maxBytes) throws IOException {
+        Scanner scanner = scanners.get();
+        scanner.reset(in, maxBytes);
+        try {
+            double[] prices = new double[count];
+            int n = 0;
+            int length;
+            while ((length = nextLine(scanner)) != -1) {
+                if (n == count)
+                    return null;
+                prices[n++] = length == LINE_TOO_LONG ? Double.NaN : toDoubleOrNaN(scanner.line, length);
+            }
+            return n == count ? prices : null;
+        } catch (NumberFormatException e) {
+            return null;
+        } finally {
+            scanner.in = null;
+        }
+    }
+
+    /**
+     * Read the next non-empty line of the body, and copy its contents without surrounding
+     * whitespace into the scanner's line buffer.
+     *
+     * @param scanner       The scanner reading the body
+     * @return              The length of the line, -1 at the end of the body, or LINE_TOO_LONG if
+     *                      the line is too long to hold a price
+     * @throws IOException  Throw in case the body cannot be read
+     */
+    private static int nextLine(Scanner scanner) throws IOException {
+        int c;
+        do {
+            c = scanner.read();
+        } while (c == '\n' || isSpace(c));
+        if (c == -1)
+            return -1;
+
+        byte[] line = scanner.line;
+        int length = 0;
+        int end = 0;
+        boolean tooLong = false;
+        for (; c != -1 && c != '\n'; c = scanner.read()) {
+            if (isSpace(c)) {
+                if (length < line.length)
+                    line[length++] = (byte) c;
+                continue;
+            }
+            if (length == line.length) {
+                tooLong = true;
+                continue;
+            }
+            line[length++] = (byte) c;
+            end = length;
+        }
+        return tooLong ? LINE_TOO_LONG : end;
+    }
+
+    /**
+     * Returns the price held by a line, or NaN if it does not hold one.
+     *
+     * @param line      The line's bytes
+     * @param length    The number of bytes in the line
+     * @return          The price, or NaN
+     */
+    private static double toDoubleOrNaN(byte[] line, int length) {
+        try {
+            return toDouble(line, length);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Convert a line holding a price to a double. A plain decimal such as "-12.50" is converted
+     * directly, which is exact since both its digits and the power of ten dividing them fit a
+     * double; anything else is handed to Double.parseDouble, so that every format it accepts is
+     * still accepted.
+     *
+     * @param line                      The line's bytes
+     * @param length                    The number of bytes in the line
+     * @return                          The price
+     * @throws NumberFormatException    Throw in case the line does not hold a number
+     */
+    private static double toDouble(byte[] line, int length) {
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (line[0] == '-' || line[0] == '+')) {
+            negative = line[0] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        for (; i < length; i++) {
+            int c = line[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (point)
+                    fractionDigits++;
+                if (mantissa > MAX_EXACT_MANTISSA)
+                    return slowToDouble(line, length);
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return slowToDouble(line, length);
+            }
+        }
+        if (digits == 0 || fractionDigits > MAX_EXACT_FRACTION_DIGITS)
+            return slowToDouble(line, length);
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Convert a line to a double with Double.parseDouble.
+     *
+     * @param line                      The line's bytes
+     * @param length                    The number of bytes in the line
+     * @return                          The number
+     * @throws NumberFormatException    Throw in case the line does not hold a number
+     */
+    private static double slowToDouble(byte[] line, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = (char) (line[i] & 0xff);
+        return Double.parseDouble(new String(chars));
+    }
+
+    /**
+     * Returns whether a byte is whitespace within a line.
+     *
+     * @param c The byte
+     * @return  Whether it is a space, tab or carriage return
+     */
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
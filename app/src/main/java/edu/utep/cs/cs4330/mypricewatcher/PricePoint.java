@@ -0,0 +1,118 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  A point in the price history of an Item. A point is either a single observed price, or an
+ *  hourly or daily aggregate of the observations made within that hour or day, which replaces
+ *  them once they are older than the history's retention allows.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class PricePoint {
+    public static final int RESOLUTION_RAW = 0;        /* A single observed price */
+    public static final int RESOLUTION_HOURLY = 1;     /* The aggregate of an hour's observations */
+    public static final int RESOLUTION_DAILY = 2;      /* The aggregate of a day's observations */
+
+    private final long itemId;          /* Database ID of the item */
+    private final long time;            /* Milliseconds since the epoch of the observation, or start of the period */
+    private final int resolution;       /* Whether the point is raw, hourly or daily */
+    private final long priceCents;      /* The observed price, or the average of the period, in cents */
+    private final long minCents;        /* The lowest price of the period, in cents */
+    private final long maxCents;        /* The highest price of the period, in cents */
+    private final int samples;          /* The number of observations the point stands for */
+
+    /**
+     * The constructor for a single observed price.
+     *
+     * @param itemId        The database ID of the item
+     * @param time          The time of the observation, in milliseconds since the epoch
+     * @param priceCents    The observed price, in cents
+     */
+    public PricePoint(long itemId, long time, long priceCents) {
+        this(itemId, time, RESOLUTION_RAW, priceCents, priceCents, priceCents, 1);
+    }
+
+    /**
+     * The constructor for a PricePoint.
+     *
+     * @param itemId        The database ID of the item
+     * @param time          The time of the observation, or the start of the period, in milliseconds since the epoch
+     * @param resolution    RESOLUTION_RAW, RESOLUTION_HOURLY or RESOLUTION_DAILY
+     * @param priceCents    The observed price, or the average price of the period, in cents
+     * @param minCents      The lowest price of the period, in cents
+     * @param maxCents      The highest price of the period, in cents
+     * @param samples       The number of observations the point stands for
+     */
+    public PricePoint(long itemId, long time, int resolution, long priceCents, long minCents, long maxCents, int samples) {
+        this.itemId = itemId;
+        this.time = time;
+        this.resolution = resolution;
+        this.priceCents = priceCents;
+        this.minCents = minCents;
+        this.maxCents = maxCents;
+        this.samples = samples;
+    }
+
+    /**
+     * Getter for the database ID of the item.
+     *
+     * @return The item's ID
+     */
+    public long getItemId() {
+        return itemId;
+    }
+
+    /**
+     * Getter for the time of the observation, or the start of the period.
+     *
+     * @return The time, in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Getter for whether the point is a single observation, or an hourly or daily aggregate.
+     *
+     * @return RESOLUTION_RAW, RESOLUTION_HOURLY or RESOLUTION_DAILY
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Getter for the observed price, or the average price of the period.
+     *
+     * @return The price, in cents
+     */
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    /**
+     * Getter for the lowest price of the period.
+     *
+     * @return The lowest price, in cents
+     */
+    public long getMinCents() {
+        return minCents;
+    }
+
+    /**
+     * Getter for the highest price of the period.
+     *
+     * @return The highest price, in cents
+     */
+    public long getMaxCents() {
+        return maxCents;
+    }
+
+    /**
+     * Getter for the number of observations the point stands for.
+     *
+     * @return The number of observations
+     */
+    public int getSamples() {
+        return samples;
+    }
+}
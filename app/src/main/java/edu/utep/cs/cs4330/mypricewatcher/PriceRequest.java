@@ -0,0 +1,133 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ *  A single asynchronous price fetch started with PriceFinder.fetchPriceAsync(). The request can
+ *  be waited on like any Future, or cancelled once its result no longer matters; cancelling it
+ *  interrupts the worker and asks the PriceFinder to abort the worker's in-flight query. A request
+ *  that runs past its deadline is cancelled the same way and reported to its callback as a timeout.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class PriceRequest extends FutureTask<Double> {
+    private final PriceFinder priceFinder;      /* The PriceFinder fetching the price */
+    private final String url;                   /* The Web url containing the item */
+    private final PriceCallback callback;       /* The callback to notify, may be null */
+    private volatile Thread worker;             /* The thread currently fetching the price */
+    private volatile boolean timedOut;          /* Whether the request ran past its deadline */
+    private volatile ScheduledFuture<?> deadline; /* The scheduled expiry of the request */
+
+    /**
+     * The constructor for a PriceRequest.
+     *
+     * @param priceFinder   The PriceFinder fetching the price
+     * @param url           The Web url containing the item
+     * @param callback      The callback to notify, or null
+     */
+    PriceRequest(PriceFinder priceFinder, String url, PriceCallback callback) {
+        super(() -> priceFinder.fetchPrice(url));
+        this.priceFinder = priceFinder;
+        this.url = url;
+        this.callback = callback;
+    }
+
+    /**
+     * Getter for the Web url whose price is being fetched.
+     *
+     * @return The Web url containing the item
+     */
+    public String getURL() {
+        return url;
+    }
+
+    /**
+     * Returns whether the request was cancelled because it ran past its deadline.
+     *
+     * @return Whether the request timed out
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Override in order to remember which thread is fetching the price, so that the fetch can be
+     * aborted if the request is cancelled.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        worker = Thread.currentThread();
+        try {
+            super.run();
+        } finally {
+            worker = null;
+        }
+    }
+
+    /**
+     * Override in order to abort the in-flight query of a cancelled request, instead of only
+     * interrupting its worker, since blocking socket reads ignore interrupts.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        Thread t = worker;
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled && mayInterruptIfRunning && t != null)
+            priceFinder.abort(t);
+        return cancelled;
+    }
+
+    /**
+     * Set the scheduled expiry of the request, so that it can be dropped once the request is done.
+     *
+     * @param deadline The scheduled expiry of the request
+     */
+    void setDeadline(ScheduledFuture<?> deadline) {
+        this.deadline = deadline;
+        if (isDone())
+            deadline.cancel(false);
+    }
+
+    /**
+     * Cancel the request because it ran past its deadline.
+     */
+    void expire() {
+        timedOut = true;
+        cancel(true);
+    }
+
+    /**
+     * Override in order to notify the callback once the request is done.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected void done() {
+        ScheduledFuture<?> d = deadline;
+        if (d != null)
+            d.cancel(false);
+        if (callback == null)
+            return;
+        if (isCancelled()) {
+            if (timedOut)
+                callback.onPriceError(url, new TimeoutException("Fetching the price of " + url + " timed out."));
+            return;
+        }
+        try {
+            callback.onPriceFetched(url, get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            callback.onPriceError(url, cause instanceof Exception ? (Exception) cause : e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
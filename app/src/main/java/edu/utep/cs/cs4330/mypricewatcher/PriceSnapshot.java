@@ -0,0 +1,126 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  The price state of an Item at one moment: its initial and current prices in whole cents, the
+ *  percentage change between them, and when the current price was fetched. A PriceSnapshot never
+ *  changes. An Item publishes a new one every time its price is updated, so that a reader on any
+ *  thread holding a snapshot sees a current price and a percentage change that belong together,
+ *  without taking a lock. The prices are rendered as text by the PriceFormatter the first time
+ *  the text is asked for, and the text is kept with the snapshot, so a price shown over and over
+ *  is only rendered once per version. Two threads may both render the same text at first; either
+ *  one is kept, since they are equal and a String is safe to share.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public final class PriceSnapshot {
+    private final long initPriceCents;      /* Initial price, in cents */
+    private final long currPriceCents;      /* Current (last fetched) price, in cents */
+    private final double percChange;        /* Percentage change from initial to current price, as a fraction */
+    private final long fetchedAt;           /* Milliseconds since the epoch when the price was fetched, or 0 if unknown */
+    private String initPriceText;           /* Initial price as rendered, or null until asked for */
+    private String currPriceText;           /* Current price as rendered, or null until asked for */
+    private String percChangeText;          /* Percentage change as rendered, or null until asked for */
+
+    /**
+     * The constructor for a PriceSnapshot, such as one read back from the database.
+     *
+     * @param initPriceCents    The initial price, in cents
+     * @param currPriceCents    The current price, in cents
+     * @param percChange        The percentage change from initial to current price, as a fraction
+     * @param fetchedAt         When the current price was fetched, or 0 if unknown
+     */
+    public PriceSnapshot(long initPriceCents, long currPriceCents, double percChange, long fetchedAt) {
+        this.initPriceCents = initPriceCents;
+        this.currPriceCents = currPriceCents;
+        this.percChange = percChange;
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * Returns the snapshot following this one once a new price is fetched, with the percentage
+     * change recalculated. A snapshot without an initial price takes the new price as its
+     * initial price, and a price that is still 0 has no change rather than an undefined one.
+     *
+     * @param cents     The new price, in cents
+     * @param fetchedAt When the new price was fetched
+     * @return          The new snapshot
+     */
+    public PriceSnapshot withCurrPrice(long cents, long fetchedAt) {
+        long init = initPriceCents != 0 ? initPriceCents : cents;
+        double change = init == 0 ? 0.0 : (cents - init) / (double) init;
+        return new PriceSnapshot(init, cents, change, fetchedAt);
+    }
+
+    /**
+     * Getter for the initial price.
+     *
+     * @return The initial price, in cents
+     */
+    public long getInitPriceCents() {
+        return initPriceCents;
+    }
+
+    /**
+     * Getter for the current price.
+     *
+     * @return The current price, in cents
+     */
+    public long getCurrPriceCents() {
+        return currPriceCents;
+    }
+
+    /**
+     * Getter for the percentage change from the initial price to the current price.
+     *
+     * @return The percentage change, where 0.05 is 5%
+     */
+    public double getPercChange() {
+        return percChange;
+    }
+
+    /**
+     * Getter for the initial price rendered as text, such as $1,234.50.
+     *
+     * @return The initial price
+     */
+    public String getInitPriceText() {
+        String text = initPriceText;
+        if (text == null)
+            initPriceText = text = PriceFormatter.formatCents(initPriceCents);
+        return text;
+    }
+
+    /**
+     * Getter for the current price rendered as text, such as $1,234.50.
+     *
+     * @return The current price
+     */
+    public String getCurrPriceText() {
+        String text = currPriceText;
+        if (text == null)
+            currPriceText = text = PriceFormatter.formatCents(currPriceCents);
+        return text;
+    }
+
+    /**
+     * Getter for the percentage change rendered as text, such as 5.25% or - 12%.
+     *
+     * @return The percentage change
+     */
+    public String getPercChangeText() {
+        String text = percChangeText;
+        if (text == null)
+            percChangeText = text = PriceFormatter.formatPercChange(percChange);
+        return text;
+    }
+
+    /**
+     * Getter for the time the current price was fetched.
+     *
+     * @return The time, in milliseconds since the epoch, or 0 if unknown
+     */
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+}
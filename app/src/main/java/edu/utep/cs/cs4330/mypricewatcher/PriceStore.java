@@ -0,0 +1,434 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ *  A read-mostly store of the price data of many Items, kept in parallel primitive arrays rather
+ *  than as one Item object per row. Each row holds an Item's database ID, its initial and current
+ *  prices in cents, and the time it was added; the names and urls of every row are encoded back
+ *  to back as UTF-8 in a single byte array, and found through an array of offsets. Sorting,
+ *  filtering and statistics run straight over the arrays, and an Item is only built, as a view
+ *  of its row, when one is asked for. A view is a copy: changes made to it are not written back
+ *  to the store.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class PriceStore extends AbstractList<Item> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 16;         /* Rows of a new store */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private int size;                                       /* Number of rows */
+    private int[] ids;                                      /* Database ID of each row */
+    private long[] initPriceCents;                          /* Initial price of each row, in cents */
+    private long[] currPriceCents;                          /* Current price of each row, in cents */
+    private long[] dateAdded;                               /* Time each row's Item was added, in milliseconds since the epoch */
+    private int[] textOffsets;                              /* Start of each row's name and then its url in text, and the end of the last */
+    private byte[] text;                                    /* Names and urls of every row, back to back, in UTF-8 */
+    private boolean idsAscending;                           /* Whether the rows are in the order of their IDs */
+
+    /**
+     * The constructor for an empty PriceStore.
+     */
+    public PriceStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * The constructor for an empty PriceStore with room for a number of rows.
+     *
+     * @param capacity The number of rows to make room for
+     */
+    public PriceStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        ids = new int[capacity];
+        initPriceCents = new long[capacity];
+        currPriceCents = new long[capacity];
+        dateAdded = new long[capacity];
+        textOffsets = new int[2 * capacity + 1];
+        text = new byte[64 * capacity];
+        idsAscending = true;
+    }
+
+    /**
+     * Add a row after the last one. A null name or url is stored as an empty one.
+     *
+     * @param id                The Item's database ID
+     * @param name              The Item's name
+     * @param initPriceCents    The Item's initial price, in cents
+     * @param currPriceCents    The Item's current price, in cents
+     * @param url               The Item's web URL
+     * @param dateAdded         The time the Item was added, in milliseconds since the epoch
+     */
+    public void add(long id, String name, long initPriceCents, long currPriceCents, String url, long dateAdded) {
+        if (id < 0 || id > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Item ID out of range: " + id);
+        if (size == ids.length)
+            grow(2 * size);
+        if (size > 0 && id <= ids[size - 1])
+            idsAscending = false;
+        ids[size] = (int) id;
+        this.initPriceCents[size] = initPriceCents;
+        this.currPriceCents[size] = currPriceCents;
+        this.dateAdded[size] = dateAdded;
+        appendText(2 * size + 1, name);
+        appendText(2 * size + 2, url);
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Add a row holding the Item's current data, read from a single PriceSnapshot of it.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(Item item) {
+        PriceSnapshot price = item.getPriceSnapshot();
+        add(item.getId(), item.getName(), price.getInitPriceCents(), price.getCurrPriceCents(), item.getURL(),
+                item.getDateAddedMillis());
+        return true;
+    }
+
+    /**
+     * Returns a new Item viewing a row.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Item get(int row) {
+        checkRow(row);
+        return new Item(ids[row], getName(row), new PriceSnapshot(initPriceCents[row], currPriceCents[row],
+                getPercChange(row), 0), getURL(row), dateAdded[row], 0, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the row holding the Item with the given database ID, by binary search while the
+     * rows are in the order of their IDs, as they are when read from the database.
+     *
+     * @param id    The Item's database ID
+     * @return      The row, or -1 if it is not in the store
+     */
+    public int rowOf(long id) {
+        if (id < 0 || id > Integer.MAX_VALUE)
+            return -1;
+        if (idsAscending) {
+            int row = Arrays.binarySearch(ids, 0, size, (int) id);
+            return row < 0 ? -1 : row;
+        }
+        for (int row = 0; row < size; row++)
+            if (ids[row] == id)
+                return row;
+        return -1;
+    }
+
+    /**
+     * Getter for a row's database ID.
+     *
+     * @param row   The row
+     * @return      The Item's database ID
+     */
+    public long getId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    /**
+     * Getter for a row's name, decoded from the store's text.
+     *
+     * @param row   The row
+     * @return      The Item's name
+     */
+    public String getName(int row) {
+        checkRow(row);
+        return decodeText(2 * row);
+    }
+
+    /**
+     * Getter for a row's url, decoded from the store's text.
+     *
+     * @param row   The row
+     * @return      The Item's web URL
+     */
+    public String getURL(int row) {
+        checkRow(row);
+        return decodeText(2 * row + 1);
+    }
+
+    /**
+     * Getter for a row's initial price.
+     *
+     * @param row   The row
+     * @return      The Item's initial price, in cents
+     */
+    public long getInitPriceCents(int row) {
+        checkRow(row);
+        return initPriceCents[row];
+    }
+
+    /**
+     * Getter for a row's current price.
+     *
+     * @param row   The row
+     * @return      The Item's current price, in cents
+     */
+    public long getCurrPriceCents(int row) {
+        checkRow(row);
+        return currPriceCents[row];
+    }
+
+    /**
+     * Getter for a row's percentage change from its initial price to its current price.
+     *
+     * @param row   The row
+     * @return      The percentage change, where 0.05 is 5%, or 0 if there is no initial price
+     */
+    public double getPercChange(int row) {
+        checkRow(row);
+        long init = initPriceCents[row];
+        return init == 0 ? 0.0 : (currPriceCents[row] - init) / (double) init;
+    }
+
+    /**
+     * Getter for the time a row's Item was added.
+     *
+     * @param row   The row
+     * @return      The time, in milliseconds since the epoch
+     */
+    public long getDateAdded(int row) {
+        checkRow(row);
+        return dateAdded[row];
+    }
+
+    /**
+     * Returns the rows in order of their current prices.
+     *
+     * @param descending    Whether the most expensive row comes first
+     * @return              The rows, in order
+     */
+    public int[] sortByCurrPrice(boolean descending) {
+        return sortRows(currPriceCents, descending);
+    }
+
+    /**
+     * Returns the rows in order of the time their Items were added.
+     *
+     * @param descending    Whether the newest row comes first
+     * @return              The rows, in order
+     */
+    public int[] sortByDateAdded(boolean descending) {
+        return sortRows(dateAdded, descending);
+    }
+
+    /**
+     * Returns the rows in order of their percentage change, such as to find the largest drops.
+     * Rows without an initial price sort as unchanged. Each change is sorted by the bits of its
+     * double value, flipped so that they order as signed longs do.
+     *
+     * @param descending    Whether the largest rise comes first
+     * @return              The rows, in order
+     */
+    public int[] sortByPercChange(boolean descending) {
+        long[] keys = new long[size];
+        for (int row = 0; row < size; row++) {
+            long init = initPriceCents[row];
+            long bits = Double.doubleToLongBits(init == 0 ? 0.0 : (currPriceCents[row] - init) / (double) init);
+            keys[row] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+        return sortRows(keys, descending);
+    }
+
+    /**
+     * Returns the rows whose current price is within a range, in order.
+     *
+     * @param minCents  The lowest price, in cents
+     * @param maxCents  The highest price, in cents
+     * @return          The rows
+     */
+    public int[] filterByCurrPrice(long minCents, long maxCents) {
+        int[] rows = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            long cents = currPriceCents[row];
+            if (cents >= minCents && cents <= maxCents)
+                rows[count++] = row;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Returns the rows whose current price is below their initial price, in order.
+     *
+     * @return The rows
+     */
+    public int[] filterPriceDrops() {
+        int[] rows = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++)
+            if (currPriceCents[row] < initPriceCents[row])
+                rows[count++] = row;
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Returns the sum of the current prices of every row.
+     *
+     * @return The total, in cents
+     */
+    public long getTotalCurrPriceCents() {
+        long total = 0;
+        for (int row = 0; row < size; row++)
+            total += currPriceCents[row];
+        return total;
+    }
+
+    /**
+     * Returns the lowest current price of any row.
+     *
+     * @return The lowest price in cents, or 0 if the store is empty
+     */
+    public long getMinCurrPriceCents() {
+        if (size == 0)
+            return 0;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < size; row++)
+            min = Math.min(min, currPriceCents[row]);
+        return min;
+    }
+
+    /**
+     * Returns the highest current price of any row.
+     *
+     * @return The highest price in cents, or 0 if the store is empty
+     */
+    public long getMaxCurrPriceCents() {
+        long max = 0;
+        for (int row = 0; row < size; row++)
+            max = Math.max(max, currPriceCents[row]);
+        return max;
+    }
+
+    /**
+     * Returns the average percentage change of the rows with an initial price.
+     *
+     * @return The average percentage change, where 0.05 is 5%, or 0 if no row has an initial price
+     */
+    public double getAveragePercChange() {
+        double sum = 0;
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            long init = initPriceCents[row];
+            if (init != 0) {
+                sum += (currPriceCents[row] - init) / (double) init;
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Shrink the arrays to the rows and text they hold, once no more rows will be added.
+     */
+    public void trimToSize() {
+        grow(size);
+        text = Arrays.copyOf(text, textOffsets[2 * size]);
+    }
+
+    /**
+     * Throw if a row is not in the store.
+     *
+     * @param row The row
+     */
+    private void checkRow(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+    }
+
+    /**
+     * Resize the row arrays.
+     *
+     * @param capacity The number of rows to make room for, at least the number held
+     */
+    private void grow(int capacity) {
+        capacity = Math.max(capacity, 1);
+        ids = Arrays.copyOf(ids, capacity);
+        initPriceCents = Arrays.copyOf(initPriceCents, capacity);
+        currPriceCents = Arrays.copyOf(currPriceCents, capacity);
+        dateAdded = Arrays.copyOf(dateAdded, capacity);
+        textOffsets = Arrays.copyOf(textOffsets, 2 * capacity + 1);
+    }
+
+    /**
+     * Append a string to the text, and record where it ends.
+     *
+     * @param end   The offset entry recording where the string ends
+     * @param s     The string, or null for an empty one
+     */
+    private void appendText(int end, String s) {
+        int start = textOffsets[end - 1];
+        if (s == null || s.isEmpty()) {
+            textOffsets[end] = start;
+            return;
+        }
+        byte[] bytes = s.getBytes(UTF_8);
+        if (start + bytes.length > text.length)
+            text = Arrays.copyOf(text, Math.max(2 * text.length, start + bytes.length));
+        System.arraycopy(bytes, 0, text, start, bytes.length);
+        textOffsets[end] = start + bytes.length;
+    }
+
+    /**
+     * Decode a string from the text.
+     *
+     * @param start The offset entry recording where the string starts
+     * @return      The string
+     */
+    private String decodeText(int start) {
+        return new String(text, textOffsets[start], textOffsets[start + 1] - textOffsets[start], UTF_8);
+    }
+
+    /**
+     * Returns the rows in order of a key per row, by a stable merge sort over primitive arrays.
+     *
+     * @param keys          The key of each row
+     * @param descending    Whether the largest key comes first
+     * @return              The rows, in order
+     */
+    private int[] sortRows(long[] keys, boolean descending) {
+        int[] rows = new int[size];
+        for (int row = 0; row < size; row++)
+            rows[row] = row;
+        int[] buffer = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int from = 0; from < size; from += 2 * width) {
+                int mid = Math.min(from + width, size);
+                int to = Math.min(from + 2 * width, size);
+                int i = from, j = mid, k = from;
+                while (i < mid && j < to) {
+                    long a = keys[rows[i]];
+                    long b = keys[rows[j]];
+                    buffer[k++] = (descending ? b > a : b < a) ? rows[j++] : rows[i++];
+                }
+                while (i < mid)
+                    buffer[k++] = rows[i++];
+                while (j < to)
+                    buffer[k++] = rows[j++];
+            }
+            int[] swap = rows;
+            rows = buffer;
+            buffer = swap;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,303 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Refreshes the prices of a collection of Item objects on a bounded pool of worker threads. Items
+ *  are grouped into batches, so that each worker looks up many prices with a single query, and the
+ *  batches are fed into a bounded work queue by a single dispatcher thread, which blocks while the
+ *  queue is full, so that neither the number of threads nor the number of queued refreshes grows
+ *  with the number of Items being tracked. Progress and completion are reported through a RefreshListener,
+ *  and the engine exposes its queue depth and throughput so that the pool size can be tuned.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class RefreshEngine {
+    public static final int DEFAULT_POOL_SIZE = 4;          /* Default number of worker threads */
+    public static final int DEFAULT_QUEUE_CAPACITY = 32;    /* Default capacity of the work queue */
+    public static final int DEFAULT_BATCH_SIZE = 16;        /* Default number of Items per query */
+    private static final long KEEP_ALIVE_SECONDS = 30;      /* How long an idle worker is kept around */
+
+    private final ThreadPoolExecutor workers;               /* Bounded pool fetching the prices */
+    private final ExecutorService dispatcher;               /* Feeds Items into the work queue */
+    private final AtomicInteger refreshedCount;             /* Items refreshed over the engine's lifetime */
+    private volatile RefreshStats lastStats;                /* Statistics of the last finished refresh */
+    private volatile int batchSize;                         /* Number of Items looked up per query */
+    private final Set<Run> runs;                            /* Refreshes that have not finished yet */
+
+    /**
+     * The default constructor for a RefreshEngine.
+     */
+    public RefreshEngine() {
+        this(DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * The constructor for a RefreshEngine with a given pool size, work queue capacity and batch size.
+     *
+     * @param poolSize      The number of worker threads fetching prices
+     * @param queueCapacity The maximum number of batches waiting for a worker
+     * @param batchSize     The maximum number of Items looked up with a single query
+     */
+    public RefreshEngine(int poolSize, int queueCapacity, int batchSize) {
+        if (poolSize < 1 || queueCapacity < 1 || batchSize < 1)
+            throw new IllegalArgumentException("Pool size, queue capacity and batch size must be positive.");
+        this.batchSize = batchSize;
+        workers = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), namedThreads("refresh-worker"), (r, executor) -> {
+                    try {
+                        executor.getQueue().put(r);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while queueing refresh.", e);
+                    }
+                });
+        workers.allowCoreThreadTimeOut(true);
+        dispatcher = Executors.newSingleThreadExecutor(namedThreads("refresh-dispatcher"));
+        refreshedCount = new AtomicInteger();
+        runs = Collections.newSetFromMap(new ConcurrentHashMap<Run, Boolean>());
+    }
+
+    /**
+     * Refresh the price of every Item in the collection. Returns immediately, since even the
+     * collection is read on the dispatcher thread, so that a collection paged in from the database
+     * is not loaded on the caller's thread; the listener is notified from the worker threads as
+     * every Item finishes, and once more when all are done.
+     *
+     * @param items     The Items to refresh
+     * @param listener  The listener to notify of progress and completion, or null
+     */
+    public void refresh(Collection<Item> items, RefreshListener listener) {
+        dispatcher.execute(() -> dispatch(new ArrayList<>(items), listener));
+    }
+
+    /**
+     * Abandon every refresh that has not finished yet. Batches still waiting in the work queue are
+     * dropped, batches already being fetched are left to finish within the transport's timeouts,
+     * and no further progress or completion is reported to the abandoned refreshes' listeners.
+     */
+    public void cancel() {
+        for (Run run : runs)
+            run.cancelled = true;
+        runs.clear();
+        workers.getQueue().clear();
+    }
+
+    /**
+     * Set the number of worker threads fetching prices. Takes effect for Items not yet started.
+     *
+     * @param poolSize The number of worker threads
+     */
+    public void setPoolSize(int poolSize) {
+        if (poolSize < 1)
+            throw new IllegalArgumentException("Pool size must be positive.");
+        if (poolSize > workers.getMaximumPoolSize()) {
+            workers.setMaximumPoolSize(poolSize);
+            workers.setCorePoolSize(poolSize);
+        } else {
+            workers.setCorePoolSize(poolSize);
+            workers.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    /**
+     * Set the maximum number of Items looked up with a single query. Takes effect for the next refresh.
+     *
+     * @param batchSize The number of Items per query
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive.");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Getter for the maximum number of Items looked up with a single query.
+     *
+     * @return The number of Items per query
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Getter for the configured number of worker threads.
+     *
+     * @return The number of worker threads
+     */
+    public int getPoolSize() {
+        return workers.getMaximumPoolSize();
+    }
+
+    /**
+     * Getter for the number of batches currently waiting for a worker.
+     *
+     * @return The depth of the work queue
+     */
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Getter for the number of workers currently fetching a price.
+     *
+     * @return The number of busy workers
+     */
+    public int getActiveCount() {
+        return workers.getActiveCount();
+    }
+
+    /**
+     * Getter for the number of Items refreshed since the engine was created.
+     *
+     * @return The number of Items refreshed
+     */
+    public int getRefreshedCount() {
+        return refreshedCount.get();
+    }
+
+    /**
+     * Getter for the throughput of the last finished refresh.
+     *
+     * @return The number of Items refreshed per second, or 0 if no refresh has finished yet
+     */
+    public double getThroughput() {
+        RefreshStats stats = lastStats;
+        return stats == null ? 0.0 : stats.getThroughput();
+    }
+
+    /**
+     * Getter for the statistics of the last finished refresh.
+     *
+     * @return The statistics, or null if no refresh has finished yet
+     */
+    public RefreshStats getLastStats() {
+        return lastStats;
+    }
+
+    /**
+     * Feed every Item of a refresh into the work queue in batches, blocking while the queue is full.
+     *
+     * @param items     The Items to refresh
+     * @param listener  The listener to notify of progress and completion, or null
+     */
+    private void dispatch(List<Item> items, RefreshListener listener) {
+        Run run = new Run(items.size(), listener);
+        runs.add(run);
+        if (items.isEmpty()) {
+            run.finish();
+            return;
+        }
+        int size = batchSize;
+        for (int from = 0; from < items.size() && !run.cancelled; from += size) {
+            List<Item> batch = items.subList(from, Math.min(from + size, items.size()));
+            workers.execute(() -> run.refresh(batch));
+            run.sampleQueueDepth(workers.getQueue().size());
+        }
+    }
+
+    /**
+     * Create a ThreadFactory whose threads are named after the given prefix.
+     *
+     * @param prefix    The prefix for the thread names
+     * @return          The ThreadFactory
+     */
+    private static ThreadFactory namedThreads(String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return r -> new Thread(r, prefix + "-" + count.incrementAndGet());
+    }
+
+    /**
+     * The state of a single refresh, shared by the workers refreshing its Items.
+     */
+    private class Run {
+        private final int total;                        /* Number of Items in the refresh */
+        private final RefreshListener listener;         /* Listener to notify, may be null */
+        private final long startNanos;                  /* When the refresh was started */
+        private final AtomicInteger completed;          /* Items that have finished */
+        private final AtomicInteger failed;             /* Items whose price could not be fetched */
+        private final AtomicInteger peakQueueDepth;     /* Deepest the work queue got */
+        private volatile boolean cancelled;             /* Whether the refresh was abandoned */
+
+        private Run(int total, RefreshListener listener) {
+            this.total = total;
+            this.listener = listener;
+            startNanos = System.nanoTime();
+            completed = new AtomicInteger();
+            failed = new AtomicInteger();
+            peakQueueDepth = new AtomicInteger();
+        }
+
+        /**
+         * Refresh a batch of Items and report the progress of each one.
+         *
+         * @param batch The Items to refresh
+         */
+        private void refresh(List<Item> batch) {
+            if (cancelled)
+                return;
+            List<Item> notFound;
+            try {
+                notFound = Item.fetchCurrPrices(batch);
+            } catch (RuntimeException e) {
+                Log.d("RefreshEngine.refresh", "Unable to refresh batch of " + batch.size() + ": " + e.getMessage());
+                notFound = batch;
+            }
+            for (Item item : batch) {
+                if (cancelled)
+                    return;
+                boolean success = !notFound.contains(item);
+                if (!success)
+                    failed.incrementAndGet();
+                refreshedCount.incrementAndGet();
+                int done = completed.incrementAndGet();
+                if (listener != null)
+                    listener.onProgress(item, success, done, total);
+                if (done == total)
+                    finish();
+            }
+        }
+
+        /**
+         * Record the current depth of the work queue, if it is the deepest seen so far.
+         *
+         * @param depth The current depth of the work queue
+         */
+        private void sampleQueueDepth(int depth) {
+            int peak;
+            while (depth > (peak = peakQueueDepth.get()))
+                if (peakQueueDepth.compareAndSet(peak, depth))
+                    return;
+        }
+
+        /**
+         * Publish the statistics of this refresh and notify the listener of its completion.
+         */
+        private void finish() {
+            runs.remove(this);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            RefreshStats stats = new RefreshStats(total, total - failed.get(), failed.get(),
+                    elapsedMillis, getPoolSize(), peakQueueDepth.get());
+            lastStats = stats;
+            Log.d("RefreshEngine.finish", "Refreshed " + stats);
+            if (listener != null)
+                listener.onComplete(stats);
+        }
+    }
+}
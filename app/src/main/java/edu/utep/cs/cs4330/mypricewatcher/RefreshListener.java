@@ -0,0 +1,28 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  Listener to be implemented by anything interested in the progress of a price refresh run by
+ *  the RefreshEngine. Both methods are invoked from the engine's worker threads, so an activity
+ *  implementing this listener should post any interface changes with runOnUiThread().
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public interface RefreshListener {
+    /**
+     * Invoked every time a single Item has finished refreshing, whether or not its price was found.
+     *
+     * @param item      The Item that was refreshed
+     * @param success   Whether the Item's price was successfully fetched
+     * @param completed The number of Items of this refresh that have finished so far
+     * @param total     The total number of Items in this refresh
+     */
+    void onProgress(Item item, boolean success, int completed, int total);
+
+    /**
+     * Invoked once, after every Item of a refresh has finished.
+     *
+     * @param stats The statistics describing the finished refresh
+     */
+    void onComplete(RefreshStats stats);
+}
@@ -0,0 +1,113 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.util.Locale;
+
+/**
+ *  An immutable summary of a single refresh run by the RefreshEngine. It describes how many Items
+ *  were refreshed, how many failed, how long the refresh took, and the deepest the engine's work
+ *  queue got, so that the engine's pool size can be tuned.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class RefreshStats {
+    private final int total;                /* Number of Items in the refresh */
+    private final int succeeded;            /* Number of Items whose price was fetched */
+    private final int failed;               /* Number of Items whose price could not be fetched */
+    private final long elapsedMillis;       /* Wall-clock duration of the refresh */
+    private final int poolSize;             /* Number of workers the refresh ran on */
+    private final int peakQueueDepth;       /* Deepest the work queue got during the refresh */
+
+    /**
+     * The constructor for a RefreshStats object.
+     *
+     * @param total             Number of Items in the refresh
+     * @param succeeded         Number of Items whose price was fetched
+     * @param failed            Number of Items whose price could not be fetched
+     * @param elapsedMillis     Wall-clock duration of the refresh
+     * @param poolSize          Number of workers the refresh ran on
+     * @param peakQueueDepth    Deepest the work queue got during the refresh
+     */
+    public RefreshStats(int total, int succeeded, int failed, long elapsedMillis, int poolSize, int peakQueueDepth) {
+        this.total = total;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+        this.poolSize = poolSize;
+        this.peakQueueDepth = peakQueueDepth;
+    }
+
+    /**
+     * Getter for the number of Items in the refresh.
+     *
+     * @return The number of Items in the refresh
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Getter for the number of Items whose price was fetched.
+     *
+     * @return The number of Items whose price was fetched
+     */
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Getter for the number of Items whose price could not be fetched.
+     *
+     * @return The number of Items whose price could not be fetched
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Getter for how long the refresh took.
+     *
+     * @return The wall-clock duration of the refresh, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Getter for the number of workers the refresh ran on.
+     *
+     * @return The number of workers
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Getter for the deepest the work queue got during the refresh.
+     *
+     * @return The peak depth of the work queue
+     */
+    public int getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+
+    /**
+     * Returns the throughput of the refresh.
+     *
+     * @return The number of Items refreshed per second
+     */
+    public double getThroughput() {
+        if (elapsedMillis <= 0)
+            return total;
+        return total * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d items (%d failed) in %d ms, %.1f items/s, %d workers, peak queue %d",
+                total, failed, elapsedMillis, getThroughput(), poolSize, peakQueueDepth);
+    }
+}
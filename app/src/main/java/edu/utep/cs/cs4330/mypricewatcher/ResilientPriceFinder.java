@@ -0,0 +1,193 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import android.util.Log;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  A PriceFinder that shields callers from transient failures of the Web service. A query that
+ *  fails with a ServiceUnavailableException is retried a few times, waiting a random time of up
+ *  to an exponentially growing, capped delay between attempts, so that many workers failing at
+ *  once do not retry in lockstep. Every query goes through a CircuitBreaker, which fails queries
+ *  fast while the service is down. A price that simply was not found is not retried, and neither
+ *  is a query that was cancelled, which is not counted as a failure of the service either.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class ResilientPriceFinder extends PriceFinder {
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;               /* Default attempts per query */
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 250;       /* Default delay cap of the first retry */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 4000;       /* Default delay cap of any retry */
+    private static final Random jitter = new Random();              /* Source of the retry delays */
+
+    private final PriceFinder delegate;                             /* PriceFinder actually fetching prices */
+    private final CircuitBreaker breaker;                           /* Breaker guarding the Web service */
+    private final int maxAttempts;                                  /* Attempts per query, including the first */
+    private final long baseDelayMillis;                             /* Delay cap of the first retry */
+    private final long maxDelayMillis;                              /* Delay cap of any retry */
+    private final AtomicLong retryCount;                            /* Retries made */
+    private final AtomicLong exhaustedCount;                        /* Queries that failed every attempt */
+
+    /**
+     * Performs one attempt of a query.
+     *
+     * @param <T> The type of the query's result
+     */
+    private interface Attempt<T> {
+        T run() throws PriceNotFoundException;
+    }
+
+    /**
+     * The constructor for a ResilientPriceFinder with the default retry policy and circuit breaker.
+     *
+     * @param delegate The PriceFinder actually fetching prices
+     */
+    public ResilientPriceFinder(PriceFinder delegate) {
+        this(delegate, new CircuitBreaker(), DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * The constructor for a ResilientPriceFinder.
+     *
+     * @param delegate          The PriceFinder actually fetching prices
+     * @param breaker           The circuit breaker guarding the Web service
+     * @param maxAttempts       The number of attempts per query, including the first
+     * @param baseDelayMillis   The delay cap of the first retry, doubled for every further retry
+     * @param maxDelayMillis    The delay cap of any retry
+     */
+    public ResilientPriceFinder(PriceFinder delegate, CircuitBreaker breaker, int maxAttempts,
+                                long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis)
+            throw new IllegalArgumentException("Invalid retry policy.");
+        this.delegate = delegate;
+        this.breaker = breaker;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        retryCount = new AtomicLong();
+        exhaustedCount = new AtomicLong();
+    }
+
+    /**
+     * Override in order to retry transient failures and fail fast while the circuit is open.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public double fetchPrice(String url) {
+        return attempt(() -> delegate.fetchPrice(url));
+    }
+
+    /**
+     * Override in order to retry transient failures of the whole batch and fail fast while the
+     * circuit is open.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Double> fetchPrices(Collection<String> urls) {
+        return attempt(() -> delegate.fetchPrices(urls));
+    }
+
+    /**
+     * Override in order to abort the delegate's fetch.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected void abort(Thread worker) {
+        delegate.abort(worker);
+    }
+
+    /**
+     * Getter for the circuit breaker guarding the Web service, so that its state can be observed.
+     *
+     * @return The circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Getter for the number of retries made.
+     *
+     * @return The number of retries
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Getter for the number of queries that failed on every attempt.
+     *
+     * @return The number of exhausted queries
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    /**
+     * Run a query through the circuit breaker, retrying it after transient failures.
+     *
+     * @param attempt                   One attempt of the query
+     * @param <T>                       The type of the query's result
+     * @return                          The result of the first successful attempt
+     * @throws PriceNotFoundException   Throw in case the price was not found, the circuit is open,
+     *                                  every attempt failed, or the query was cancelled
+     */
+    private <T> T attempt(Attempt<T> attempt) throws PriceNotFoundException {
+        for (int n = 1; ; n++) {
+            breaker.acquirePermission();
+            try {
+                T result = attempt.run();
+                breaker.onSuccess();
+                return result;
+            } catch (FetchCancelledException e) {
+                breaker.onCancelled();
+                throw e;
+            } catch (ServiceUnavailableException e) {
+                breaker.onFailure();
+                if (n >= maxAttempts) {
+                    exhaustedCount.incrementAndGet();
+                    throw e;
+                }
+                long delay = backoff(n);
+                retryCount.incrementAndGet();
+                Log.d("ResilientPriceFinder", "Attempt " + n + " failed (" + e.getMessage() + "), retrying in " + delay + " ms");
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new FetchCancelledException("Retry was cancelled.", e);
+                }
+            } catch (PriceNotFoundException e) {
+                breaker.onSuccess();
+                throw e;
+            } catch (RuntimeException | Error e) {
+                /* Any other failure still ends the attempt, so a half-open trial's permission is not held for good */
+                breaker.onFailure();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns how long to wait before the next attempt: a random time between zero and the
+     * base delay doubled for every failed attempt, capped at the maximum delay.
+     *
+     * @param failedAttempts    The number of attempts that failed so far
+     * @return                  The delay before the next attempt, in milliseconds
+     */
+    private long backoff(int failedAttempts) {
+        long cap = baseDelayMillis << Math.min(failedAttempts - 1, 30);
+        if (cap <= 0 || cap > maxDelayMillis)
+            cap = maxDelayMillis;
+        synchronized (jitter) {
+            return (long) (jitter.nextDouble() * cap);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+/**
+ *  A PriceNotFoundException thrown when the price could not be retrieved because the Web service
+ *  itself failed: it could not be reached, timed out, was overloaded, or answered with a server
+ *  error. Unlike a price that simply was not found, such a failure is transient, and the query may
+ *  succeed if it is tried again later.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class ServiceUnavailableException extends PriceNotFoundException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+
+    public ServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,69 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  A token bucket limiting how many requests per second are sent to a single host. The bucket
+ *  refills at a steady rate up to its capacity, which is the largest burst it allows; every request
+ *  takes one token, and a request that finds the bucket empty reserves the next token and waits
+ *  until it has been refilled.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class TokenBucket {
+    private final double tokensPerNano;     /* Refill rate */
+    private final double capacity;          /* Largest burst allowed */
+    private double tokens;                  /* Tokens available, negative when reserved ahead */
+    private long refilledAt;                /* System.nanoTime() of the last refill */
+
+    /**
+     * The constructor for a TokenBucket, which starts full.
+     *
+     * @param tokensPerSecond   How many requests per second are allowed on average
+     * @param capacity          How many requests are allowed in a single burst
+     */
+    public TokenBucket(double tokensPerSecond, int capacity) {
+        if (tokensPerSecond <= 0 || capacity < 1)
+            throw new IllegalArgumentException("Rate and capacity must be positive.");
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = capacity;
+        tokens = capacity;
+        refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Take a token, waiting until one is available.
+     *
+     * @throws InterruptedException Throw in case the wait is interrupted
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens / tokensPerNano);
+        }
+        if (waitNanos > 0)
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+
+    /**
+     * Getter for the number of tokens currently available.
+     *
+     * @return The available tokens, negative if tokens have been reserved ahead
+     */
+    public synchronized double getAvailableTokens() {
+        refill();
+        return tokens;
+    }
+
+    /**
+     * Add the tokens accrued since the last refill, up to the bucket's capacity.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+}
@@ -2,25 +2,47 @@ package edu.utep.cs.cs4330.mypricewatcher;
 
 import android.os.Parcel;
 import android.os.Parcelable;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
- * Encapsulates Item objects in an internal data structure. The Tracker singleton
- * will provide adding/removing of Item objects. The Tracker also provides a
- * way for each Item to have its price updated.
+ * Encapsulates Item objects in an internal data structure. The Tracker singleton will provide
+ * adding/removing of Item objects. The Tracker also provides a way for each Item to have its price
+ * updated. The Items can be held in an IndexedItemList, or in a PagedItemList that only keeps the
+ * pages of stored Items currently in use in memory. Both find a stored Item and its position from
+ * its database ID, which is the Item's key, without searching the list. The Items whose price
+ * actually changed during a refresh are collected into a change set, so that only they are written
+ * back. The Tracker's state is saved across the activity being recreated as a TrackerSnapshot file,
+ * rather than as a Parcel. Items are added and removed from any thread: every change to the list is
+ * made under the Tracker's lock, and readers such as the list shown to the user are handed an
+ * immutable snapshot of the Items, which stays the same however the list changes after it was
+ * taken.
  *
  * @author Damian Najera
- * @version 1.3
+ * @version 1.5
  */
 public class Tracker implements Parcelable{
-    private static ArrayList<Item> items;                   /* Tracker's internal list of Items */
+    private static List<Item> items;                        /* Tracker's internal list of Items */
+    private static final Object lock = new Object();        /* Held by every use of the internal list */
     private static final Tracker instance = new Tracker();  /* Tracker's singleton */
+    private static final RefreshEngine refreshEngine = new RefreshEngine(); /* Engine refreshing the prices */
+    private static final Set<Item> changes = new LinkedHashSet<>();         /* Items changed since the changes were last taken */
+    private static long snapshotToken;                      /* Token of the snapshot this process last wrote or read */
 
     /**
      * The constructor for a Tracker object.
      */
     private Tracker() {
-        items = new ArrayList<Item>();
+        synchronized (lock) {
+            items = new IndexedItemList();
+        }
     }
 
     /**
@@ -30,9 +52,7 @@ public class Tracker implements Parcelable{
      * @return The Item object encapsulating the item added to the tracker.
      */
     public Item addItem(String name, String url) {
-        Item i = new Item(name, url);
-        items.add(i);
-        return i;
+        return addItem(new Item(name, url));
     }
 
     /**
@@ -42,32 +62,332 @@ public class Tracker implements Parcelable{
      * @return The Item object encapsulating the item added to the tracker.
      */
     public Item addItem(Item i) {
-        items.add(i);
+        synchronized (lock) {
+            items.add(i);
+        }
         return i;
     }
 
     /**
-     * Remove an Item object from the tracker's internal list of Item objects to track.
+     * Remove an Item object from the tracker's internal list of Item objects to track. A copy of
+     * a tracked Item, such as one passed back by another activity, removes the tracked Item.
+     *
+     * @param item  The item to remove, or a copy of it
+     * @return      Whether the item was tracked
+     */
+    public boolean removeItem(Item item) {
+        synchronized (lock) {
+            if (items instanceof ItemIndex)
+                return items.remove(item);
+            int index = indexOf(item);
+            if (index == -1)
+                return false;
+            items.remove(index);
+            return true;
+        }
+    }
+
+    /**
+     * Delete a stored Item from the database and stop tracking it. The database is written
+     * without holding the Tracker's lock, so that readers of the list are not held up by it, and
+     * so this must not be called on the UI thread. Items paged in from the database are deleted
+     * and removed by the PagedItemList, so that it never holds a page loaded after the Item was
+     * deleted while it still counts the Item.
+     *
+     * @param dbHandler The database the Item is stored in
+     * @param item      The Item to delete, or a copy of it
+     * @return          Whether the item was tracked
+     */
+    public boolean deleteItem(DBHandler dbHandler, Item item) {
+        List<Item> tracked;
+        synchronized (lock) {
+            tracked = items;
+        }
+        if (tracked instanceof PagedItemList)
+            return ((PagedItemList) tracked).delete(item);
+        dbHandler.deleteItem(item);
+        return removeItem(item);
+    }
+
+    /**
+     * Replace a tracked Item with a copy of it, such as one passed back by another activity. A
+     * stored Item paged in from the database is only replaced if it is in memory, since it is
+     * read from the database again otherwise, and the database is never read for it.
+     *
+     * @param item  The copy of the tracked Item
+     * @return      Whether the item was tracked
+     */
+    public boolean replaceItem(Item item) {
+        List<Item> tracked;
+        synchronized (lock) {
+            tracked = items;
+            if (!(tracked instanceof PagedItemList)) {
+                int index = indexOf(item);
+                if (index == -1)
+                    return false;
+                items.set(index, item);
+                return true;
+            }
+        }
+        if (item.getId() <= 0)
+            return false;
+        ((PagedItemList) tracked).update(Collections.singletonList(item));
+        return true;
+    }
+
+    /**
+     * Put Items that were refreshed and saved in place of the tracked Items with the same IDs, if
+     * those are no longer the Items refreshed, such as when the Items were paged out of memory and
+     * read from the database again during the refresh.
+     *
+     * @param refreshed The refreshed Items
+     */
+    public void replaceItems(Collection<Item> refreshed) {
+        List<Item> tracked;
+        synchronized (lock) {
+            tracked = items;
+        }
+        if (tracked instanceof PagedItemList) {
+            ((PagedItemList) tracked).update(refreshed);
+            return;
+        }
+        for (Item item : refreshed) {
+            Item current = getItem(item.getId());
+            if (current != null && current != item)
+                replaceItem(item);
+        }
+    }
+
+    /**
+     * Returns the tracked Item with the given database ID, if it is held in memory.
+     *
+     * @param id    The Item's database ID
+     * @return      The Item, or null if it is not tracked or not in memory
+     */
+    public Item getItem(long id) {
+        synchronized (lock) {
+            if (items instanceof ItemIndex)
+                return ((ItemIndex) items).getById(id);
+            for (Item tracked : items)
+                if (tracked.getId() == id)
+                    return tracked;
+            return null;
+        }
+    }
+
+    /**
+     * Returns the position of an Item in the tracker's internal list. A copy of a tracked Item,
+     * such as one passed back by another activity, is found by its database ID. An Item that is
+     * not stored yet is only found by itself.
+     *
+     * @param item  The Item, or a copy of it
+     * @return      The Item's position, or -1 if it is not tracked
+     */
+    public int indexOf(Item item) {
+        List<Item> tracked;
+        synchronized (lock) {
+            tracked = items;
+        }
+        if (tracked instanceof PagedItemList)
+            return tracked.indexOf(item);
+        synchronized (lock) {
+            if (item.getId() <= 0)
+                return items.indexOf(item);
+            if (items instanceof ItemIndex)
+                return ((ItemIndex) items).positionOf(item.getId());
+            for (int i = 0; i < items.size(); i++)
+                if (items.get(i).getId() == item.getId())
+                    return i;
+            return -1;
+        }
+    }
+
+    /**
+     * Replace the tracker's internal list of Item objects, such as with a PagedItemList over the
+     * stored Items.
+     *
+     * @param items The list of Items to track
+     */
+    public void setItems(List<Item> items) {
+        synchronized (lock) {
+            Tracker.items = items;
+        }
+    }
+
+    /**
+     * Returns whether the tracked Items are paged in from the database.
+     *
+     * @return Whether the internal list is a PagedItemList
+     */
+    public boolean isPaged() {
+        synchronized (lock) {
+            return items instanceof PagedItemList;
+        }
+    }
+
+    /**
+     * Count the stored Items again and reload the first page of them in the background, such as
+     * after Items were imported into the database, if the tracked Items are paged in from it.
      *
-     * @param item The item to remove
+     * @param publisher The executor of the thread showing the Items, such as runOnUiThread
+     * @param listener  The listener told once the Items are loaded
+     * @return          Whether the Items are paged in, and so are being reloaded
      */
-    public void removeItem(Item item) {
-        items.remove(item);
+    public boolean reloadItems(Executor publisher, ItemLoadListener listener) {
+        List<Item> tracked;
+        synchronized (lock) {
+            tracked = items;
+        }
+        if (!(tracked instanceof PagedItemList))
+            return false;
+        ((PagedItemList) tracked).load(publisher, listener);
+        return true;
+    }
+
+    /**
+     * Set the listener told whenever a page of the tracked Items is loaded in the background, if
+     * they are paged in from the database.
+     *
+     * @param publisher The executor of the thread showing the Items, such as runOnUiThread, or null
+     * @param listener  The listener, or null to stop telling one
+     */
+    public void setPageLoadListener(Executor publisher, PageLoadListener listener) {
+        List<Item> tracked;
+        synchronized (lock) {
+            tracked = items;
+        }
+        if (tracked instanceof PagedItemList)
+            ((PagedItemList) tracked).setPageLoadListener(publisher, listener);
     }
 
     /**
      * Clear the internal list of Item objects.
      */
     public void clearItemsList() {
-        items.clear();
+        synchronized (lock) {
+            items.clear();
+        }
+    }
+
+    /**
+     * Invoke every item in the internal list of Item objects to update its price. The prices are
+     * fetched in the background by the RefreshEngine, so this method returns immediately. The Items
+     * refreshed are those of a snapshot taken now, so Items added or removed meanwhile do not
+     * disturb the refresh. Every Item whose price changed is added to the change set before the
+     * listener hears of it.
+     *
+     * @param listener The listener to notify of the refresh's progress and completion, or null
+     */
+    public void updatePrices(RefreshListener listener) {
+        refreshEngine.refresh(getItems(), new RefreshListener() {
+            @Override
+            public void onProgress(Item item, boolean success, int completed, int total) {
+                if (success)
+                    recordChange(item);
+                if (listener != null)
+                    listener.onProgress(item, success, completed, total);
+            }
+
+            @Override
+            public void onComplete(RefreshStats stats) {
+                if (listener != null)
+                    listener.onComplete(stats);
+            }
+        });
+    }
+
+    /**
+     * Add an Item to the change set, if it changed since it was last saved.
+     *
+     * @param item The Item that may have changed
+     */
+    public void recordChange(Item item) {
+        if (!item.isDirty())
+            return;
+        synchronized (changes) {
+            changes.add(item);
+        }
+    }
+
+    /**
+     * Returns the Items changed since the change set was last taken, and empties it.
+     *
+     * @return The changed Items, in the order they changed
+     */
+    public List<Item> takeChanges() {
+        synchronized (changes) {
+            List<Item> changed = new ArrayList<>(changes);
+            changes.clear();
+            return changed;
+        }
     }
 
     /**
-     * Invoke every item in the internal list of Item objects to update its price.
+     * Abandon any price update that has not finished yet, because its result no longer matters.
      */
-    public void updatePrices() {
-        for (Item i: items)
-            i.fetchCurrPrice();
+    public void cancelPriceUpdates() {
+        refreshEngine.cancel();
+    }
+
+    /**
+     * Returns the RefreshEngine used to update the prices of the tracked Items, so that its pool
+     * size can be tuned and its queue depth and throughput can be inspected.
+     *
+     * @return The Tracker's RefreshEngine
+     */
+    public RefreshEngine getRefreshEngine() {
+        return refreshEngine;
+    }
+
+    /**
+     * Write the Tracker's state to a snapshot file. Items paged in from the database are not
+     * written, only the changes to them that are not saved yet.
+     *
+     * @param file          The file to write the snapshot to
+     * @return              The token identifying the snapshot
+     * @throws IOException  Throw in case the snapshot cannot be written
+     */
+    public long saveSnapshot(File file) throws IOException {
+        long token;
+        if (isPaged()) {
+            List<Item> changed;
+            synchronized (changes) {
+                changed = new ArrayList<>(changes);
+            }
+            token = TrackerSnapshot.write(file, changed, TrackerSnapshot.FLAG_CHANGES_ONLY);
+        }
+        else {
+            token = TrackerSnapshot.write(file, getItems(), 0);
+        }
+        snapshotToken = token;
+        return token;
+    }
+
+    /**
+     * Restore the Tracker's state from a snapshot file, unless this process wrote or read that
+     * snapshot, in which case it still holds the state. A snapshot of the whole list replaces the
+     * tracked Items, which are decoded as they are asked for; a snapshot of changes adds them to
+     * the change set.
+     *
+     * @param file          The file the snapshot was written to
+     * @param token         The token returned when the snapshot was written
+     * @return              Whether the state was restored from the snapshot
+     * @throws IOException  Throw in case the snapshot cannot be read
+     */
+    public boolean restoreSnapshot(File file, long token) throws IOException {
+        if (token == snapshotToken)
+            return false;
+        TrackerSnapshot.SnapshotList restored = TrackerSnapshot.read(file, token);
+        if (restored.isChangesOnly()) {
+            synchronized (changes) {
+                changes.addAll(restored);
+            }
+        }
+        else {
+            setItems(restored);
+        }
+        snapshotToken = token;
+        return true;
     }
 
     /**
@@ -80,12 +400,18 @@ public class Tracker implements Parcelable{
     }
 
     /**
-     * Returns the ArrayList containing the Item objects being tracked.
+     * Returns an immutable snapshot of the Item objects being tracked, which can be read on any
+     * thread and does not change when Items are added or removed afterwards. Taking a snapshot
+     * of a list that has not changed since the last one hands the same snapshot out again.
      *
-     * @return The ArrayList encapsulating the Item objects being tracked.
+     * @return The List encapsulating the Item objects being tracked.
      */
-    public ArrayList<Item> getItems() {
-        return items;
+    public List<Item> getItems() {
+        synchronized (lock) {
+            if (items instanceof ItemSnapshotSource)
+                return ((ItemSnapshotSource) items).snapshot();
+            return Collections.unmodifiableList(new ArrayList<>(items));
+        }
     }
 
     /**
@@ -98,13 +424,17 @@ public class Tracker implements Parcelable{
     }
 
     /**
-     * Implementation for writing an Tracker to a Parcel
+     * Implementation for writing an Tracker to a Parcel. Items paged in from the database are
+     * not written, since they are reloaded from it.
      *
      * {@inheritDoc}
      */
     @Override
     public void writeToParcel(Parcel parcel, int i) {
-        parcel.writeTypedList(items);
+        boolean paged = isPaged();
+        parcel.writeInt(paged ? 1 : 0);
+        if (!paged)
+            parcel.writeTypedList(getItems());
     }
 
     /**
@@ -113,7 +443,8 @@ public class Tracker implements Parcelable{
      * @param in The Parcel object encapsulating the Item object
      */
     private Tracker(Parcel in) {
-        items = in.createTypedArrayList(Item.CREATOR);
+        if (in.readInt() == 0)
+            setItems(new IndexedItemList(in.createTypedArrayList(Item.CREATOR)));
     }
 
     /**
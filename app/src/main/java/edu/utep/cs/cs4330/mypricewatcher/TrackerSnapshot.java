@@ -0,0 +1,333 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  Writes the Tracker's state to a compact binary file in the app's private storage, so that
+ *  only a token identifying the file goes into the activity's saved state, instead of every Item
+ *  being written into a Parcel. A snapshot starts with a header holding the format version and
+ *  the token, holds one record per Item, and ends with a table of where each record starts. It
+ *  is read back by memory-mapping the file and checking the header and table only; each Item is
+ *  decoded the first time it is asked for.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public final class TrackerSnapshot {
+    public static final int FORMAT_VERSION = 2;             /* Version of the format written */
+    public static final int FLAG_CHANGES_ONLY = 1;          /* The snapshot holds unsaved changes, not the whole list */
+    private static final int MAGIC = 0x54524b53;            /* "TRKS", the first bytes of every snapshot */
+    private static final int HEADER_SIZE = 20;              /* Magic, format version, token and flags */
+    private static final int TRAILER_SIZE = 8;              /* Offset of the record table, and number of records */
+    private static final int BUFFER_SIZE = 64 * 1024;       /* Size of the write buffer */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final AtomicLong lastToken = new AtomicLong(System.currentTimeMillis()); /* Last token handed out */
+
+    /**
+     * The Items of a snapshot, decoded from the mapped file the first time each is asked for. The
+     * list is copied into memory the first time it is modified. Until then, a snapshot of the list
+     * reads the mapped file too.
+     */
+    public static final class SnapshotList extends AbstractList<Item> implements ItemSnapshotSource {
+        private final ByteBuffer buffer;    /* The mapped snapshot */
+        private final int flags;            /* Flags the snapshot was written with */
+        private final int table;            /* Offset of the record table */
+        private final Item[] decoded;       /* Items decoded so far */
+        private List<Item> items;           /* Items held in memory once the list is modified, or null */
+        private List<Item> snapshot;        /* Snapshot handed out since the last change, or null */
+
+        private SnapshotList(ByteBuffer buffer, int flags, int table, int count) {
+            this.buffer = buffer;
+            this.flags = flags;
+            this.table = table;
+            decoded = new Item[count];
+        }
+
+        /**
+         * Returns whether the snapshot only holds the Items with unsaved changes.
+         *
+         * @return Whether it holds only changes
+         */
+        public boolean isChangesOnly() {
+            return (flags & FLAG_CHANGES_ONLY) != 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized Item get(int index) {
+            return items != null ? items.get(index) : decode(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized int size() {
+            return items != null ? items.size() : decoded.length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized void add(int index, Item item) {
+            materialize().add(index, item);
+            snapshot = null;
+            modCount++;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized Item set(int index, Item item) {
+            snapshot = null;
+            return materialize().set(index, item);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized Item remove(int index) {
+            Item removed = materialize().remove(index);
+            snapshot = null;
+            modCount++;
+            return removed;
+        }
+
+        /**
+         * Returns the Items as they are decoded from the mapped file while the list is unmodified,
+         * and a copy of them once it has been.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized List<Item> snapshot() {
+            if (snapshot == null) {
+                if (items != null) {
+                    snapshot = Collections.unmodifiableList(new ArrayList<>(items));
+                }
+                else {
+                    snapshot = new AbstractList<Item>() {
+                        @Override
+                        public Item get(int index) {
+                            synchronized (SnapshotList.this) {
+                                return decode(index);
+                            }
+                        }
+
+                        @Override
+                        public int size() {
+                            return decoded.length;
+                        }
+                    };
+                }
+            }
+            return snapshot;
+        }
+
+        /**
+         * Returns the Item of a record, decoding it the first time it is asked for. Must hold the
+         * list's lock.
+         *
+         * @param index The position of the record
+         * @return      The Item
+         */
+        private Item decode(int index) {
+            Item item = decoded[index];
+            if (item == null) {
+                ByteBuffer b = buffer.duplicate();
+                b.position(b.getInt(table + 4 * index));
+                item = decoded[index] = readItem(b);
+            }
+            return item;
+        }
+
+        /**
+         * Decode every Item not decoded yet, and hold them in memory from now on.
+         *
+         * @return The Items in memory
+         */
+        private List<Item> materialize() {
+            if (items == null) {
+                List<Item> all = new ArrayList<>(decoded.length);
+                for (int i = 0; i < decoded.length; i++)
+                    all.add(decode(i));
+                items = all;
+            }
+            return items;
+        }
+    }
+
+    /**
+     * This class only has static methods.
+     */
+    private TrackerSnapshot() {
+    }
+
+    /**
+     * Write a snapshot of the Items. It is written next to the file and then renamed over it, so
+     * that a snapshot interrupted while being written never replaces a complete one.
+     *
+     * @param file          The file to write the snapshot to
+     * @param items         The Items to write
+     * @param flags         FLAG_CHANGES_ONLY, or 0
+     * @return              The token identifying the snapshot
+     * @throws IOException  Throw in case the file cannot be written
+     */
+    public static long write(File file, List<Item> items, int flags) throws IOException {
+        long token = lastToken.incrementAndGet();
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), BUFFER_SIZE));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(token);
+            out.writeInt(flags);
+            int[] offsets = new int[items.size()];
+            int count = 0;
+            for (Item item : items) {
+                if (count == offsets.length)
+                    break;
+                offsets[count++] = out.size();
+                writeItem(out, item);
+            }
+            int table = out.size();
+            for (int i = 0; i < count; i++)
+                out.writeInt(offsets[i]);
+            out.writeInt(table);
+            out.writeInt(count);
+        }
+        finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file))
+            throw new IOException("Unable to replace " + file);
+        return token;
+    }
+
+    /**
+     * Map a snapshot, and check that it is the one identified by the token.
+     *
+     * @param file          The file the snapshot was written to
+     * @param token         The token returned when the snapshot was written
+     * @return              The snapshot's Items, decoded as they are asked for
+     * @throws IOException  Throw in case the file cannot be read, is not the expected snapshot,
+     *                      or was written in a format this version does not know
+     */
+    public static SnapshotList read(File file, long token) throws IOException {
+        ByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally {
+            raf.close();
+        }
+        int size = buffer.limit();
+        if (size < HEADER_SIZE + TRAILER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException(file + " is not a tracker snapshot");
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported snapshot format " + version);
+        if (buffer.getLong(8) != token)
+            throw new IOException(file + " holds a different snapshot");
+        int table = buffer.getInt(size - TRAILER_SIZE);
+        int count = buffer.getInt(size - TRAILER_SIZE + 4);
+        if (count < 0 || table < HEADER_SIZE || table + 4L * count != size - TRAILER_SIZE)
+            throw new IOException(file + " is truncated");
+        return new SnapshotList(buffer, buffer.getInt(16), table, count);
+    }
+
+    /**
+     * Write an Item's record. Prices are written in whole cents, as they are stored, from a single
+     * PriceSnapshot of the Item.
+     *
+     * @param out           The snapshot being written
+     * @param item          The Item
+     * @throws IOException  Throw in case the record cannot be written
+     */
+    private static void writeItem(DataOutputStream out, Item item) throws IOException {
+        PriceSnapshot price = item.getPriceSnapshot();
+        out.writeLong(item.getId());
+        writeString(out, item.getName());
+        out.writeLong(price.getInitPriceCents());
+        out.writeLong(price.getCurrPriceCents());
+        out.writeDouble(price.getPercChange());
+        out.writeLong(price.getFetchedAt());
+        writeString(out, item.getURL());
+        out.writeLong(item.getDateAddedMillis());
+        out.writeInt(item.getVersion());
+        out.writeInt(item.getSavedVersion());
+    }
+
+    /**
+     * Read an Item's record.
+     *
+     * @param in    The snapshot, positioned at the record
+     * @return      The Item
+     */
+    private static Item readItem(ByteBuffer in) {
+        long id = in.getLong();
+        String name = readString(in);
+        long initPriceCents = in.getLong();
+        long currPriceCents = in.getLong();
+        double percChange = in.getDouble();
+        long fetchedAt = in.getLong();
+        String url = readString(in);
+        long dateAdded = in.getLong();
+        int version = in.getInt();
+        int savedVersion = in.getInt();
+        return new Item(id, name, new PriceSnapshot(initPriceCents, currPriceCents, percChange, fetchedAt),
+                url, dateAdded, version, savedVersion);
+    }
+
+    /**
+     * Write a string as its length in bytes followed by its UTF-8 bytes, or -1 for null.
+     *
+     * @param out           The snapshot being written
+     * @param s             The string, or null
+     * @throws IOException  Throw in case the string cannot be written
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by writeString().
+     *
+     * @param in    The snapshot, positioned at the string
+     * @return      The string, or null
+     */
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,176 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  Remembers, for every tracked url, the validators the Web service sent with its last full
+ *  response (its ETag and Last-Modified headers) together with the price that response held. The
+ *  PriceFinderClient sends them back with its next query of the url, and when the Web service
+ *  answers 304 Not Modified the remembered price is reused without a body being sent or parsed.
+ *  The validators are loaded from and saved to the database by the DBHandler, so that they
+ *  survive restarts. Only the urls used most recently are remembered, since every stored item
+ *  read from the database passes through the store; validators forgotten to make room stay in the
+ *  database, and are remembered again when their item is next read.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public class ValidatorStore {
+    public static final int DEFAULT_CAPACITY = 2048;                        /* Default number of remembered urls */
+
+    private static final ValidatorStore instance = new ValidatorStore();   /* Store shared by the application */
+    private static final Validator NONE = new Validator(null, null, Double.NaN);   /* Remembered for a url without validators */
+
+    private final int capacity;                                             /* Maximum number of remembered urls */
+    private final LinkedHashMap<String, Validator> validators;              /* Validators by url, least recently used first */
+    private final AtomicLong notModifiedCount;                              /* Queries answered 304 Not Modified */
+
+    /**
+     * The validators of a url's last full response, and the price that response held.
+     */
+    public static class Validator {
+        private final String etag;              /* ETag of the response, may be null */
+        private final String lastModified;      /* Last-Modified of the response, may be null */
+        private final double price;             /* Price the response held */
+
+        /**
+         * The constructor for a Validator.
+         *
+         * @param etag          The ETag of the response, or null
+         * @param lastModified  The Last-Modified date of the response, or null
+         * @param price         The price the response held
+         */
+        public Validator(String etag, String lastModified, double price) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.price = price;
+        }
+
+        /**
+         * Getter for the ETag of the response.
+         *
+         * @return The ETag, or null if the response had none
+         */
+        public String getETag() {
+            return etag;
+        }
+
+        /**
+         * Getter for the Last-Modified date of the response.
+         *
+         * @return The Last-Modified date, or null if the response had none
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Getter for the price the response held.
+         *
+         * @return The price
+         */
+        public double getPrice() {
+            return price;
+        }
+    }
+
+    /**
+     * The constructor for a ValidatorStore with the default capacity. Use getInstance() for the
+     * store shared by the application.
+     */
+    ValidatorStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * The constructor for a ValidatorStore.
+     *
+     * @param capacity The maximum number of remembered urls
+     */
+    ValidatorStore(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid store capacity.");
+        this.capacity = capacity;
+        validators = new LinkedHashMap<String, Validator>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Validator> eldest) {
+                return size() > ValidatorStore.this.capacity;
+            }
+        };
+        notModifiedCount = new AtomicLong();
+    }
+
+    /**
+     * Getter for the ValidatorStore shared by the application.
+     *
+     * @return The shared ValidatorStore
+     */
+    public static ValidatorStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the validators remembered for the url.
+     *
+     * @param url   The Web url
+     * @return      The url's validators, or null if none are remembered
+     */
+    public synchronized Validator get(String url) {
+        Validator validator = validators.get(url);
+        return validator == NONE ? null : validator;
+    }
+
+    /**
+     * Returns whether the store knows the url's validators, or knows that it has none, rather
+     * than never having seen the url or having forgotten it to make room.
+     *
+     * @param url   The Web url
+     * @return      Whether the url is remembered
+     */
+    public synchronized boolean remembers(String url) {
+        return validators.containsKey(url);
+    }
+
+    /**
+     * Remember the validators of a full response for the url. A response carrying neither an ETag
+     * nor a Last-Modified date cannot be validated, so any validators remembered earlier are dropped.
+     *
+     * @param url           The Web url
+     * @param etag          The ETag of the response, or null
+     * @param lastModified  The Last-Modified date of the response, or null
+     * @param price         The price the response held
+     */
+    public synchronized void put(String url, String etag, String lastModified, double price) {
+        if (etag == null && lastModified == null)
+            validators.put(url, NONE);
+        else
+            validators.put(url, new Validator(etag, lastModified, price));
+    }
+
+    /**
+     * Forget the validators of the url, so that its next query downloads a full response.
+     *
+     * @param url The Web url
+     */
+    public synchronized void remove(String url) {
+        validators.put(url, NONE);
+    }
+
+    /**
+     * Record that a query was answered 304 Not Modified.
+     */
+    void recordNotModified() {
+        notModifiedCount.incrementAndGet();
+    }
+
+    /**
+     * Getter for the number of queries answered 304 Not Modified, whose body was never sent.
+     *
+     * @return The number of unchanged prices
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+}
@@ -0,0 +1,586 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ *  Imports and exports the watch list, the tracked Items and their price history, as CSV or
+ *  JSON. Exports stream the Items and history out of database cursors, and imports stream them
+ *  in from a reader and store them a batch at a time, each batch in one transaction, so that
+ *  moving any number of Items or history rows only holds a batch of them in memory. Items whose
+ *  url is already tracked are skipped, as are history rows that are already stored.
+ *
+ *  An Items CSV has a header row naming its columns, of which only "url" is required; a file
+ *  holding nothing but urls, one per line, is also accepted. A history CSV has a row per price
+ *  point, naming the url of its Item. A JSON watch list is an object holding an "items" array and
+ *  a "history" array with the same fields. Prices are in whole cents, and times in milliseconds
+ *  since the epoch.
+ *
+ * @author Damian Najera
+ * @version 1.0
+ */
+public final class WatchListTransfer {
+    public static final int FORMAT_VERSION = 1;             /* Version of the JSON format written */
+    public static final int BATCH_SIZE = 500;               /* Rows stored per transaction */
+
+    private static final String NAME = "name";
+    private static final String URL = "url";
+    private static final String INIT_PRICE = "initPriceCents";
+    private static final String CURR_PRICE = "currPriceCents";
+    private static final String DATE_ADDED = "dateAdded";
+    private static final String TIME = "time";
+    private static final String RESOLUTION = "resolution";
+    private static final String PRICE = "priceCents";
+    private static final String MIN_PRICE = "minCents";
+    private static final String MAX_PRICE = "maxCents";
+    private static final String SAMPLES = "samples";
+    private static final String[] ITEM_HEADER = { NAME, URL, INIT_PRICE, CURR_PRICE, DATE_ADDED };
+    private static final String[] HISTORY_HEADER = { URL, TIME, RESOLUTION, PRICE, MIN_PRICE, MAX_PRICE, SAMPLES };
+
+    /**
+     * Reads the rows of a CSV file one at a time, reusing the same list and buffer for every row.
+     * Quoted fields may hold commas, quotes written twice, and line breaks.
+     */
+    static class CsvReader {
+        private final Reader in;                                /* The CSV being read */
+        private final List<String> fields = new ArrayList<>();  /* Fields of the current row */
+        private final StringBuilder field = new StringBuilder(); /* Contents of the current field */
+        private int next = -2;                                  /* Character read ahead, or -2 if none */
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * Read the next row that is not blank.
+         *
+         * @return              The row's fields, valid until the next row is read, or null at the end
+         * @throws IOException  Throw in case the file cannot be read, or ends within quotes
+         */
+        List<String> next() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c == '\r' || c == '\n');
+            if (c == -1)
+                return null;
+            fields.clear();
+            field.setLength(0);
+            boolean quoted = false;
+            for (; ; c = read()) {
+                if (quoted) {
+                    if (c == -1)
+                        throw new IOException("Unterminated quote in the CSV");
+                    if (c == '"') {
+                        if (peek() == '"')
+                            field.append((char) read());
+                        else
+                            quoted = false;
+                    }
+                    else {
+                        field.append((char) c);
+                    }
+                }
+                else if (c == '"') {
+                    quoted = true;
+                }
+                else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                }
+                else if (c == '\n' || c == '\r' || c == -1) {
+                    if (c == '\r' && peek() == '\n')
+                        read();
+                    fields.add(field.toString());
+                    return fields;
+                }
+                else {
+                    field.append((char) c);
+                }
+            }
+        }
+
+        private int read() throws IOException {
+            if (next != -2) {
+                int c = next;
+                next = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        private int peek() throws IOException {
+            if (next == -2)
+                next = in.read();
+            return next;
+        }
+    }
+
+    /**
+     * This class only has static methods.
+     */
+    private WatchListTransfer() {
+    }
+
+    /**
+     * Write every stored Item as a CSV row, after a header row.
+     *
+     * @param db            The database the Items are stored in
+     * @param out           The writer of the CSV, which is flushed but not closed
+     * @return              The number of Items written
+     * @throws IOException  Throw in case the CSV cannot be written
+     */
+    public static int exportItemsCsv(DBHandler db, Writer out) throws IOException {
+        writeCsvRow(out, ITEM_HEADER);
+        int[] count = new int[1];
+        String[] row = new String[ITEM_HEADER.length];
+        db.forEachItem(item -> {
+            row[0] = item.getName();
+            row[1] = item.getURL();
+            row[2] = String.valueOf(item.getInitPriceCents());
+            row[3] = String.valueOf(item.getCurrPriceCents());
+            row[4] = String.valueOf(item.getDateAddedMillis());
+            writeCsvRow(out, row);
+            count[0]++;
+        });
+        out.flush();
+        return count[0];
+    }
+
+    /**
+     * Write the price history of every stored Item as CSV rows, after a header row.
+     *
+     * @param db            The database the history is stored in
+     * @param out           The writer of the CSV, which is flushed but not closed
+     * @return              The number of price points written
+     * @throws IOException  Throw in case the CSV cannot be written
+     */
+    public static int exportHistoryCsv(DBHandler db, Writer out) throws IOException {
+        writeCsvRow(out, HISTORY_HEADER);
+        int[] count = new int[1];
+        String[] row = new String[HISTORY_HEADER.length];
+        db.forEachPricePoint((url, point) -> {
+            row[0] = url;
+            row[1] = String.valueOf(point.getTime());
+            row[2] = String.valueOf(point.getResolution());
+            row[3] = String.valueOf(point.getPriceCents());
+            row[4] = String.valueOf(point.getMinCents());
+            row[5] = String.valueOf(point.getMaxCents());
+            row[6] = String.valueOf(point.getSamples());
+            writeCsvRow(out, row);
+            count[0]++;
+        });
+        out.flush();
+        return count[0];
+    }
+
+    /**
+     * Write every stored Item and its price history as a JSON watch list.
+     *
+     * @param db            The database the Items are stored in
+     * @param out           The writer of the JSON, which is flushed but not closed
+     * @return              The number of Items written
+     * @throws IOException  Throw in case the JSON cannot be written
+     */
+    public static int exportJson(DBHandler db, Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        int[] count = new int[2];
+        json.beginObject();
+        json.name("version").value(FORMAT_VERSION);
+        json.name("items").beginArray();
+        db.forEachItem(item -> {
+            json.beginObject();
+            json.name(NAME).value(item.getName());
+            json.name(URL).value(item.getURL());
+            json.name(INIT_PRICE).value(item.getInitPriceCents());
+            json.name(CURR_PRICE).value(item.getCurrPriceCents());
+            json.name(DATE_ADDED).value(item.getDateAddedMillis());
+            json.endObject();
+            count[0]++;
+        });
+        json.endArray();
+        json.name("history").beginArray();
+        db.forEachPricePoint((url, point) -> {
+            json.beginObject();
+            json.name(URL).value(url);
+            json.name(TIME).value(point.getTime());
+            json.name(RESOLUTION).value(point.getResolution());
+            json.name(PRICE).value(point.getPriceCents());
+            json.name(MIN_PRICE).value(point.getMinCents());
+            json.name(MAX_PRICE).value(point.getMaxCents());
+            json.name(SAMPLES).value(point.getSamples());
+            json.endObject();
+            count[1]++;
+        });
+        json.endArray();
+        json.endObject();
+        json.flush();
+        Log.d("WatchListTransfer.exportJson", "Exported " + count[0] + " items and " + count[1] + " price points");
+        return count[0];
+    }
+
+    /**
+     * Import a watch list, as JSON if it starts with '{', and as an Items CSV otherwise.
+     *
+     * @param db            The database to store the Items in
+     * @param in            The reader of the watch list, which must support mark()
+     * @return              The number of Items stored
+     * @throws IOException  Throw in case the watch list cannot be read, or is malformed
+     */
+    public static int importWatchList(DBHandler db, Reader in) throws IOException {
+        int c;
+        do {
+            in.mark(1);
+            c = in.read();
+        } while (c != -1 && Character.isWhitespace(c));
+        if (c == -1)
+            return 0;
+        in.reset();
+        return c == '{' ? importJson(db, in) : importItemsCsv(db, in);
+    }
+
+    /**
+     * Import the Items of a CSV, a batch at a time. Missing names default to the url, and missing
+     * prices are filled in by the next refresh.
+     *
+     * @param db            The database to store the Items in
+     * @param in            The reader of the CSV
+     * @return              The number of Items stored
+     * @throws IOException  Throw in case the CSV cannot be read, or has no url column
+     */
+    public static int importItemsCsv(DBHandler db, Reader in) throws IOException {
+        CsvReader csv = new CsvReader(in);
+        List<String> row = csv.next();
+        if (row == null)
+            return 0;
+        Map<String, Integer> columns = new HashMap<>();
+        boolean header = !looksLikeUrl(row.get(0));
+        if (header) {
+            for (int i = 0; i < row.size(); i++)
+                columns.put(row.get(i).trim(), i);
+            if (!columns.containsKey(URL))
+                throw new IOException("The CSV has no " + URL + " column");
+            row = csv.next();
+        }
+        else {
+            columns.put(URL, 0);
+        }
+        long now = System.currentTimeMillis();
+        List<Item> batch = new ArrayList<>(BATCH_SIZE);
+        int stored = 0;
+        int skipped = 0;
+        for (; row != null; row = csv.next()) {
+            String url = field(row, columns, URL);
+            if (url.isEmpty()) {
+                skipped++;
+                continue;
+            }
+            try {
+                String name = field(row, columns, NAME);
+                long initCents = longField(row, columns, INIT_PRICE, 0);
+                long currCents = longField(row, columns, CURR_PRICE, initCents);
+                long dateAdded = longField(row, columns, DATE_ADDED, now);
+                batch.add(newItem(name.isEmpty() ? url : name, url, initCents, currCents, dateAdded));
+            } catch (NumberFormatException e) {
+                skipped++;
+                continue;
+            }
+            if (batch.size() == BATCH_SIZE) {
+                stored += db.importItems(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            stored += db.importItems(batch);
+        Log.d("WatchListTransfer.importItemsCsv", "Stored " + stored + " items, skipped " + skipped + " malformed rows");
+        return stored;
+    }
+
+    /**
+     * Import the price history of a CSV, a batch at a time. Rows of urls that are not tracked
+     * are skipped.
+     *
+     * @param db            The database to store the history in
+     * @param in            The reader of the CSV
+     * @return              The number of price points stored
+     * @throws IOException  Throw in case the CSV cannot be read, or lacks a column
+     */
+    public static int importHistoryCsv(DBHandler db, Reader in) throws IOException {
+        CsvReader csv = new CsvReader(in);
+        List<String> row = csv.next();
+        if (row == null)
+            return 0;
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < row.size(); i++)
+            columns.put(row.get(i).trim(), i);
+        for (String column : new String[] { URL, TIME, PRICE })
+            if (!columns.containsKey(column))
+                throw new IOException("The CSV has no " + column + " column");
+        List<String> urls = new ArrayList<>(BATCH_SIZE);
+        List<PricePoint> batch = new ArrayList<>(BATCH_SIZE);
+        int stored = 0;
+        while ((row = csv.next()) != null) {
+            try {
+                long price = longField(row, columns, PRICE, 0);
+                batch.add(new PricePoint(0, longField(row, columns, TIME, 0),
+                        (int) longField(row, columns, RESOLUTION, PricePoint.RESOLUTION_RAW), price,
+                        longField(row, columns, MIN_PRICE, price), longField(row, columns, MAX_PRICE, price),
+                        (int) longField(row, columns, SAMPLES, 1)));
+                urls.add(field(row, columns, URL));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (batch.size() == BATCH_SIZE) {
+                stored += db.importPriceHistory(urls, batch);
+                urls.clear();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            stored += db.importPriceHistory(urls, batch);
+        return stored;
+    }
+
+    /**
+     * Import a JSON watch list, a batch at a time. Its Items must come before its history, as
+     * they are written by exportJson(), for the history of new Items to be stored.
+     *
+     * @param db            The database to store the watch list in
+     * @param in            The reader of the JSON
+     * @return              The number of Items stored
+     * @throws IOException  Throw in case the JSON cannot be read, is malformed, or is of a newer
+     *                      format than this version knows
+     */
+    public static int importJson(DBHandler db, Reader in) throws IOException {
+        JsonReader json = new JsonReader(in);
+        int storedItems = 0;
+        int storedPoints = 0;
+        long now = System.currentTimeMillis();
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("version")) {
+                int version = json.nextInt();
+                if (version > FORMAT_VERSION)
+                    throw new IOException("Unsupported watch list format " + version);
+            }
+            else if (name.equals("items")) {
+                List<Item> batch = new ArrayList<>(BATCH_SIZE);
+                json.beginArray();
+                while (json.hasNext()) {
+                    Item item = readJsonItem(json, now);
+                    if (item != null)
+                        batch.add(item);
+                    if (batch.size() == BATCH_SIZE) {
+                        storedItems += db.importItems(batch);
+                        batch.clear();
+                    }
+                }
+                json.endArray();
+                if (!batch.isEmpty())
+                    storedItems += db.importItems(batch);
+            }
+            else if (name.equals("history")) {
+                List<String> urls = new ArrayList<>(BATCH_SIZE);
+                List<PricePoint> batch = new ArrayList<>(BATCH_SIZE);
+                json.beginArray();
+                while (json.hasNext()) {
+                    readJsonPoint(json, urls, batch);
+                    if (batch.size() == BATCH_SIZE) {
+                        storedPoints += db.importPriceHistory(urls, batch);
+                        urls.clear();
+                        batch.clear();
+                    }
+                }
+                json.endArray();
+                if (!batch.isEmpty())
+                    storedPoints += db.importPriceHistory(urls, batch);
+            }
+            else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        Log.d("WatchListTransfer.importJson", "Stored " + storedItems + " items and " + storedPoints + " price points");
+        return storedItems;
+    }
+
+    /**
+     * Read an Item object of a JSON watch list.
+     *
+     * @param json          The reader, positioned at the object
+     * @param now           The time to give an Item without a date added
+     * @return              The Item, or null if it has no url
+     * @throws IOException  Throw in case the object cannot be read
+     */
+    private static Item readJsonItem(JsonReader json, long now) throws IOException {
+        String name = null;
+        String url = null;
+        long initCents = 0;
+        long currCents = -1;
+        long dateAdded = now;
+        json.beginObject();
+        while (json.hasNext()) {
+            String field = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (field) {
+                case NAME: name = json.nextString(); break;
+                case URL: url = json.nextString(); break;
+                case INIT_PRICE: initCents = json.nextLong(); break;
+                case CURR_PRICE: currCents = json.nextLong(); break;
+                case DATE_ADDED: dateAdded = json.nextLong(); break;
+                default: json.skipValue();
+            }
+        }
+        json.endObject();
+        if (url == null || url.isEmpty())
+            return null;
+        return newItem(name == null || name.isEmpty() ? url : name, url, initCents,
+                currCents == -1 ? initCents : currCents, dateAdded);
+    }
+
+    /**
+     * Read a price point object of a JSON watch list, and add it to the batch along with its url,
+     * unless it lacks a url, time or price.
+     *
+     * @param json          The reader, positioned at the object
+     * @param urls          The urls of the batch
+     * @param batch         The price points of the batch
+     * @throws IOException  Throw in case the object cannot be read
+     */
+    private static void readJsonPoint(JsonReader json, List<String> urls, List<PricePoint> batch) throws IOException {
+        String url = null;
+        long time = -1;
+        int resolution = PricePoint.RESOLUTION_RAW;
+        long price = -1;
+        long min = -1;
+        long max = -1;
+        int samples = 1;
+        json.beginObject();
+        while (json.hasNext()) {
+            String field = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (field) {
+                case URL: url = json.nextString(); break;
+                case TIME: time = json.nextLong(); break;
+                case RESOLUTION: resolution = json.nextInt(); break;
+                case PRICE: price = json.nextLong(); break;
+                case MIN_PRICE: min = json.nextLong(); break;
+                case MAX_PRICE: max = json.nextLong(); break;
+                case SAMPLES: samples = json.nextInt(); break;
+                default: json.skipValue();
+            }
+        }
+        json.endObject();
+        if (url == null || time == -1 || price == -1)
+            return;
+        urls.add(url);
+        batch.add(new PricePoint(0, time, resolution, price, min == -1 ? price : min, max == -1 ? price : max, samples));
+    }
+
+    /**
+     * Build an imported Item from its prices in cents.
+     *
+     * @param name          The Item's name
+     * @param url           The Item's url
+     * @param initCents     The Item's initial price, in cents, or 0 if it is not known
+     * @param currCents     The Item's current price, in cents
+     * @param dateAdded     The time the Item was first tracked, in milliseconds since the epoch
+     * @return              The Item
+     */
+    private static Item newItem(String name, String url, long initCents, long currCents, long dateAdded) {
+        double percChange = initCents == 0 ? 0 : (currCents - initCents) / (double) initCents;
+        return new Item(name, initCents / 100.0, currCents / 100.0, percChange, url, dateAdded);
+    }
+
+    /**
+     * Write a CSV row, quoting the fields that hold a comma, quote or line break.
+     *
+     * @param out           The writer of the CSV
+     * @param fields        The row's fields, where null is written as an empty field
+     * @throws IOException  Throw in case the row cannot be written
+     */
+    static void writeCsvRow(Writer out, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0)
+                out.write(',');
+            String field = fields[i];
+            if (field == null)
+                continue;
+            boolean quote = false;
+            for (int j = 0; j < field.length() && !quote; j++) {
+                char c = field.charAt(j);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(field);
+                continue;
+            }
+            out.write('"');
+            for (int j = 0; j < field.length(); j++) {
+                char c = field.charAt(j);
+                if (c == '"')
+                    out.write('"');
+                out.write(c);
+            }
+            out.write('"');
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Returns a field of a CSV row by its column, or an empty string if the row has no such field.
+     *
+     * @param row       The row's fields
+     * @param columns   The position of each column
+     * @param column    The column's name
+     * @return          The field
+     */
+    private static String field(List<String> row, Map<String, Integer> columns, String column) {
+        Integer i = columns.get(column);
+        return i == null || i >= row.size() ? "" : row.get(i).trim();
+    }
+
+    /**
+     * Returns a whole number field of a CSV row by its column, or a default if it is empty.
+     *
+     * @param row                       The row's fields
+     * @param columns                   The position of each column
+     * @param column                    The column's name
+     * @param defaultValue              The value of an empty field
+     * @return                          The field's value
+     * @throws NumberFormatException    Throw in case the field is not a whole number
+     */
+    private static long longField(List<String> row, Map<String, Integer> columns, String column, long defaultValue) {
+        String field = field(row, columns, column);
+        return field.isEmpty() ? defaultValue : Long.parseLong(field);
+    }
+
+    /**
+     * Returns whether the first field of a CSV's first row is a url rather than a column name.
+     *
+     * @param field The field
+     * @return      Whether it is a url
+     */
+    private static boolean looksLikeUrl(String field) {
+        String f = field.trim().toLowerCase(Locale.US);
+        return f.startsWith("http://") || f.startsWith("https://");
+    }
+}
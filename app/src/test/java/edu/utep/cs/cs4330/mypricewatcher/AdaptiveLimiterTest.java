@@ -0,0 +1,100 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the AdaptiveLimiter bounding the requests in flight to a single host.
+ */
+public class AdaptiveLimiterTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void acquire_blocksPastLimit() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 4);
+        limiter.acquire();
+        limiter.acquire();
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread third = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        third.start();
+
+        assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+        limiter.release();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    public void release_halvesLimitOnDrop() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(8, 2, 8);
+        limiter.acquire();
+        limiter.release(MILLIS, true);
+        assertEquals(4, limiter.getLimit());
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+            limiter.release(MILLIS, true);
+        }
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void release_backsOffOnSlowRequest() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 1, 10);
+        limiter.acquire();
+        limiter.release(10 * MILLIS, false);        /* Sets the baseline */
+        limiter.acquire();
+        limiter.release(100 * MILLIS, false);       /* Ten times slower than the baseline */
+        assertEquals(9, limiter.getLimit());
+    }
+
+    @Test
+    public void release_growsLimitWhileSaturated() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 4);
+        for (int round = 0; round < 50; round++) {
+            int limit = limiter.getLimit();
+            for (int i = 0; i < limit; i++)
+                limiter.acquire();
+            for (int i = 0; i < limit; i++)
+                limiter.release(MILLIS, false);
+        }
+        assertEquals("grows up to its maximum", 4, limiter.getLimit());
+    }
+
+    @Test
+    public void release_doesNotGrowLimitWhileIdle() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 8);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.release(MILLIS, false);         /* One in flight out of four is not saturated */
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void releaseWithoutSample_leavesLimit() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 8);
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire();
+            limiter.release();
+        }
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsInitialLimitOutOfRange() {
+        new AdaptiveLimiter(5, 1, 4);
+    }
+}
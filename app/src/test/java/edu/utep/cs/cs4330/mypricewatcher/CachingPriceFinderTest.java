@@ -0,0 +1,100 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the CachingPriceFinder: fresh prices are served without asking the
+ * delegate, stale and bypassed ones are fetched again, and the least recently used url is evicted
+ * once the cache is full.
+ */
+public class CachingPriceFinderTest {
+
+    /**
+     * A PriceFinder that counts the urls it is asked for, and prices each url by its length.
+     */
+    private static class CountingPriceFinder extends PriceFinder {
+        private final AtomicInteger fetched = new AtomicInteger();
+
+        @Override
+        public double fetchPrice(String url) {
+            fetched.incrementAndGet();
+            return url.length();
+        }
+
+        @Override
+        public Map<String, Double> fetchPrices(Collection<String> urls) {
+            Map<String, Double> prices = new LinkedHashMap<>();
+            for (String url : urls)
+                prices.put(url, fetchPrice(url));
+            return prices;
+        }
+    }
+
+    @Test
+    public void fetchPrice_servesFreshPriceFromCache() {
+        CountingPriceFinder delegate = new CountingPriceFinder();
+        CachingPriceFinder finder = new CachingPriceFinder(delegate);
+
+        assertEquals(3.0, finder.fetchPrice("abc"), 0.0);
+        assertEquals(3.0, finder.fetchPrice("abc"), 0.0);
+
+        assertEquals(1, delegate.fetched.get());
+        assertEquals(1, finder.getHitCount());
+        assertEquals(1, finder.getMissCount());
+    }
+
+    @Test
+    public void fetchPrice_fetchesAgain_whenStaleOrBypassed() throws InterruptedException {
+        CountingPriceFinder delegate = new CountingPriceFinder();
+        CachingPriceFinder finder = new CachingPriceFinder(delegate, 16, 50);
+
+        finder.fetchPrice("abc");
+        finder.fetchPrice("abc", true);
+        assertEquals(2, delegate.fetched.get());
+
+        Thread.sleep(100);
+        finder.fetchPrice("abc");
+        assertEquals(3, delegate.fetched.get());
+        assertEquals(0, finder.getHitCount());
+    }
+
+    @Test
+    public void fetchPrice_evictsLeastRecentlyUsed() {
+        CountingPriceFinder delegate = new CountingPriceFinder();
+        CachingPriceFinder finder = new CachingPriceFinder(delegate, 2, CachingPriceFinder.DEFAULT_TTL_MILLIS);
+
+        finder.fetchPrice("a");
+        finder.fetchPrice("bb");
+        finder.fetchPrice("a");         /* "bb" is now the least recently used */
+        finder.fetchPrice("ccc");
+
+        assertEquals(2, finder.size());
+        assertEquals(1, finder.getEvictionCount());
+        finder.fetchPrice("a");
+        assertEquals(3, delegate.fetched.get());
+        finder.fetchPrice("bb");
+        assertEquals(4, delegate.fetched.get());
+    }
+
+    @Test
+    public void fetchPrices_asksDelegateOnlyForMissingUrls() {
+        CountingPriceFinder delegate = new CountingPriceFinder();
+        CachingPriceFinder finder = new CachingPriceFinder(delegate);
+        finder.fetchPrice("a");
+
+        Map<String, Double> found = finder.fetchPrices(Arrays.asList("a", "bb", "a"));
+
+        assertEquals(2, found.size());
+        assertEquals(2.0, found.get("bb"), 0.0);
+        assertEquals(2, delegate.fetched.get());
+        assertEquals(1, finder.getHitCount());
+    }
+}
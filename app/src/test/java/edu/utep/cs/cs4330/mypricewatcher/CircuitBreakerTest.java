@@ -0,0 +1,106 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the CircuitBreaker's state machine.
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60 * 1000);
+        failQueries(breaker, 2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.acquirePermission();
+        breaker.onSuccess();
+        assertEquals("a success resets the count", 0, breaker.getConsecutiveFailures());
+
+        failQueries(breaker, 3);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void rejectsWhileOpen() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 60 * 1000);
+        failQueries(breaker, 1);
+        for (int i = 0; i < 3; i++)
+            assertRejected(breaker);
+        assertEquals(3, breaker.getRejectedCount());
+    }
+
+    @Test
+    public void letsOneTrialThroughOnceOpenPeriodPasses() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 20);
+        failQueries(breaker, 1);
+        assertRejected(breaker);
+        Thread.sleep(40);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.acquirePermission();
+        assertRejected(breaker);
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.acquirePermission();
+        breaker.acquirePermission();
+    }
+
+    @Test
+    public void reopensWhenTrialFails() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 30);
+        failQueries(breaker, 1);
+        Thread.sleep(50);
+        breaker.acquirePermission();
+        breaker.onFailure();
+
+        assertEquals("the open period starts again", CircuitBreaker.State.OPEN, breaker.getState());
+        assertRejected(breaker);
+    }
+
+    @Test
+    public void cancelledTrial_releasesPermissionOnly() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        failQueries(breaker, 1);
+        breaker.acquirePermission();
+        breaker.onCancelled();
+        assertEquals(1, breaker.getConsecutiveFailures());
+
+        breaker.acquirePermission();
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void cancelledQuery_leavesClosedBreakerAlone() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 60 * 1000);
+        failQueries(breaker, 1);
+        for (int i = 0; i < 5; i++) {
+            breaker.acquirePermission();
+            breaker.onCancelled();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getConsecutiveFailures());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNonPositiveThreshold() {
+        new CircuitBreaker(0, 1000);
+    }
+
+    private static void failQueries(CircuitBreaker breaker, int failures) {
+        for (int i = 0; i < failures; i++) {
+            breaker.acquirePermission();
+            breaker.onFailure();
+        }
+    }
+
+    private static void assertRejected(CircuitBreaker breaker) {
+        try {
+            breaker.acquirePermission();
+            fail("Expected a CircuitOpenException");
+        } catch (CircuitOpenException expected) {
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the CoalescingPriceFinder: concurrent fetches of a url share one query and
+ * its real outcome, but not the cancellation of the fetch that owned the query, and urls that
+ * differ only in ways that do not matter are canonicalized alike.
+ */
+public class CoalescingPriceFinderTest {
+
+    /**
+     * A PriceFinder whose first fetch blocks until released and then ends with a given outcome,
+     * and whose later fetches return a price straight away.
+     */
+    private static class BlockingPriceFinder extends PriceFinder {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final AtomicInteger calls = new AtomicInteger();
+        private final RuntimeException firstOutcome;
+
+        private BlockingPriceFinder(RuntimeException firstOutcome) {
+            this.firstOutcome = firstOutcome;
+        }
+
+        @Override
+        public double fetchPrice(String url) {
+            if (calls.incrementAndGet() > 1)
+                return 5.0;
+            entered.countDown();
+            try {
+                released.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (firstOutcome != null)
+                throw firstOutcome;
+            return 4.0;
+        }
+    }
+
+    @Test
+    public void fetchPrice_sharesOneQuery() throws Exception {
+        BlockingPriceFinder delegate = new BlockingPriceFinder(null);
+        CoalescingPriceFinder finder = new CoalescingPriceFinder(delegate);
+
+        Thread owner = start(() -> finder.fetchPrice("http://shop.example/a"), new AtomicReference<>());
+        AtomicReference<Object> joined = new AtomicReference<>();
+        Thread joiner = joinWhenOwnerIsQuerying(delegate, () -> finder.fetchPrice("HTTP://Shop.Example/a#top"), joined);
+        delegate.released.countDown();
+        owner.join(5000);
+        joiner.join(5000);
+
+        assertEquals(4.0, joined.get());
+        assertEquals(1, delegate.calls.get());
+        assertEquals(1, finder.getDeduplicatedCount());
+    }
+
+    @Test
+    public void fetchPrice_sharesRealFailure() throws Exception {
+        BlockingPriceFinder delegate = new BlockingPriceFinder(new ServiceUnavailableException("503"));
+        CoalescingPriceFinder finder = new CoalescingPriceFinder(delegate);
+
+        Thread owner = start(() -> finder.fetchPrice("u"), new AtomicReference<>());
+        AtomicReference<Object> joined = new AtomicReference<>();
+        Thread joiner = joinWhenOwnerIsQuerying(delegate, () -> finder.fetchPrice("u"), joined);
+        delegate.released.countDown();
+        owner.join(5000);
+        joiner.join(5000);
+
+        assertTrue(String.valueOf(joined.get()), joined.get() instanceof ServiceUnavailableException);
+        assertEquals(1, delegate.calls.get());
+    }
+
+    @Test
+    public void fetchPrice_ownerCancelled_joinerQueriesAgain() throws Exception {
+        BlockingPriceFinder delegate = new BlockingPriceFinder(new FetchCancelledException("cancelled"));
+        CoalescingPriceFinder finder = new CoalescingPriceFinder(delegate);
+
+        AtomicReference<Object> owned = new AtomicReference<>();
+        Thread owner = start(() -> finder.fetchPrice("u"), owned);
+        AtomicReference<Object> joined = new AtomicReference<>();
+        Thread joiner = joinWhenOwnerIsQuerying(delegate, () -> finder.fetchPrice("u"), joined);
+        delegate.released.countDown();
+        owner.join(5000);
+        joiner.join(5000);
+
+        assertTrue(String.valueOf(owned.get()), owned.get() instanceof FetchCancelledException);
+        assertEquals(5.0, joined.get());
+        assertEquals(2, delegate.calls.get());
+        assertEquals(0, finder.getDeduplicatedCount());
+    }
+
+    @Test
+    public void fetchPrices_ownerCancelled_batchQueriesAgain() throws Exception {
+        BlockingPriceFinder delegate = new BlockingPriceFinder(new FetchCancelledException("cancelled"));
+        CoalescingPriceFinder finder = new CoalescingPriceFinder(delegate);
+
+        Thread owner = start(() -> finder.fetchPrice("u"), new AtomicReference<>());
+        AtomicReference<Object> joined = new AtomicReference<>();
+        Thread joiner = joinWhenOwnerIsQuerying(delegate, () -> finder.fetchPrices(Arrays.asList("u", "v")), joined);
+        delegate.released.countDown();
+        owner.join(5000);
+        joiner.join(5000);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Double> prices = (Map<String, Double>) joined.get();
+        assertEquals(5.0, prices.get("u"), 0.0);
+        assertEquals(5.0, prices.get("v"), 0.0);
+        assertEquals(3, delegate.calls.get());
+    }
+
+    @Test
+    public void canonicalize_lowersSchemeAndHostAndDropsFragment() {
+        assertEquals("http://shop.example.com/Item?id=5",
+                CoalescingPriceFinder.canonicalize("  HTTP://Shop.Example.COM/Item?id=5#reviews "));
+    }
+
+    @Test
+    public void canonicalize_dropsDefaultPortOnly() {
+        assertEquals("http://a.com/x", CoalescingPriceFinder.canonicalize("http://a.com:80/x"));
+        assertEquals("https://a.com/x", CoalescingPriceFinder.canonicalize("https://a.com:443/x"));
+        assertEquals("https://a.com:8443/x", CoalescingPriceFinder.canonicalize("https://a.com:8443/x"));
+        assertEquals("http://a.com:443/x", CoalescingPriceFinder.canonicalize("http://a.com:443/x"));
+    }
+
+    @Test
+    public void canonicalize_writesEmptyPathAsSlash() {
+        assertEquals("https://a.com/", CoalescingPriceFinder.canonicalize("https://a.com"));
+        assertEquals("https://a.com/?q=1", CoalescingPriceFinder.canonicalize("https://a.com?q=1"));
+    }
+
+    @Test
+    public void canonicalize_keepsPathAndQueryAsWritten() {
+        assertEquals("http://a.com/Some%20Item/?b=2&a=1",
+                CoalescingPriceFinder.canonicalize("http://A.com/Some%20Item/?b=2&a=1"));
+        assertNotEquals(CoalescingPriceFinder.canonicalize("http://a.com/x"),
+                CoalescingPriceFinder.canonicalize("http://a.com/X"));
+    }
+
+    @Test
+    public void canonicalize_onlyTrimsUrlsItCannotParse() {
+        assertEquals("item-1", CoalescingPriceFinder.canonicalize("  item-1 "));
+        assertEquals("http://bad host/x", CoalescingPriceFinder.canonicalize("http://bad host/x "));
+        assertEquals("mailto:Someone@Example.com", CoalescingPriceFinder.canonicalize("mailto:Someone@Example.com"));
+    }
+
+    @Test
+    public void canonicalize_isIdempotent() {
+        for (String url : new String[] {"HTTP://A.com:80", "https://b.com/p?q#f", "  c ", "http://bad host/"}) {
+            String once = CoalescingPriceFinder.canonicalize(url);
+            assertEquals(once, CoalescingPriceFinder.canonicalize(once));
+        }
+    }
+
+    private interface Fetch {
+        Object run();
+    }
+
+    /**
+     * Start a thread running the fetch, and record its result or the exception it threw.
+     */
+    private static Thread start(Fetch fetch, AtomicReference<Object> outcome) {
+        Thread t = new Thread(() -> {
+            try {
+                outcome.set(fetch.run());
+            } catch (RuntimeException e) {
+                outcome.set(e);
+            }
+        });
+        t.start();
+        return t;
+    }
+
+    /**
+     * Once the owning fetch is querying the delegate, start a second fetch, and return once it
+     * is waiting for the owner's query.
+     */
+    private static Thread joinWhenOwnerIsQuerying(BlockingPriceFinder delegate, Fetch fetch,
+                                                  AtomicReference<Object> outcome) throws InterruptedException {
+        assertTrue(delegate.entered.await(5, TimeUnit.SECONDS));
+        Thread joiner = start(fetch, outcome);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (joiner.getState() != Thread.State.WAITING && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertEquals(Thread.State.WAITING, joiner.getState());
+        return joiner;
+    }
+}
@@ -0,0 +1,71 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of how the DBHandler reads the prices stored by version 2 of the database.
+ */
+public class DBHandlerTest {
+    @Test
+    public void parseDisplayedCents_readsUsPrices() {
+        assertEquals(0, DBHandler.parseDisplayedCents("$0.00"));
+        assertEquals(5, DBHandler.parseDisplayedCents("$0.05"));
+        assertEquals(123450, DBHandler.parseDisplayedCents("$1,234.50"));
+        assertEquals(100000000, DBHandler.parseDisplayedCents("$1,000,000.00"));
+    }
+
+    @Test
+    public void parseDisplayedCents_readsPricesOfOtherLocales() {
+        assertEquals(123450, DBHandler.parseDisplayedCents("$1.234,50"));
+        assertEquals(123450, DBHandler.parseDisplayedCents("1.234,50 \u20AC"));
+        assertEquals(123450, DBHandler.parseDisplayedCents("$1\u00A0234,50"));
+        assertEquals(123450, DBHandler.parseDisplayedCents("$1 234,50"));
+        assertEquals(123450, DBHandler.parseDisplayedCents("$1'234.50"));
+        assertEquals(99, DBHandler.parseDisplayedCents("$0,99"));
+    }
+
+    @Test
+    public void parseDisplayedCents_readsPricesWithoutDecimals() {
+        assertEquals(1200, DBHandler.parseDisplayedCents("$12"));
+        assertEquals(123400, DBHandler.parseDisplayedCents("$1,234"));
+        assertEquals(123400, DBHandler.parseDisplayedCents("1.234 \u20AC"));
+    }
+
+    @Test
+    public void parseDisplayedCents_matchesDecimalFormat_inEveryLocale() {
+        Random random = new Random(42);
+        for (Locale locale : Locale.getAvailableLocales()) {
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+            if (symbols.getZeroDigit() != '0')
+                continue;
+            DecimalFormat format = new DecimalFormat("$#,##0.00", symbols);
+            for (int i = 0; i < 100; i++) {
+                long cents = ((random.nextLong() >>> 1) >> random.nextInt(63)) % 100000000000000L;
+                String text = format.format(BigDecimal.valueOf(cents, 2));
+                assertEquals(locale + " " + text, cents, DBHandler.parseDisplayedCents(text));
+            }
+        }
+    }
+
+    @Test
+    public void parseDisplayedCents_rejectsWhatIsNotAPrice() {
+        assertEquals(-1, DBHandler.parseDisplayedCents(null));
+        assertEquals(-1, DBHandler.parseDisplayedCents(""));
+        assertEquals(-1, DBHandler.parseDisplayedCents("$"));
+        assertEquals(-1, DBHandler.parseDisplayedCents("N/A"));
+        assertEquals(-1, DBHandler.parseDisplayedCents("-$5.00"));
+        assertEquals(-1, DBHandler.parseDisplayedCents("$1,,234.50"));
+        assertEquals(-1, DBHandler.parseDisplayedCents("$12.5"));
+        assertEquals(-1, DBHandler.parseDisplayedCents("$12.5.0"));
+        assertEquals(-1, DBHandler.parseDisplayedCents("$1x234.50"));
+        assertEquals(-1, DBHandler.parseDisplayedCents("$12345678901234567.00"));
+    }
+}
@@ -0,0 +1,184 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the IndexedItemList, checked against an ArrayList given the same changes.
+ */
+public class IndexedItemListTest {
+
+    @Test
+    public void get_findsItemsInOrderAdded() {
+        IndexedItemList list = new IndexedItemList();
+        List<Item> items = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            Item item = item(i);
+            items.add(item);
+            list.add(item);
+        }
+
+        assertEquals(items, list);
+        for (int i = 0; i < items.size(); i++) {
+            assertSame(items.get(i), list.get(i));
+            assertEquals(i, list.positionOf(i + 1));
+            assertSame(items.get(i), list.getById(i + 1));
+        }
+    }
+
+    @Test
+    public void remove_emptiesSlotAndShiftsPositions() {
+        IndexedItemList list = new IndexedItemList(Arrays.asList(item(1), item(2), item(3), item(4)));
+
+        assertTrue(list.remove(list.getById(2)));
+
+        assertEquals(3, list.size());
+        assertEquals(-1, list.positionOf(2));
+        assertNull(list.getById(2));
+        assertEquals(1, list.positionOf(3));
+        assertEquals(2, list.positionOf(4));
+        assertEquals(3, list.get(1).getId());
+        assertFalse(list.remove(item(2)));
+    }
+
+    @Test
+    public void remove_rebuildsOnceMostSlotsAreEmpty() {
+        IndexedItemList list = new IndexedItemList();
+        List<Item> expected = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            Item item = item(i);
+            list.add(item);
+            expected.add(item);
+        }
+        for (int i = 1; i <= 1000; i += 3) {
+            Item item = list.getById(i);
+            assertTrue(list.remove(item));
+            expected.remove(item);
+        }
+        for (int i = 2; i <= 1000; i += 3) {
+            Item item = list.getById(i);
+            assertTrue(list.remove(item));
+            expected.remove(item);
+        }
+
+        assertListsMatch(expected, list);
+    }
+
+    @Test
+    public void get_rejectsPositionsOutOfRange() {
+        IndexedItemList list = new IndexedItemList(Arrays.asList(item(1), item(2)));
+        list.remove(0);
+        for (int index : new int[] {-1, 1, 2}) {
+            try {
+                list.get(index);
+                fail("Expected an IndexOutOfBoundsException for " + index);
+            } catch (IndexOutOfBoundsException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void snapshot_isReusedUntilChangedAndNeverChanges() {
+        IndexedItemList list = new IndexedItemList(Arrays.asList(item(1), item(2), item(3)));
+        List<Item> first = list.snapshot();
+
+        assertSame(first, list.snapshot());
+        list.remove(1);
+        List<Item> second = list.snapshot();
+
+        assertNotSame(first, second);
+        assertEquals(3, first.size());
+        assertEquals(Arrays.asList(list.get(0), list.get(1)), second);
+        try {
+            second.add(item(4));
+            fail("Expected an UnsupportedOperationException");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void set_reindexesReplacedItem() {
+        IndexedItemList list = new IndexedItemList(Arrays.asList(item(1), item(2), item(3)));
+        Item replacement = item(7);
+
+        assertEquals(2, list.set(1, replacement).getId());
+
+        assertEquals(-1, list.positionOf(2));
+        assertEquals(1, list.positionOf(7));
+        assertSame(replacement, list.snapshot().get(1));
+    }
+
+    @Test
+    public void indexOf_searchesForItemsNotStoredYet() {
+        Item unsaved = item(0);
+        IndexedItemList list = new IndexedItemList(Arrays.asList(item(1), unsaved, item(3)));
+
+        assertEquals(1, list.indexOf(unsaved));
+        assertEquals(2, list.positionOf(3));
+        assertEquals(2, list.indexOf(list.getById(3)));
+    }
+
+    @Test
+    public void randomChanges_matchArrayList() {
+        Random random = new Random(42);
+        IndexedItemList list = new IndexedItemList();
+        List<Item> expected = new ArrayList<>();
+        long nextId = 1;
+        for (int step = 0; step < 20000; step++) {
+            int op = random.nextInt(10);
+            if (op < 4 || expected.isEmpty()) {
+                Item item = item(nextId++);
+                list.add(item);
+                expected.add(item);
+            } else if (op < 7) {
+                int index = random.nextInt(expected.size());
+                assertSame(expected.remove(index), list.remove(index));
+            } else if (op < 8) {
+                Item item = expected.get(random.nextInt(expected.size()));
+                assertEquals(expected.indexOf(item), list.positionOf(item.getId()));
+                expected.remove(item);
+                assertTrue(list.remove(item));
+            } else if (op < 9) {
+                int index = random.nextInt(expected.size() + 1);
+                Item item = item(nextId++);
+                list.add(index, item);
+                expected.add(index, item);
+            } else {
+                assertEquals(expected, list.snapshot());
+            }
+            if (step % 500 == 0)
+                assertListsMatch(expected, list);
+            if (step % 5000 == 4999) {
+                list.clear();
+                expected.clear();
+            }
+        }
+        assertListsMatch(expected, list);
+    }
+
+    /**
+     * Assert that every position and every database ID of the list finds the expected Item.
+     */
+    private static void assertListsMatch(List<Item> expected, IndexedItemList list) {
+        assertEquals(expected.size(), list.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Item item = expected.get(i);
+            assertSame(item, list.get(i));
+            assertEquals(i, list.positionOf(item.getId()));
+            assertSame(item, list.getById(item.getId()));
+        }
+        assertEquals(expected, list.snapshot());
+    }
+
+    private static Item item(long id) {
+        Item item = new Item("Item " + id, 1.0, 1.0, 0.0, "http://shop.example/" + id, 0);
+        item.setId(id);
+        return item;
+    }
+}
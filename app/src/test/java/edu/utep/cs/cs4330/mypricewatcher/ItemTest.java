@@ -0,0 +1,65 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of how an Item tracks whether it has changes not written to the database.
+ */
+public class ItemTest {
+    private static final int ROUNDS = 200000;
+
+    @Test
+    public void applySavedEdit_keepsSavedItemSaved() {
+        Item item = item();
+
+        item.applySavedEdit("Renamed", "http://shop.example/renamed");
+
+        assertEquals("Renamed", item.getName());
+        assertEquals("http://shop.example/renamed", item.getURL());
+        assertFalse(item.isDirty());
+    }
+
+    @Test
+    public void applySavedEdit_keepsUnsavedPriceDirty() {
+        Item item = item();
+        item.setCurrPrice(2.0);
+
+        item.applySavedEdit("Renamed", "http://shop.example/renamed");
+
+        assertTrue(item.isDirty());
+    }
+
+    @Test
+    public void applySavedEdit_neverMarksConcurrentPriceChangeSaved() throws Exception {
+        Item item = item();
+        AtomicInteger started = new AtomicInteger(-1);     /* Round the refresher may start */
+        AtomicInteger done = new AtomicInteger(-1);        /* Round the refresher has finished */
+        Thread refresher = new Thread(() -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                while (started.get() < round)
+                    Thread.yield();
+                item.setCurrPrice(2.0 + round);
+                done.set(round);
+            }
+        });
+        refresher.setDaemon(true);
+        refresher.start();
+        for (int round = 0; round < ROUNDS; round++) {
+            item.markSaved(item.getVersion());
+            started.set(round);
+            item.applySavedEdit("Item " + round, "http://shop.example/" + round);
+            while (done.get() < round)
+                Thread.yield();
+            assertTrue("price fetched during the edit in round " + round + " was marked saved", item.isDirty());
+        }
+        refresher.join();
+    }
+
+    private static Item item() {
+        return new Item("Item", 1.0, 1.0, 0.0, "http://shop.example/item", 0);
+    }
+}
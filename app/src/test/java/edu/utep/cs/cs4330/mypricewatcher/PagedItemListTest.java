@@ -0,0 +1,205 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the PagedItemList, over a database kept in memory in place of SQLite.
+ */
+public class PagedItemListTest {
+    private static final int PAGE_SIZE = 20;
+
+    @Test
+    public void get_readsStoredItemsInOrder() throws Exception {
+        FakeDatabase db = new FakeDatabase(PAGE_SIZE * 5 + 3);
+        PagedItemList list = loaded(db);
+
+        assertEquals(db.items().size(), list.size());
+        for (int i = list.size() - 1; i >= 0; i--)
+            assertSame(db.items().get(i), list.get(i));
+    }
+
+    @Test
+    public void get_afterRemoval_doesNotWalkThePagesBeforeIt() throws Exception {
+        FakeDatabase db = new FakeDatabase(PAGE_SIZE * 50);
+        PagedItemList list = loaded(db);
+        list.get(PAGE_SIZE * 45);
+        Item expected = db.items().get(PAGE_SIZE * 45 + 1);
+
+        assertTrue(list.delete(list.get(10)));
+        int lookups = db.idLookups.get();
+
+        assertSame(expected, list.get(PAGE_SIZE * 45));
+        assertEquals(lookups, db.idLookups.get());
+        assertEquals(1, db.lastSkip);
+    }
+
+    @Test
+    public void get_matchesStoredItems_whileItemsAreAddedAndRemoved() throws Exception {
+        FakeDatabase db = new FakeDatabase(500);
+        PagedItemList list = loaded(db);
+        Random random = new Random(42);
+        for (int step = 0; step < 5000; step++) {
+            List<Item> stored = db.items();
+            int op = random.nextInt(10);
+            if (op < 2 && !stored.isEmpty()) {
+                assertTrue(list.delete(stored.get(random.nextInt(stored.size()))));
+            } else if (op < 3) {
+                list.add(db.store());
+            } else if (!stored.isEmpty()) {
+                int index = random.nextInt(stored.size());
+                assertSame("step " + step, stored.get(index), list.get(index));
+            }
+            assertEquals(db.items().size(), list.size());
+        }
+    }
+
+    @Test
+    public void snapshot_keepsItsItems_acrossRemovals() throws Exception {
+        FakeDatabase db = new FakeDatabase(PAGE_SIZE * 4);
+        PagedItemList list = loaded(db);
+        List<Item> snapshot = list.snapshot();
+        List<Item> expected = db.items();
+
+        list.delete(list.get(0));
+        list.delete(list.get(PAGE_SIZE * 2));
+        list.delete(list.get(list.size() - 1));
+        list.add(db.store());
+
+        assertEquals(expected.size(), snapshot.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertSame("position " + i, expected.get(i), snapshot.get(i));
+    }
+
+    @Test
+    public void snapshot_showsTheListAsItIsNow_afterTooManyRemovals() throws Exception {
+        FakeDatabase db = new FakeDatabase(PAGE_SIZE * 5);
+        PagedItemList list = loaded(db);
+        List<Item> snapshot = list.snapshot();
+        int size = snapshot.size();
+
+        for (int i = 0; i < 65; i++)
+            list.delete(list.get(0));
+
+        assertEquals(size, snapshot.size());
+        List<Item> stored = db.items();
+        for (int i = 0; i < stored.size(); i++)
+            assertSame(stored.get(i), snapshot.get(i));
+        assertNull(((LazyItemList) snapshot).getIfLoaded(stored.size()));
+        try {
+            snapshot.get(stored.size());
+            fail("an Item past the list's end was returned");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void get_readsPageAgain_whenItemsChangeWhileItIsRead() throws Exception {
+        FakeDatabase db = new FakeDatabase(PAGE_SIZE + 2);
+        PagedItemList list = loaded(db);
+        Item added = db.store();
+        db.duringRead = () -> list.add(added);
+        int reads = db.pageReads.get();
+
+        list.get(PAGE_SIZE);
+
+        assertEquals(reads + 2, db.pageReads.get());
+        assertSame(added, list.get(PAGE_SIZE + 2));
+    }
+
+    /**
+     * Returns a list over the database, once it has counted the stored Items.
+     */
+    private static PagedItemList loaded(FakeDatabase db) throws InterruptedException {
+        PagedItemList list = new PagedItemList(db, PAGE_SIZE, 3);
+        CountDownLatch loaded = new CountDownLatch(1);
+        list.load(Runnable::run, count -> loaded.countDown());
+        assertTrue(loaded.await(10, TimeUnit.SECONDS));
+        return list;
+    }
+
+    /**
+     * A database holding its Items in memory, answering the queries a PagedItemList makes.
+     */
+    private static class FakeDatabase extends DBHandler {
+        private final TreeMap<Long, Item> rows = new TreeMap<>();
+        private final AtomicInteger idLookups = new AtomicInteger();     /* Calls to getItemIdAfter() */
+        private final AtomicInteger pageReads = new AtomicInteger();     /* Calls to getItemsAfter() */
+        private volatile int lastSkip;                                  /* Items skipped by the last page read */
+        private volatile Runnable duringRead;                           /* Run once after the next page read */
+        private long nextId = 1;
+
+        private FakeDatabase(int count) {
+            super(null, "fake.db");
+            for (int i = 0; i < count; i++)
+                store();
+        }
+
+        private synchronized Item store() {
+            long id = nextId++;
+            Item item = new Item("Item " + id, 1.0, 1.0, 0.0, "http://shop.example/" + id, 0);
+            item.setId(id);
+            rows.put(id, item);
+            return item;
+        }
+
+        private synchronized List<Item> items() {
+            return new ArrayList<>(rows.values());
+        }
+
+        @Override
+        public List<Item> getItemsAfter(long afterId, int skip, int limit) {
+            List<Item> page = new ArrayList<>();
+            lastSkip = skip;
+            synchronized (this) {
+                for (Item item : rows.tailMap(afterId, false).values()) {
+                    if (skip-- > 0)
+                        continue;
+                    if (page.size() == limit)
+                        break;
+                    page.add(item);
+                }
+            }
+            pageReads.incrementAndGet();
+            Runnable r = duringRead;
+            duringRead = null;
+            if (r != null)
+                r.run();
+            return page;
+        }
+
+        @Override
+        public synchronized long getItemIdAfter(long afterId, int offset) {
+            idLookups.incrementAndGet();
+            for (long id : rows.tailMap(afterId, false).keySet())
+                if (offset-- == 0)
+                    return id;
+            return -1;
+        }
+
+        @Override
+        public synchronized int getItemCount() {
+            return rows.size();
+        }
+
+        @Override
+        public synchronized int getItemPosition(long id) {
+            return rows.headMap(id, false).size();
+        }
+
+        @Override
+        public synchronized void deleteItem(Item item) {
+            rows.remove(item.getId());
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the PriceFinderClient and its HttpTransport, run against a stub of the Web
+ * service listening on the loopback interface. The stub answers batch queries (POST) and single
+ * queries (GET) from a table of prices, and can be told to answer with an error code instead.
+ */
+public class PriceFinderClientTest {
+    private static final String USER_PATH = "/query/dgnajera/cs.utep.edu";
+
+    private HttpServer server;
+    private final Map<String, String> prices = new ConcurrentHashMap<>();   /* Response line of each site */
+    private final Set<Integer> clientPorts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    private final AtomicInteger batchRequests = new AtomicInteger();
+    private final AtomicInteger singleRequests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private volatile int batchStatus = 200;     /* Response code of batch queries */
+    private volatile int singleStatus = 200;    /* Response code of single queries */
+    private volatile String etag;               /* ETag sent with single responses, or null */
+    private final CountDownLatch slowArrived = new CountDownLatch(1);   /* Counted down once "slow" is asked for */
+    private final CountDownLatch slowReleased = new CountDownLatch(1);  /* Lets the answer for "slow" be sent */
+    private HttpTransport transport;
+    private ValidatorStore validators;
+    private PriceFinderClient client;
+
+    @Before
+    public void startServer() throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");      /* No Nagle delay between headers and body */
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        transport = new HttpTransport();
+        transport.setRateLimit(1000, 1000);     /* Measure round trips, not the pacing of requests */
+        validators = new ValidatorStore();
+        client = new PriceFinderClient(transport, validators,
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/query");
+    }
+
+    @After
+    public void stopServer() {
+        slowReleased.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void fetchPrices_sendsEverySiteInOneRequest() {
+        prices.put("a", "1.50");
+        prices.put("b", "Error");
+        prices.put("c", "3");
+
+        Map<String, Double> found = client.fetchPrices(Arrays.asList("a", "b", "c", "a"));
+
+        assertEquals(2, found.size());
+        assertEquals(1.50, found.get("a"), 0.0);
+        assertEquals(3.0, found.get("c"), 0.0);
+        assertFalse(found.containsKey("b"));
+        assertEquals(1, batchRequests.get());
+        assertEquals(0, singleRequests.get());
+    }
+
+    @Test
+    public void fetchPrices_fallsBackToSingleQueries_whenBatchNotSupported() throws IOException {
+        for (int code : new int[] {404, 405, 501}) {
+            stopServer();
+            startServer();
+            batchRequests.set(0);
+            singleRequests.set(0);
+            batchStatus = code;
+            prices.put("a", "1.25");
+            prices.put("b", "2.50");
+
+            Map<String, Double> found = client.fetchPrices(Arrays.asList("a", "b"));
+            assertEquals("fallback after " + code, 2, found.size());
+            assertEquals(1.25, found.get("a"), 0.0);
+            assertEquals(2.50, found.get("b"), 0.0);
+            assertEquals(1, batchRequests.get());
+            assertEquals(2, singleRequests.get());
+
+            /* Once the batch query is known to be unsupported, it is not tried again */
+            client.fetchPrices(Arrays.asList("a", "b"));
+            assertEquals(1, batchRequests.get());
+            assertEquals(4, singleRequests.get());
+        }
+    }
+
+    @Test
+    public void fetchPrices_fallsBackToSingleQueries_whenResponseDoesNotMatch() {
+        prices.put("a", "1.00");
+        prices.put("b", "2.00");
+        prices.put("batch", "9.99");    /* A single line for a batch of two */
+
+        Map<String, Double> found = client.fetchPrices(Arrays.asList("a", "b"));
+
+        assertEquals(2, found.size());
+        assertEquals(1, batchRequests.get());
+        assertEquals(2, singleRequests.get());
+    }
+
+    @Test
+    public void fetchPrices_throwsServiceUnavailable_onServerError() {
+        prices.put("a", "1.00");
+        prices.put("b", "2.00");
+        for (int code : new int[] {429, 500, 503}) {
+            batchStatus = code;
+            try {
+                client.fetchPrices(Arrays.asList("a", "b"));
+                fail("Expected a ServiceUnavailableException for " + code);
+            } catch (ServiceUnavailableException expected) {
+            }
+        }
+        assertEquals(0, singleRequests.get());
+    }
+
+    @Test
+    public void fetchPrice_throwsServiceUnavailable_onServerError() {
+        prices.put("a", "1.00");
+        for (int code : new int[] {429, 500, 503}) {
+            singleStatus = code;
+            try {
+                client.fetchPrice("a");
+                fail("Expected a ServiceUnavailableException for " + code);
+            } catch (ServiceUnavailableException expected) {
+            }
+        }
+        assertEquals("pushed back requests halve the limit", 1, concurrencyLimit());
+    }
+
+    @Test
+    public void fetchPrice_throwsPriceNotFound_onErrorLine() {
+        prices.put("a", "Error");
+        try {
+            client.fetchPrice("a");
+            fail("Expected a PriceNotFoundException");
+        } catch (ServiceUnavailableException e) {
+            fail("A price that was not found is not a service failure");
+        } catch (PriceNotFoundException expected) {
+        }
+    }
+
+    @Test
+    public void fetchPrice_reusesKeepAliveConnection() {
+        prices.put("a", "4.20");
+        for (int i = 0; i < 5; i++)
+            assertEquals(4.20, client.fetchPrice("a"), 0.0);
+        assertEquals(5, singleRequests.get());
+        assertEquals(5, transport.getRequestCount());
+        assertEquals("requests came over one connection", 1, clientPorts.size());
+    }
+
+    @Test
+    public void fetchPrice_reusesPrice_whenNotModified() {
+        prices.put("a", "7.77");
+        etag = "\"v1\"";
+
+        assertEquals(7.77, client.fetchPrice("a"), 0.0);
+        prices.put("a", "0.01");        /* Not sent, since the stub answers 304 to a matching ETag */
+        assertEquals(7.77, client.fetchPrice("a"), 0.0);
+
+        assertEquals(1, notModified.get());
+        assertEquals(1, validators.getNotModifiedCount());
+    }
+
+    @Test
+    public void fetchPriceAsync_cancelled_isNotCountedAsServiceFailure() throws Exception {
+        prices.put("slow", "1.00");
+        CircuitBreaker breaker = new CircuitBreaker(1, 60 * 1000);
+        ResilientPriceFinder resilient = new ResilientPriceFinder(client, breaker, 3, 0, 0);
+        AtomicReference<RuntimeException> thrown = new AtomicReference<>();
+        CountDownLatch finished = new CountDownLatch(1);
+        PriceFinder recording = new PriceFinder() {
+            @Override
+            public double fetchPrice(String url) {
+                try {
+                    return resilient.fetchPrice(url);
+                } catch (RuntimeException e) {
+                    thrown.set(e);
+                    throw e;
+                } finally {
+                    finished.countDown();
+                }
+            }
+
+            @Override
+            protected void abort(Thread worker) {
+                resilient.abort(worker);
+            }
+        };
+
+        PriceRequest request = recording.fetchPriceAsync("slow", null);
+        assertTrue(slowArrived.await(5, TimeUnit.SECONDS));
+        assertTrue(request.cancel(true));
+        assertTrue("aborted fetch ended before its read timeout", finished.await(5, TimeUnit.SECONDS));
+
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof FetchCancelledException);
+        assertEquals("a cancelled request does not halve the limit", 2, concurrencyLimit());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getConsecutiveFailures());
+        assertEquals(0, resilient.getRetryCount());
+    }
+
+    @Test
+    public void batchQuery_makesFewerRoundTripsThanSingleQueries() throws IOException {
+        List<String> sites = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sites.add("item-" + i);
+            prices.put("item-" + i, i + ".99");
+        }
+
+        assertEquals(50, client.fetchPrices(sites).size());
+        long batchCount = transport.getRequestCount();
+
+        stopServer();
+        startServer();
+        batchStatus = 404;
+        client.fetchPrices(Arrays.asList("item-0", "item-1"));      /* Learn that batches are unsupported */
+        long before = transport.getRequestCount();
+        assertEquals(50, client.fetchPrices(sites).size());
+        long singleCount = transport.getRequestCount() - before;
+
+        assertEquals(1, batchCount);
+        assertEquals(50, singleCount);
+    }
+
+    /**
+     * Returns the transport's current concurrency limit for the stub server.
+     */
+    private int concurrencyLimit() {
+        return transport.getConcurrencyLimit("127.0.0.1", server.getAddress().getPort());
+    }
+
+    /**
+     * Answer a batch (POST) or single (GET) query of the stub Web service.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        String path = exchange.getRequestURI().getPath();
+        byte[] request = readAll(exchange.getRequestBody());
+        if (exchange.getRequestMethod().equals("POST") && path.equals(USER_PATH)) {
+            batchRequests.incrementAndGet();
+            if (batchStatus != 200) {
+                respond(exchange, batchStatus, "");
+                return;
+            }
+            if (prices.containsKey("batch")) {
+                respond(exchange, 200, prices.get("batch") + "\n");
+                return;
+            }
+            StringBuilder body = new StringBuilder();
+            for (String site : new String(request, "UTF-8").split("\n"))
+                body.append(prices.containsKey(site) ? prices.get(site) : "Error").append('\n');
+            respond(exchange, 200, body.toString());
+        } else if (exchange.getRequestMethod().equals("GET") && path.startsWith(USER_PATH + "/")) {
+            singleRequests.incrementAndGet();
+            String site = path.substring(USER_PATH.length() + 1);
+            if (site.equals("slow")) {
+                slowArrived.countDown();
+                try {
+                    slowReleased.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            String tag = etag;
+            if (singleStatus != 200) {
+                respond(exchange, singleStatus, "");
+            } else if (tag != null && tag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                if (tag != null)
+                    exchange.getResponseHeaders().set("ETag", tag);
+                respond(exchange, 200, prices.containsKey(site) ? prices.get(site) : "Error");
+            }
+        } else {
+            respond(exchange, 400, "");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        }
+        exchange.close();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) != -1)
+            out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,134 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the PriceFormatter, checked against the DecimalFormat patterns it replaces.
+ */
+public class PriceFormatterTest {
+    private static final DecimalFormatSymbols US = DecimalFormatSymbols.getInstance(Locale.US);
+
+    @Test
+    public void formatCents_rendersDollarsWithSeparators() {
+        assertEquals("$0.00", PriceFormatter.formatCents(0));
+        assertEquals("$0.05", PriceFormatter.formatCents(5));
+        assertEquals("$1,234.50", PriceFormatter.formatCents(123450));
+        assertEquals("-$999.99", PriceFormatter.formatCents(-99999));
+        assertEquals("$1,000,000.00", PriceFormatter.formatCents(100000000));
+    }
+
+    @Test
+    public void formatCents_rendersLongestPrices() {
+        assertEquals("$92,233,720,368,547,758.07", PriceFormatter.formatCents(Long.MAX_VALUE));
+        assertEquals("-$92,233,720,368,547,758.08", PriceFormatter.formatCents(Long.MIN_VALUE));
+        assertEquals(PriceFormatter.MAX_PRICE_LENGTH, PriceFormatter.formatCents(Long.MIN_VALUE).length());
+    }
+
+    @Test
+    public void formatCents_matchesDecimalFormat_forRandomPrices() {
+        DecimalFormat format = new DecimalFormat("$#,##0.00", US);
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            long cents = random.nextLong() >> random.nextInt(64);
+            assertEquals(format.format(BigDecimal.valueOf(cents, 2)), PriceFormatter.formatCents(cents));
+        }
+    }
+
+    @Test
+    public void formatCents_writesAtOffset() {
+        char[] out = new char[PriceFormatter.MAX_PRICE_LENGTH + 3];
+        int length = PriceFormatter.formatCents(123450, out, 3);
+
+        assertEquals("$1,234.50", new String(out, 3, length));
+    }
+
+    @Test
+    public void formatPercChange_leavesOutTrailingZeros() {
+        assertEquals("0%", PriceFormatter.formatPercChange(0.0));
+        assertEquals("5%", PriceFormatter.formatPercChange(0.05));
+        assertEquals("5.2%", PriceFormatter.formatPercChange(0.052));
+        assertEquals("5.25%", PriceFormatter.formatPercChange(0.0525));
+        assertEquals("- 12%", PriceFormatter.formatPercChange(-0.12));
+        assertEquals("150%", PriceFormatter.formatPercChange(1.5));
+    }
+
+    @Test
+    public void formatPercChange_matchesDecimalFormat_forRandomChanges() {
+        DecimalFormat format = new DecimalFormat("#0.##%;- #0.##%", US);
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            double fraction = (random.nextInt(2000001) - 1000000) / 10000.0;
+            assertEquals(format.format(fraction), PriceFormatter.formatPercChange(fraction));
+        }
+    }
+
+    @Test
+    public void formatPercChange_rendersNaNAndInfinity() {
+        assertEquals("NaN", PriceFormatter.formatPercChange(Double.NaN));
+        assertEquals("\u221E%", PriceFormatter.formatPercChange(Double.POSITIVE_INFINITY));
+        assertEquals("- \u221E%", PriceFormatter.formatPercChange(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    public void formatPercChange_rendersChangesTooLargeForBasisPointsAsInfinity() {
+        double largest = largestCountableChange();
+
+        assertNotEquals("\u221E%", PriceFormatter.formatPercChange(largest));
+        assertEquals("\u221E%", PriceFormatter.formatPercChange(Math.nextUp(largest)));
+        assertNotEquals("- \u221E%", PriceFormatter.formatPercChange(-largest));
+        assertEquals("- \u221E%", PriceFormatter.formatPercChange(-Double.MAX_VALUE));
+        assertEquals("\u221E%", PriceFormatter.formatPercChange(1e300));
+    }
+
+    @Test
+    public void toBasisPoints_roundsHalfToEven() {
+        assertEquals(525, PriceFormatter.toBasisPoints(0.0525));
+        assertEquals(2, PriceFormatter.toBasisPoints(0.00025));
+        assertEquals(4, PriceFormatter.toBasisPoints(0.00035));
+        assertEquals(-2, PriceFormatter.toBasisPoints(-0.00025));
+    }
+
+    @Test
+    public void toBasisPoints_clampsAtLongRange() {
+        double largest = largestCountableChange();
+
+        assertEquals((long) (largest * 10000), PriceFormatter.toBasisPoints(largest));
+        assertTrue(PriceFormatter.toBasisPoints(largest) < Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, PriceFormatter.toBasisPoints(Math.nextUp(largest)));
+        assertEquals(Long.MAX_VALUE, PriceFormatter.toBasisPoints(Double.POSITIVE_INFINITY));
+        assertEquals(Long.MIN_VALUE, PriceFormatter.toBasisPoints(-Double.MAX_VALUE));
+        assertEquals(Long.MIN_VALUE, PriceFormatter.toBasisPoints(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toBasisPoints_rejectsNaN() {
+        PriceFormatter.toBasisPoints(Double.NaN);
+    }
+
+    @Test
+    public void formatBasisPoints_rendersLongestChanges() {
+        char[] out = new char[PriceFormatter.MAX_PERC_LENGTH];
+
+        assertEquals("- 92233720368547758.08%", new String(out, 0, PriceFormatter.formatBasisPoints(Long.MIN_VALUE, out, 0)));
+        assertEquals(PriceFormatter.MAX_PERC_LENGTH, PriceFormatter.formatBasisPoints(Long.MIN_VALUE, out, 0));
+        assertEquals("92233720368547758.07%", new String(out, 0, PriceFormatter.formatBasisPoints(Long.MAX_VALUE, out, 0)));
+    }
+
+    /**
+     * Returns the largest percentage change that still counts in basis points as a long.
+     */
+    private static double largestCountableChange() {
+        double fraction = 0x1p63 / 10000;
+        while (Math.rint(fraction * 10000) >= 0x1p63)
+            fraction = Math.nextDown(fraction);
+        return fraction;
+    }
+}
@@ -0,0 +1,83 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the PriceHistoryWriter queueing price observations for the database.
+ */
+public class PriceHistoryWriterTest {
+    private static final long ITEM_ID = 987654;
+
+    private final PriceHistoryWriter writer = PriceHistoryWriter.getInstance();
+
+    @After
+    public void tearDown() {
+        writer.setDatabase(null);
+    }
+
+    @Test
+    public void write_retriesBatch_whenDatabaseFails() throws InterruptedException {
+        FailingDatabase db = new FailingDatabase(1);
+        writer.setDatabase(db);
+        long dropped = writer.getDroppedCount();
+
+        writer.record(ITEM_ID, 100, 1000);
+        writer.record(ITEM_ID, 200, 2000);
+        writer.flush();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (db.written().size() < 2 && System.nanoTime() < deadline)
+            Thread.sleep(20);
+        List<PricePoint> written = db.written();
+        assertEquals(2, written.size());
+        assertEquals(100, written.get(0).getPriceCents());
+        assertEquals(200, written.get(1).getPriceCents());
+        assertEquals(1, db.failures.get());
+        assertEquals(dropped, writer.getDroppedCount());
+    }
+
+    /**
+     * A database failing to append the observations of ITEM_ID a number of times, and then keeping
+     * them in memory.
+     */
+    private static class FailingDatabase extends DBHandler {
+        private final AtomicInteger failures = new AtomicInteger();     /* Appends failed so far */
+        private final int toFail;                                       /* Appends to fail */
+        private final List<PricePoint> points = new ArrayList<>();      /* Observations of ITEM_ID appended */
+
+        private FailingDatabase(int toFail) {
+            super(null, "fake.db");
+            this.toFail = toFail;
+        }
+
+        private synchronized List<PricePoint> written() {
+            return new ArrayList<>(points);
+        }
+
+        @Override
+        public synchronized void appendPriceHistory(Collection<PricePoint> batch) {
+            List<PricePoint> observed = new ArrayList<>();
+            for (PricePoint point : batch)
+                if (point.getItemId() == ITEM_ID)
+                    observed.add(point);
+            if (!observed.isEmpty() && failures.get() < toFail) {
+                failures.incrementAndGet();
+                throw new IllegalStateException("database is locked");
+            }
+            points.addAll(observed);
+        }
+
+        @Override
+        public void compactPriceHistory(long now, long rawMillis, long hourlyMillis, long dailyMillis) {
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the PriceParser, checked against Double.parseDouble.
+ */
+public class PriceParserTest {
+    private static final int MAX = PriceParser.DEFAULT_MAX_BODY_BYTES;
+
+    @Test
+    public void parsePrice_readsPlainDecimals() throws IOException {
+        assertEquals(12.5, parse("12.50"), 0.0);
+        assertEquals(12.5, parse("12.50\n"), 0.0);
+        assertEquals(0.99, parse("0.99"), 0.0);
+        assertEquals(-3.1, parse("-3.10"), 0.0);
+        assertEquals(4.0, parse("+4"), 0.0);
+        assertEquals(7.0, parse("7."), 0.0);
+        assertEquals(0.5, parse(".5"), 0.0);
+    }
+
+    @Test
+    public void parsePrice_skipsBlankLinesAndSurroundingWhitespace() throws IOException {
+        assertEquals(7.25, parse("\n  \r\n \t7.25 \r\nignored"), 0.0);
+    }
+
+    @Test
+    public void parsePrice_acceptsWhatParseDoubleAccepts() throws IOException {
+        assertEquals(1000.0, parse("1e3"), 0.0);
+        assertEquals(1234.5, parse("1234.5d"), 0.0);
+        assertEquals(12345678901234567890.0, parse("12345678901234567890"), 0.0);
+    }
+
+    @Test
+    public void parsePrice_matchesParseDouble_forRandomDecimals() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder s = new StringBuilder();
+            if (random.nextInt(10) == 0)
+                s.append('-');
+            s.append(random.nextInt(1000000));
+            int decimals = random.nextInt(10);
+            if (decimals > 0) {
+                s.append('.');
+                for (int d = 0; d < decimals; d++)
+                    s.append((char) ('0' + random.nextInt(10)));
+            }
+            String text = s.toString();
+            assertEquals(text, Double.doubleToLongBits(Double.parseDouble(text)), Double.doubleToLongBits(parse(text)));
+        }
+    }
+
+    @Test
+    public void parsePrice_rejectsLinesWithoutPrice() throws IOException {
+        for (String body : new String[] {"Error", "", "\n\n  \n", "12.5.0", "-", "1,234.50",
+                "123456789012345678901234567890123"}) {
+            try {
+                parse(body);
+                fail("Expected a NumberFormatException for \"" + body + "\"");
+            } catch (NumberFormatException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void parsePrice_rejectsBodyLargerThanAllowed() throws IOException {
+        char[] spaces = new char[100];
+        Arrays.fill(spaces, ' ');
+        String body = new String(spaces) + "1.00";
+        try {
+            PriceParser.parsePrice(stream(body), 64);
+            fail("Expected a NumberFormatException");
+        } catch (NumberFormatException expected) {
+        }
+        assertEquals(1.0, PriceParser.parsePrice(stream(body), 104), 0.0);
+    }
+
+    @Test
+    public void parsePrice_leavesRestOfBodyUnread() throws IOException {
+        byte[] body = new byte[4096];
+        Arrays.fill(body, (byte) 'x');
+        body[0] = '9';
+        body[1] = '\n';
+        InputStream in = new ByteArrayInputStream(body);
+
+        assertEquals(9.0, PriceParser.parsePrice(in, MAX), 0.0);
+        assertTrue("only the first buffer was read", in.available() >= body.length - 512);
+    }
+
+    @Test
+    public void parsePrices_readsOneValuePerLine() throws IOException {
+        double[] prices = PriceParser.parsePrices(stream("1.50\nError\n\n 3 \r\n"), 3, MAX);
+
+        assertEquals(3, prices.length);
+        assertEquals(1.5, prices[0], 0.0);
+        assertTrue(Double.isNaN(prices[1]));
+        assertEquals(3.0, prices[2], 0.0);
+    }
+
+    @Test
+    public void parsePrices_returnsNull_whenLineCountDoesNotMatch() throws IOException {
+        assertNull(PriceParser.parsePrices(stream("1\n2\n"), 3, MAX));
+        assertNull(PriceParser.parsePrices(stream("1\n2\n3\n4\n"), 3, MAX));
+        assertNull(PriceParser.parsePrices(stream(""), 1, MAX));
+    }
+
+    @Test
+    public void parsePrices_returnsNull_whenBodyLargerThanAllowed() throws IOException {
+        assertNull(PriceParser.parsePrices(stream("1.00\n2.00\n3.00\n"), 3, 8));
+        assertNotNull(PriceParser.parsePrices(stream("1.00\n2.00\n3.00\n"), 3, 15));
+    }
+
+    @Test
+    public void parsePrices_treatsOverlongLineAsNoPrice() throws IOException {
+        double[] prices = PriceParser.parsePrices(stream("1\n" + new String(new char[40]).replace('\0', '7') + "\n2\n"), 3, MAX);
+
+        assertEquals(1.0, prices[0], 0.0);
+        assertTrue(Double.isNaN(prices[1]));
+        assertEquals(2.0, prices[2], 0.0);
+    }
+
+    private static double parse(String body) throws IOException {
+        return PriceParser.parsePrice(stream(body), MAX);
+    }
+
+    private static InputStream stream(String body) throws IOException {
+        return new ByteArrayInputStream(body.getBytes("UTF-8"));
+    }
+}
@@ -0,0 +1,37 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the percentage change a PriceSnapshot works out for a new price.
+ */
+public class PriceSnapshotTest {
+
+    @Test
+    public void withCurrPrice_recalculatesChangeFromInitialPrice() {
+        PriceSnapshot next = new PriceSnapshot(2000, 2000, 0.0, 0).withCurrPrice(2500, 7);
+
+        assertEquals(2000, next.getInitPriceCents());
+        assertEquals(2500, next.getCurrPriceCents());
+        assertEquals(0.25, next.getPercChange(), 0.0);
+        assertEquals(7, next.getFetchedAt());
+    }
+
+    @Test
+    public void withCurrPrice_takesFirstPriceAsInitialPrice() {
+        PriceSnapshot next = new PriceSnapshot(0, 0, 0.0, 0).withCurrPrice(1999, 7);
+
+        assertEquals(1999, next.getInitPriceCents());
+        assertEquals(0.0, next.getPercChange(), 0.0);
+    }
+
+    @Test
+    public void withCurrPrice_hasNoChange_whenPriceIsStillZero() {
+        PriceSnapshot next = new PriceSnapshot(0, 0, 0.0, 0).withCurrPrice(0, 7);
+
+        assertEquals(0, next.getInitPriceCents());
+        assertEquals(0.0, next.getPercChange(), 0.0);
+    }
+}
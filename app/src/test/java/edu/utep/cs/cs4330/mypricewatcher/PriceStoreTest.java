@@ -0,0 +1,44 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the percentage changes a PriceStore works out from its rows.
+ */
+public class PriceStoreTest {
+
+    @Test
+    public void getPercChange_recalculatesChangeFromInitialPrice() {
+        PriceStore store = new PriceStore();
+        store.add(1, "a", 2000, 1500, "http://shop.example/a", 0);
+
+        assertEquals(-0.25, store.getPercChange(0), 0.0);
+        assertEquals(-0.25, store.get(0).getPercChangeValue(), 0.0);
+    }
+
+    @Test
+    public void getPercChange_isZero_withoutInitialPrice() {
+        PriceStore store = new PriceStore();
+        store.add(1, "a", 0, 0, "http://shop.example/a", 0);
+        store.add(2, "b", 0, 1999, "http://shop.example/b", 0);
+
+        assertEquals(0.0, store.getPercChange(0), 0.0);
+        assertEquals(0.0, store.getPercChange(1), 0.0);
+        assertEquals(0.0, store.get(1).getPercChangeValue(), 0.0);
+    }
+
+    @Test
+    public void getPercChange_agreesWithSortAndAverage() {
+        PriceStore store = new PriceStore();
+        store.add(1, "up", 1000, 1100, "u", 0);
+        store.add(2, "none", 0, 500, "n", 0);
+        store.add(3, "down", 1000, 900, "d", 0);
+
+        int[] rows = store.sortByPercChange(true);
+        for (int i = 1; i < rows.length; i++)
+            assertTrue(store.getPercChange(rows[i - 1]) >= store.getPercChange(rows[i]));
+        assertEquals(0.0, store.getAveragePercChange(), 1e-12);
+    }
+}
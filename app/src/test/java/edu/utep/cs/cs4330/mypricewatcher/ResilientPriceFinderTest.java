@@ -0,0 +1,160 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the ResilientPriceFinder's retries and its use of the CircuitBreaker, run
+ * against a PriceFinder that plays back a script of results and failures.
+ */
+public class ResilientPriceFinderTest {
+
+    /**
+     * A PriceFinder answering each fetch with the next scripted price, or throwing the next
+     * scripted exception.
+     */
+    private static class ScriptedPriceFinder extends PriceFinder {
+        private final Deque<Object> script = new ArrayDeque<>();
+        private int calls;
+
+        private ScriptedPriceFinder(Object... outcomes) {
+            script.addAll(Arrays.asList(outcomes));
+        }
+
+        @Override
+        public double fetchPrice(String url) {
+            calls++;
+            Object next = script.isEmpty() ? 1.0 : script.poll();
+            if (next instanceof RuntimeException)
+                throw (RuntimeException) next;
+            return (Double) next;
+        }
+    }
+
+    @Test
+    public void fetchPrice_retriesServiceFailures() {
+        ScriptedPriceFinder delegate = new ScriptedPriceFinder(
+                new ServiceUnavailableException("503"), new ServiceUnavailableException("503"), 9.5);
+        ResilientPriceFinder finder = new ResilientPriceFinder(delegate, new CircuitBreaker(5, 1000), 3, 0, 0);
+
+        assertEquals(9.5, finder.fetchPrice("a"), 0.0);
+        assertEquals(3, delegate.calls);
+        assertEquals(2, finder.getRetryCount());
+        assertEquals(0, finder.getCircuitBreaker().getConsecutiveFailures());
+    }
+
+    @Test
+    public void fetchPrice_givesUpAfterMaxAttempts() {
+        ScriptedPriceFinder delegate = new ScriptedPriceFinder(new ServiceUnavailableException("1"),
+                new ServiceUnavailableException("2"), new ServiceUnavailableException("3"), 1.0);
+        ResilientPriceFinder finder = new ResilientPriceFinder(delegate, new CircuitBreaker(5, 1000), 3, 0, 0);
+
+        try {
+            finder.fetchPrice("a");
+            fail("Expected a ServiceUnavailableException");
+        } catch (ServiceUnavailableException e) {
+            assertEquals("3", e.getMessage());
+        }
+        assertEquals(3, delegate.calls);
+        assertEquals(1, finder.getExhaustedCount());
+        assertEquals(3, finder.getCircuitBreaker().getConsecutiveFailures());
+    }
+
+    @Test
+    public void fetchPrice_doesNotRetryPriceNotFound() {
+        ScriptedPriceFinder delegate = new ScriptedPriceFinder(new PriceNotFoundException(), 1.0);
+        ResilientPriceFinder finder = new ResilientPriceFinder(delegate, new CircuitBreaker(5, 1000), 3, 0, 0);
+
+        try {
+            finder.fetchPrice("a");
+            fail("Expected a PriceNotFoundException");
+        } catch (PriceNotFoundException expected) {
+        }
+        assertEquals(1, delegate.calls);
+        assertEquals(0, finder.getRetryCount());
+    }
+
+    @Test
+    public void fetchPrice_cancelled_isNeitherRetriedNorAFailure() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1000);
+        ScriptedPriceFinder delegate = new ScriptedPriceFinder(new FetchCancelledException("cancelled"), 1.0);
+        ResilientPriceFinder finder = new ResilientPriceFinder(delegate, breaker, 3, 0, 0);
+
+        try {
+            finder.fetchPrice("a");
+            fail("Expected a FetchCancelledException");
+        } catch (FetchCancelledException expected) {
+        }
+        assertEquals(1, delegate.calls);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getConsecutiveFailures());
+    }
+
+    @Test
+    public void fetchPrice_cancelledTrial_letsTheNextQueryBeTheTrial() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        ScriptedPriceFinder delegate = new ScriptedPriceFinder(new ServiceUnavailableException("503"),
+                new FetchCancelledException("cancelled"), 2.0);
+        ResilientPriceFinder finder = new ResilientPriceFinder(delegate, breaker, 1, 0, 0);
+
+        try {
+            finder.fetchPrice("a");
+            fail("Expected a ServiceUnavailableException");
+        } catch (ServiceUnavailableException expected) {
+        }
+        try {
+            finder.fetchPrice("a");
+            fail("Expected a FetchCancelledException");
+        } catch (FetchCancelledException expected) {
+        }
+        assertEquals(2.0, finder.fetchPrice("a"), 0.0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void fetchPrice_unexpectedFailureOfTrial_doesNotWedgeTheBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        ScriptedPriceFinder delegate = new ScriptedPriceFinder(new ServiceUnavailableException("503"),
+                new IllegalArgumentException("bad url"), 3.0);
+        ResilientPriceFinder finder = new ResilientPriceFinder(delegate, breaker, 1, 0, 0);
+
+        try {
+            finder.fetchPrice("a");
+            fail("Expected a ServiceUnavailableException");
+        } catch (ServiceUnavailableException expected) {
+        }
+        try {
+            finder.fetchPrice("a");
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(3.0, finder.fetchPrice("a"), 0.0);
+        assertEquals(3, delegate.calls);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void fetchPrice_failsFastWhileOpen() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 60 * 1000);
+        ScriptedPriceFinder delegate = new ScriptedPriceFinder(new ServiceUnavailableException("503"), 1.0);
+        ResilientPriceFinder finder = new ResilientPriceFinder(delegate, breaker, 1, 0, 0);
+
+        try {
+            finder.fetchPrice("a");
+            fail("Expected a ServiceUnavailableException");
+        } catch (ServiceUnavailableException expected) {
+        }
+        try {
+            finder.fetchPrice("a");
+            fail("Expected a CircuitOpenException");
+        } catch (CircuitOpenException expected) {
+        }
+        assertEquals(1, delegate.calls);
+        assertEquals(1, breaker.getRejectedCount());
+    }
+}
@@ -0,0 +1,47 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the TokenBucket pacing the requests sent to a single host.
+ */
+public class TokenBucketTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void acquire_allowsBurstThenPaces() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(20, 5);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++)
+            bucket.acquire();
+        long burstNanos = System.nanoTime() - start;
+        bucket.acquire();
+        bucket.acquire();
+        long pacedNanos = System.nanoTime() - start;
+
+        assertTrue("burst took " + burstNanos / MILLIS + " ms", burstNanos < 40 * MILLIS);
+        assertTrue("two paced tokens took " + pacedNanos / MILLIS + " ms", pacedNanos >= 90 * MILLIS);
+    }
+
+    @Test
+    public void getAvailableTokens_refillsUpToCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1000, 3);
+        assertEquals(3.0, bucket.getAvailableTokens(), 0.01);
+        for (int i = 0; i < 3; i++)
+            bucket.acquire();
+        assertTrue(bucket.getAvailableTokens() < 1.0);
+
+        Thread.sleep(20);
+        assertEquals("refill stops at capacity", 3.0, bucket.getAvailableTokens(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNonPositiveRate() {
+        new TokenBucket(0, 1);
+    }
+}
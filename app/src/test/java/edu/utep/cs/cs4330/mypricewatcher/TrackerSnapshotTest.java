@@ -0,0 +1,148 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the TrackerSnapshot writing the Tracker's state to a file and reading it back.
+ */
+public class TrackerSnapshotTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void read_returnsItemsWritten() throws IOException {
+        Item saved = item(1, "Caf\u00e9 grinder", 1999, 1499);
+        Item changed = item(2, "Kettle", 2500, 2500);
+        changed.setCurrPrice(22.75);
+        Item unnamed = new Item(null, 3.0, 3.0, 0.0, "http://shop.example/3", 0);
+        File file = folder.newFile("tracker.snapshot");
+
+        long token = TrackerSnapshot.write(file, Arrays.asList(saved, changed, unnamed),
+                TrackerSnapshot.FLAG_CHANGES_ONLY);
+        TrackerSnapshot.SnapshotList read = TrackerSnapshot.read(file, token);
+
+        assertTrue(read.isChangesOnly());
+        assertEquals(3, read.size());
+        assertSameItem(saved, read.get(0));
+        assertSameItem(changed, read.get(1));
+        assertSameItem(unnamed, read.get(2));
+        assertFalse(read.get(0).isDirty());
+        assertTrue(read.get(1).isDirty());
+    }
+
+    @Test
+    public void read_rejectsTruncatedSnapshot() throws IOException {
+        File file = folder.newFile("tracker.snapshot");
+        long token = TrackerSnapshot.write(file, Arrays.asList(item(1, "Kettle", 2500, 2500)), 0);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        }
+        finally {
+            raf.close();
+        }
+
+        assertRejected(file, token);
+    }
+
+    @Test
+    public void read_rejectsOtherToken() throws IOException {
+        File file = folder.newFile("tracker.snapshot");
+        long token = TrackerSnapshot.write(file, Arrays.asList(item(1, "Kettle", 2500, 2500)), 0);
+
+        assertRejected(file, token + 1);
+    }
+
+    @Test
+    public void read_rejectsOtherFormatVersion() throws IOException {
+        File file = folder.newFile("tracker.snapshot");
+        long token = TrackerSnapshot.write(file, Arrays.asList(item(1, "Kettle", 2500, 2500)), 0);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(4);
+            raf.writeInt(TrackerSnapshot.FORMAT_VERSION + 1);
+        }
+        finally {
+            raf.close();
+        }
+
+        assertRejected(file, token);
+    }
+
+    @Test
+    public void snapshotList_copiesItemsIntoMemory_onFirstChange() throws IOException {
+        List<Item> items = new ArrayList<>();
+        for (int i = 1; i <= 5; i++)
+            items.add(item(i, "Item " + i, 100 * i, 100 * i));
+        File file = folder.newFile("tracker.snapshot");
+        TrackerSnapshot.SnapshotList read = TrackerSnapshot.read(file, TrackerSnapshot.write(file, items, 0));
+        Item first = read.get(0);
+        List<Item> before = read.snapshot();
+        assertSame(before, read.snapshot());
+
+        Item added = item(6, "Item 6", 600, 600);
+        read.remove(0);
+        read.add(added);
+
+        assertEquals(5, read.size());
+        assertEquals(2, read.get(0).getId());
+        assertSame(added, read.get(4));
+        assertEquals(5, before.size());
+        assertSame(first, before.get(0));
+        assertSame(read.get(0), before.get(1));
+        List<Item> after = read.snapshot();
+        assertNotSame(before, after);
+        assertEquals(Arrays.asList(read.toArray()), after);
+    }
+
+    /**
+     * Returns a saved Item with the ID and prices given in cents.
+     */
+    private static Item item(long id, String name, long initCents, long currCents) {
+        Item item = new Item(name, initCents / 100.0, currCents / 100.0, (currCents - initCents) / (double) initCents,
+                "http://shop.example/" + id, 1500000000000L + id);
+        item.setId(id);
+        return item;
+    }
+
+    /**
+     * Assert that an Item read back holds what was written.
+     */
+    private static void assertSameItem(Item expected, Item actual) {
+        PriceSnapshot e = expected.getPriceSnapshot();
+        PriceSnapshot a = actual.getPriceSnapshot();
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getURL(), actual.getURL());
+        assertEquals(expected.getDateAddedMillis(), actual.getDateAddedMillis());
+        assertEquals(e.getInitPriceCents(), a.getInitPriceCents());
+        assertEquals(e.getCurrPriceCents(), a.getCurrPriceCents());
+        assertEquals(e.getPercChange(), a.getPercChange(), 0.0);
+        assertEquals(e.getFetchedAt(), a.getFetchedAt());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getSavedVersion(), actual.getSavedVersion());
+    }
+
+    /**
+     * Assert that reading the snapshot fails.
+     */
+    private static void assertRejected(File file, long token) {
+        try {
+            TrackerSnapshot.read(file, token);
+            fail("the snapshot was read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
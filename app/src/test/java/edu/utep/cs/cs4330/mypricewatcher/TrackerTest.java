@@ -0,0 +1,185 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local stress tests of the Tracker and its IndexedItemList: Items are added and removed on many
+ * threads while others take snapshots, and every snapshot must hold a state the list was really
+ * in, and keep holding it however the list changes afterwards.
+ */
+public class TrackerTest {
+    private static final int WRITERS = 4;           /* Threads adding and removing Items */
+    private static final int READERS = 2;           /* Threads taking snapshots */
+    private static final int ITEMS_PER_WRITER = 20000;
+    private static final int WINDOW = 50;           /* Items each writer keeps tracked at once */
+    private static final long WRITER_ID_STRIDE = 1000000;
+
+    private final Tracker tracker = Tracker.getInstance();
+
+    @Before
+    public void setUp() {
+        tracker.setItems(new IndexedItemList());
+    }
+
+    @After
+    public void tearDown() {
+        tracker.setItems(new IndexedItemList());
+    }
+
+    @Test
+    public void snapshots_areConsistent_whileItemsAreAddedAndRemoved() throws Exception {
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger snapshots = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            long base = (w + 1) * WRITER_ID_STRIDE;
+            threads.add(thread(start, failure, () -> {
+                for (int i = 0; i < ITEMS_PER_WRITER; i++) {
+                    tracker.addItem(item(base + i));
+                    if (i >= WINDOW)
+                        assertTrue(tracker.removeItem(item(base + i - WINDOW)));
+                }
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            threads.add(thread(start, failure, () -> {
+                List<List<Item>> kept = new ArrayList<>();
+                List<List<Item>> copies = new ArrayList<>();
+                while (writing.get()) {
+                    List<Item> snapshot = tracker.getItems();
+                    assertConsistent(snapshot);
+                    snapshots.incrementAndGet();
+                    if (kept.size() < 100) {
+                        kept.add(snapshot);
+                        copies.add(new ArrayList<>(snapshot));
+                    }
+                }
+                for (int i = 0; i < kept.size(); i++)
+                    assertEquals("snapshot changed after it was taken", copies.get(i), kept.get(i));
+            }));
+        }
+
+        start.countDown();
+        for (int w = 0; w < WRITERS; w++)
+            threads.get(w).join(TimeUnit.SECONDS.toMillis(30));
+        writing.set(false);
+        for (Thread t : threads)
+            t.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertTrue(snapshots.get() > 0);
+        List<Item> last = tracker.getItems();
+        assertConsistent(last);
+        assertEquals(WRITERS * WINDOW, last.size());
+        for (Item item : last)
+            assertEquals(item, tracker.getItem(item.getId()));
+    }
+
+    @Test
+    public void snapshot_ofIndexedItemList_isUnchangedByLaterChanges() throws Exception {
+        IndexedItemList list = new IndexedItemList();
+        Object lock = new Object();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread writer = thread(start, failure, () -> {
+            for (int i = 1; i <= ITEMS_PER_WRITER; i++) {
+                synchronized (lock) {
+                    list.add(item(i));
+                    if (i % 3 == 0)
+                        list.remove(0);
+                    if (i % 7 == 0)
+                        list.remove(list.size() / 2);
+                }
+            }
+        });
+        Thread reader = thread(start, failure, () -> {
+            while (writing.get()) {
+                List<Item> snapshot;
+                int size;
+                synchronized (lock) {
+                    snapshot = list.snapshot();
+                    size = list.size();
+                }
+                List<Item> copy = new ArrayList<>(snapshot);
+                assertEquals(size, copy.size());
+                long previous = 0;
+                for (Item item : copy) {
+                    assertTrue("snapshot out of order", item.getId() > previous);
+                    previous = item.getId();
+                }
+                Thread.yield();
+                assertEquals("snapshot changed after it was taken", copy, snapshot);
+            }
+        });
+
+        start.countDown();
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        writing.set(false);
+        reader.join(TimeUnit.SECONDS.toMillis(30));
+
+        assertNull(String.valueOf(failure.get()), failure.get());
+    }
+
+    /**
+     * Assert that a snapshot holds what the writers can have left tracked at one moment: no Item
+     * twice, and of each writer's Items, a run of consecutive IDs in the order they were added,
+     * no longer than the writer keeps.
+     */
+    private static void assertConsistent(List<Item> snapshot) {
+        Map<Long, Long> lastIdByWriter = new HashMap<>();
+        Map<Long, Integer> countByWriter = new HashMap<>();
+        for (Item item : snapshot) {
+            long writer = item.getId() / WRITER_ID_STRIDE;
+            Long last = lastIdByWriter.put(writer, item.getId());
+            if (last != null)
+                assertEquals("items of a writer out of order or missing", last + 1, item.getId());
+            Integer count = countByWriter.get(writer);
+            countByWriter.put(writer, count == null ? 1 : count + 1);
+        }
+        for (int count : countByWriter.values())
+            assertTrue("a writer holds " + count + " items", count <= WINDOW + 1);
+    }
+
+    private interface Work {
+        void run() throws Exception;
+    }
+
+    /**
+     * Start a thread doing the work once the latch opens, and record the first failure of any thread.
+     */
+    private static Thread thread(CountDownLatch start, AtomicReference<Throwable> failure, Work work) {
+        Thread t = new Thread(() -> {
+            try {
+                start.await();
+                work.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        t.start();
+        return t;
+    }
+
+    private static Item item(long id) {
+        Item item = new Item("Item " + id, 1.0, 1.0, 0.0, "http://shop.example/" + id, 0);
+        item.setId(id);
+        return item;
+    }
+}
@@ -0,0 +1,49 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the ValidatorStore remembering the validators of full responses.
+ */
+public class ValidatorStoreTest {
+
+    @Test
+    public void put_forgetsLeastRecentlyUsedUrl_whenFull() {
+        ValidatorStore store = new ValidatorStore(2);
+        store.put("http://a.example/", "\"a\"", null, 1.0);
+        store.put("http://b.example/", "\"b\"", null, 2.0);
+        store.get("http://a.example/");
+
+        store.put("http://c.example/", "\"c\"", null, 3.0);
+
+        assertEquals("\"a\"", store.get("http://a.example/").getETag());
+        assertNull(store.get("http://b.example/"));
+        assertFalse(store.remembers("http://b.example/"));
+        assertEquals(3.0, store.get("http://c.example/").getPrice(), 0.0);
+    }
+
+    @Test
+    public void put_withoutValidators_remembersUrlHasNone() {
+        ValidatorStore store = new ValidatorStore(4);
+        store.put("http://a.example/", "\"a\"", "Mon, 01 Jan 2018 00:00:00 GMT", 1.0);
+
+        store.put("http://a.example/", null, null, 2.0);
+
+        assertNull(store.get("http://a.example/"));
+        assertTrue(store.remembers("http://a.example/"));
+        assertFalse(store.remembers("http://b.example/"));
+    }
+
+    @Test
+    public void remove_remembersUrlHasNone() {
+        ValidatorStore store = new ValidatorStore(4);
+        store.put("http://a.example/", null, "Mon, 01 Jan 2018 00:00:00 GMT", 1.0);
+
+        store.remove("http://a.example/");
+
+        assertNull(store.get("http://a.example/"));
+        assertTrue(store.remembers("http://a.example/"));
+    }
+}
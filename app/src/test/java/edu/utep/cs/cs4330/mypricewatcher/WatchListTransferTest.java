@@ -0,0 +1,106 @@
+package edu.utep.cs.cs4330.mypricewatcher;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the CSV reading and writing of the WatchListTransfer.
+ */
+public class WatchListTransferTest {
+
+    @Test
+    public void csvReader_splitsPlainRows() throws IOException {
+        List<List<String>> rows = readAll("name,url\nLamp,http://a.com/1\n,,\nlast,row");
+
+        assertEquals(Arrays.asList("name", "url"), rows.get(0));
+        assertEquals(Arrays.asList("Lamp", "http://a.com/1"), rows.get(1));
+        assertEquals(Arrays.asList("", "", ""), rows.get(2));
+        assertEquals("last row needs no line break", Arrays.asList("last", "row"), rows.get(3));
+        assertEquals(4, rows.size());
+    }
+
+    @Test
+    public void csvReader_readsQuotedFields() throws IOException {
+        List<List<String>> rows = readAll("\"a, b\",\"say \"\"hi\"\"\",\"two\r\nlines\"\n\"\",x\n");
+
+        assertEquals(Arrays.asList("a, b", "say \"hi\"", "two\r\nlines"), rows.get(0));
+        assertEquals(Arrays.asList("", "x"), rows.get(1));
+        assertEquals(2, rows.size());
+    }
+
+    @Test
+    public void csvReader_skipsBlankLinesAndHandlesCrLf() throws IOException {
+        List<List<String>> rows = readAll("\r\n\na,b\r\n\r\n\nc,d\r\n");
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d")), rows);
+    }
+
+    @Test
+    public void csvReader_keepsWhitespaceAsWritten() throws IOException {
+        assertEquals(Arrays.asList(" a ", "\tb"), readAll(" a ,\tb\n").get(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void csvReader_rejectsUnterminatedQuote() throws IOException {
+        readAll("a,\"never closed\nb,c\n");
+    }
+
+    @Test
+    public void csvReader_returnsNullAtEnd() throws IOException {
+        WatchListTransfer.CsvReader reader = new WatchListTransfer.CsvReader(new StringReader("a\n"));
+        assertNotNull(reader.next());
+        assertNull(reader.next());
+        assertNull(reader.next());
+        assertNull(new WatchListTransfer.CsvReader(new StringReader("")).next());
+    }
+
+    @Test
+    public void writeCsvRow_roundTripsThroughCsvReader() throws IOException {
+        Random random = new Random(7);
+        char[] alphabet = {'a', 'Z', '0', ' ', ',', '"', '\n', '\r', '\t', '\u00e9', '\u20ac'};
+        List<String[]> written = new ArrayList<>();
+        StringWriter out = new StringWriter();
+        for (int r = 0; r < 2000; r++) {
+            String[] row = new String[2 + random.nextInt(5)];
+            for (int f = 0; f < row.length; f++) {
+                StringBuilder field = new StringBuilder();
+                int length = random.nextInt(8);
+                for (int i = 0; i < length; i++)
+                    field.append(alphabet[random.nextInt(alphabet.length)]);
+                row[f] = field.toString();
+            }
+            written.add(row);
+            WatchListTransfer.writeCsvRow(out, row);
+        }
+
+        List<List<String>> read = readAll(out.toString());
+        assertEquals(written.size(), read.size());
+        for (int r = 0; r < written.size(); r++)
+            assertEquals("row " + r, Arrays.asList(written.get(r)), read.get(r));
+    }
+
+    @Test
+    public void writeCsvRow_writesNullAsEmptyField() throws IOException {
+        StringWriter out = new StringWriter();
+        WatchListTransfer.writeCsvRow(out, new String[] {"a", null, "c"});
+        assertEquals("a,,c\n", out.toString());
+    }
+
+    private static List<List<String>> readAll(String csv) throws IOException {
+        WatchListTransfer.CsvReader reader = new WatchListTransfer.CsvReader(new StringReader(csv));
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row;
+        while ((row = reader.next()) != null)
+            rows.add(new ArrayList<>(row));     /* The reader reuses its list for every row */
+        return rows;
+    }
+}